@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.namespace.QName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import se.inera.intyg.logsender.model.ActivityPurpose;
+import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.Enhet;
+import se.inera.intyg.logsender.model.Patient;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import se.inera.intyg.logsender.model.PdlResource;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+
+// Converts and marshals a batch of log messages referencing a handful of distinct care units, with
+// care units and care providers built per message or shared within the batch. Run with
+// ./gradlew :app:jmh -Pjmh.profilers=gc to compare allocations.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EnhetTypeCacheBenchmark {
+
+  private static final QName LOG_QNAME =
+      new QName("urn:riv:informationsecurity:auditing:log:2", "Log");
+  private static final int DISTINCT_ENHETER = 5;
+
+  @Param({"100", "1000", "5000"})
+  public int batchSize;
+
+  @Param({"false", "true"})
+  public boolean sharedCache;
+
+  private LogTypeFactoryImpl logTypeFactory;
+  private Marshaller marshaller;
+  private List<PdlLogMessage> batch;
+
+  @Setup
+  public void setup() throws JAXBException {
+    logTypeFactory = new LogTypeFactoryImpl();
+    marshaller = JAXBContext.newInstance(LogType.class).createMarshaller();
+    batch = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      batch.add(buildPdlLogMessage(i % DISTINCT_ENHETER));
+    }
+  }
+
+  @Benchmark
+  public List<LogType> convert() {
+    return convertBatch();
+  }
+
+  @Benchmark
+  public void convertAndMarshal() throws JAXBException {
+    for (LogType logType : convertBatch()) {
+      marshaller.marshal(
+          new JAXBElement<>(LOG_QNAME, LogType.class, logType), OutputStream.nullOutputStream());
+    }
+  }
+
+  private List<LogType> convertBatch() {
+    final var cache = new EnhetTypeCache();
+    final var logTypes = new ArrayList<LogType>(batch.size());
+    for (PdlLogMessage pdlLogMessage : batch) {
+      logTypes.addAll(
+          sharedCache
+              ? logTypeFactory.convertPerResource(pdlLogMessage, cache)
+              : logTypeFactory.convertPerResource(pdlLogMessage));
+    }
+    return logTypes;
+  }
+
+  private static PdlLogMessage buildPdlLogMessage(int enhetIndex) {
+    final var enhet =
+        new Enhet(
+            "enhet-" + enhetIndex,
+            "Enhet nr " + enhetIndex,
+            "vardgivare-" + enhetIndex,
+            "Vårdgivare " + enhetIndex);
+    final var pdlLogMessage = new PdlLogMessage(ActivityType.READ, ActivityPurpose.CARE_TREATMENT);
+    pdlLogMessage.setUserId("user-123");
+    pdlLogMessage.setUserName("Läkare Läkarsson");
+    pdlLogMessage.setSystemId("webcert");
+    pdlLogMessage.setSystemName("webcert");
+    pdlLogMessage.setUserCareUnit(enhet);
+    pdlLogMessage.setTimestamp(LocalDateTime.now());
+
+    final var resource = new PdlResource();
+    resource.setPatient(new Patient("19121212-1212", "Tolvan Tolvansson"));
+    resource.setResourceOwner(enhet);
+    resource.setResourceType("Intyg");
+    pdlLogMessage.getPdlResourceList().add(resource);
+    return pdlLogMessage;
+  }
+}
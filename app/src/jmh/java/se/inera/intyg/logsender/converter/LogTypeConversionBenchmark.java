@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import se.inera.intyg.logsender.model.ActivityPurpose;
+import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.Enhet;
+import se.inera.intyg.logsender.model.Patient;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import se.inera.intyg.logsender.model.PdlResource;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+// Compares converting a JSON encoded PdlLogMessage to LogTypes through the PdlLogMessage model with
+// reading it directly into LogTypes. Run with ./gradlew :app:jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LogTypeConversionBenchmark {
+
+  @Param({"1", "10"})
+  public int numberOfResources;
+
+  private ObjectMapper objectMapper;
+  private LogTypeFactoryImpl logTypeFactory;
+  private StreamingLogTypeReader streamingLogTypeReader;
+  private String json;
+
+  @Setup
+  public void setup() {
+    objectMapper = JsonMapper.builder().build();
+    logTypeFactory = new LogTypeFactoryImpl();
+    streamingLogTypeReader = new StreamingLogTypeReader(new PipelineJsonCodec(objectMapper));
+    json = objectMapper.writeValueAsString(buildPdlLogMessage(numberOfResources));
+  }
+
+  @Benchmark
+  public List<LogType> model() {
+    return logTypeFactory.convertPerResource(objectMapper.readValue(json, PdlLogMessage.class));
+  }
+
+  @Benchmark
+  public List<LogType> streaming() {
+    return streamingLogTypeReader.readPerResource(json);
+  }
+
+  private static PdlLogMessage buildPdlLogMessage(int numberOfResources) {
+    final var enhet = new Enhet("enhet-1", "Enhet nr 1", "vardgivare-1", "Vårdgivare 1");
+    final var pdlLogMessage = new PdlLogMessage(ActivityType.READ, ActivityPurpose.CARE_TREATMENT);
+    pdlLogMessage.setUserId("user-123");
+    pdlLogMessage.setUserName("Läkare Läkarsson");
+    pdlLogMessage.setSystemId("webcert");
+    pdlLogMessage.setSystemName("webcert");
+    pdlLogMessage.setUserCareUnit(enhet);
+    pdlLogMessage.setTimestamp(LocalDateTime.now());
+    for (int i = 0; i < numberOfResources; i++) {
+      final var resource = new PdlResource();
+      resource.setPatient(new Patient("19121212-1212", "Tolvan Tolvansson"));
+      resource.setResourceOwner(enhet);
+      resource.setResourceType("Intyg");
+      pdlLogMessage.getPdlResourceList().add(resource);
+    }
+    return pdlLogMessage;
+  }
+}
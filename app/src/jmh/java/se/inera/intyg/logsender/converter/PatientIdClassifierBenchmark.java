@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Resolves the OID root for a sequence of patient ids, comparing the Personnummer library with the
+// fast path classifier. The sequence mimics a READ burst: most lookups hit a small set of recurring
+// patients, the rest are distinct, and a share of the ids are on forms the fast path leaves to the
+// library (10 digits or with a plus sign). Reports lookups per second, run with
+// ./gradlew :app:jmh -Pjmh.includes=PatientIdClassifierBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PatientIdClassifierBenchmark {
+
+  private static final int IDS = 10_000;
+
+  @Param({"50", "5000"})
+  public int recurringPatients;
+
+  @Param({"0.8"})
+  public double recurringShare;
+
+  @Param({"0.05"})
+  public double otherFormShare;
+
+  private LogTypeFactoryUtil util;
+  private String[] patientIds;
+
+  @Setup
+  public void setup() {
+    util = LogTypeFactoryUtil.getInstance();
+    final var random = new Random(42);
+    final var recurring = new String[recurringPatients];
+    for (int i = 0; i < recurring.length; i++) {
+      recurring[i] = patientId(random);
+    }
+    patientIds = new String[IDS];
+    for (int i = 0; i < IDS; i++) {
+      patientIds[i] =
+          random.nextDouble() < recurringShare
+              ? recurring[random.nextInt(recurring.length)]
+              : patientId(random);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IDS)
+  public void library(Blackhole blackhole) {
+    for (String patientId : patientIds) {
+      blackhole.consume(util.resolvePatientIdRoot(patientId));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IDS)
+  public void classifier(Blackhole blackhole) {
+    final var classifier =
+        new PatientIdClassifier(
+            IDS,
+            util.getPersonnummerRoot(),
+            util.getSamordningsNummerRoot(),
+            util::resolvePatientIdRoot);
+    for (String patientId : patientIds) {
+      blackhole.consume(classifier.root(patientId));
+    }
+  }
+
+  private String patientId(Random random) {
+    final var birthDate = LocalDate.of(1920, 1, 1).plusDays(random.nextInt(36_500));
+    final var samordningsnummer = random.nextInt(20) == 0;
+    final var day = birthDate.getDayOfMonth() + (samordningsnummer ? 60 : 0);
+    final var serial = String.format("%03d", random.nextInt(1000));
+    final var digits =
+        String.format("%02d%02d%02d", birthDate.getYear() % 100, birthDate.getMonthValue(), day)
+            + serial;
+    final var controlDigit = controlDigit(digits);
+    final var century = String.valueOf(birthDate.getYear() / 100);
+
+    if (random.nextDouble() < otherFormShare) {
+      return digits.substring(0, 6) + "-" + digits.substring(6) + controlDigit;
+    }
+    return random.nextBoolean()
+        ? century + digits + controlDigit
+        : century + digits.substring(0, 6) + "-" + digits.substring(6) + controlDigit;
+  }
+
+  private static int controlDigit(String digits) {
+    var sum = 0;
+    for (int i = 0; i < digits.length(); i++) {
+      final var product = (digits.charAt(i) - '0') * (i % 2 == 0 ? 2 : 1);
+      sum += product / 10 + product % 10;
+    }
+    return (10 - sum % 10) % 10;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import se.inera.intyg.logsender.model.ActivityPurpose;
+import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.Enhet;
+import se.inera.intyg.logsender.model.Patient;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import se.inera.intyg.logsender.model.PdlResource;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+// Compares the JSON handling of each pipeline stage through the ObjectMapper with a raw Class, as
+// the processors used to do, with the prebuilt readers and writers of PipelineJsonCodec. Reports
+// operations per second, run with ./gradlew :app:jmh -Pjmh.includes=PipelineJsonCodecBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PipelineJsonCodecBenchmark {
+
+  @Param({"10", "100"})
+  public int batchSize;
+
+  private ObjectMapper objectMapper;
+  private PipelineJsonCodec pipelineJsonCodec;
+  private PdlLogMessage pdlLogMessage;
+  private String json;
+  private byte[] batchBytes;
+
+  @Setup
+  public void setup() {
+    objectMapper = JsonMapper.builder().build();
+    pipelineJsonCodec = new PipelineJsonCodec(objectMapper);
+    pdlLogMessage = buildPdlLogMessage();
+    json = objectMapper.writeValueAsString(pdlLogMessage);
+    final var entries = new ArrayList<String>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      entries.add(json);
+    }
+    batchBytes = objectMapper.writeValueAsBytes(entries);
+  }
+
+  @Benchmark
+  public PdlLogMessage splitReadObjectMapper() {
+    return objectMapper.readValue(json, PdlLogMessage.class);
+  }
+
+  @Benchmark
+  public PdlLogMessage splitReadCodec() {
+    return pipelineJsonCodec.readPdlLogMessage(json);
+  }
+
+  @Benchmark
+  public String splitWriteObjectMapper() {
+    return objectMapper.writeValueAsString(pdlLogMessage);
+  }
+
+  @Benchmark
+  public String splitWriteCodec() {
+    return pipelineJsonCodec.writePdlLogMessage(pdlLogMessage);
+  }
+
+  // The aggregated batch arrives as bytes and used to be decoded to a String before parsing
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public List<PdlLogMessage> sendObjectMapper() {
+    final List<String> entries =
+        objectMapper.readValue(new String(batchBytes, StandardCharsets.UTF_8), List.class);
+    return entries.stream()
+        .map(entry -> objectMapper.readValue(entry, PdlLogMessage.class))
+        .toList();
+  }
+
+  @Benchmark
+  public List<PdlLogMessage> sendCodec() {
+    return pipelineJsonCodec.readBatch(batchBytes).stream()
+        .map(pipelineJsonCodec::readPdlLogMessage)
+        .toList();
+  }
+
+  private static PdlLogMessage buildPdlLogMessage() {
+    final var enhet = new Enhet("enhet-1", "Enhet nr 1", "vardgivare-1", "Vårdgivare 1");
+    final var pdlLogMessage = new PdlLogMessage(ActivityType.READ, ActivityPurpose.CARE_TREATMENT);
+    pdlLogMessage.setUserId("user-123");
+    pdlLogMessage.setUserName("Läkare Läkarsson");
+    pdlLogMessage.setSystemId("webcert");
+    pdlLogMessage.setSystemName("webcert");
+    pdlLogMessage.setUserCareUnit(enhet);
+    pdlLogMessage.setTimestamp(LocalDateTime.now());
+    final var resource = new PdlResource();
+    resource.setPatient(new Patient("19121212-1212", "Tolvan Tolvansson"));
+    resource.setResourceOwner(enhet);
+    resource.setResourceType("Intyg");
+    pdlLogMessage.getPdlResourceList().add(resource);
+    return pdlLogMessage;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.aggregation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Route;
+import org.apache.camel.RuntimeCamelException;
+import org.apache.camel.support.RoutePolicySupport;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+
+// Route policy for the aggregator route that suspends the inbound consumer while the bytes held in
+// pending aggregation batches, and in completed batches not yet sent to the aggregated queue,
+// exceed the budget, and resumes it once they drop below the low-water mark.
+@Component
+@Slf4j
+public class AggregationMemoryBudget extends RoutePolicySupport {
+
+  private final AtomicLong pendingBytes = new AtomicLong();
+  private final Lock lock = new ReentrantLock();
+  private final long maxBytes;
+  private final long resumeBytes;
+
+  private volatile Route route;
+  private volatile boolean paused;
+
+  public AggregationMemoryBudget(LogsenderProperties properties, MeterRegistry meterRegistry) {
+    final var memoryBudget = properties.aggregation().memoryBudget();
+    this.maxBytes = memoryBudget.maxBytes();
+    this.resumeBytes = Math.min(memoryBudget.resumeBytes(), memoryBudget.maxBytes());
+
+    Gauge.builder("logsender.aggregation.memory.pending", pendingBytes, AtomicLong::get)
+        .description("Bytes held in log message batches waiting for completion or sending")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    Gauge.builder("logsender.aggregation.memory.paused", this, budget -> budget.paused ? 1 : 0)
+        .description("1 when inbound consumption is paused due to the aggregation memory budget")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public void onInit(Route route) {
+    this.route = route;
+  }
+
+  @Override
+  public void onExchangeDone(Route route, Exchange exchange) {
+    if (pendingBytes.get() > maxBytes) {
+      pause();
+    }
+  }
+
+  void reserve(long bytes) {
+    pendingBytes.addAndGet(bytes);
+  }
+
+  void release(long bytes) {
+    if (pendingBytes.addAndGet(-bytes) <= resumeBytes && paused) {
+      resume();
+    }
+  }
+
+  public long pendingBytes() {
+    return pendingBytes.get();
+  }
+
+  public boolean isPaused() {
+    return paused;
+  }
+
+  private void pause() {
+    lock.lock();
+    try {
+      if (!paused && route != null) {
+        log.warn(
+            "Pending aggregation holds {} bytes which exceeds the budget of {} bytes, pausing consumption from {}",
+            pendingBytes.get(),
+            maxBytes,
+            route.getEndpoint().getEndpointUri());
+        suspendOrStopConsumer(route.getConsumer());
+        paused = true;
+      }
+    } catch (Exception e) {
+      throw RuntimeCamelException.wrapRuntimeCamelException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void resume() {
+    lock.lock();
+    try {
+      if (paused && route != null) {
+        log.info(
+            "Pending aggregation holds {} bytes which is below {} bytes, resuming consumption from {}",
+            pendingBytes.get(),
+            resumeBytes,
+            route.getEndpoint().getEndpointUri());
+        resumeOrStartConsumer(route.getConsumer());
+        paused = false;
+      }
+    } catch (Exception e) {
+      throw RuntimeCamelException.wrapRuntimeCamelException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
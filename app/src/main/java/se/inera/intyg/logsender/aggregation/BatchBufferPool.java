@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.aggregation;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+
+@Component
+public class BatchBufferPool {
+
+  private final int initialCapacity;
+  private final long maxPooledCapacity;
+  private final boolean direct;
+  private final BlockingQueue<ByteBuffer> pooled;
+  private final AggregationMemoryBudget memoryBudget;
+
+  public BatchBufferPool(LogsenderProperties properties, AggregationMemoryBudget memoryBudget) {
+    this.memoryBudget = memoryBudget;
+    final var buffer = properties.aggregation().buffer();
+    this.initialCapacity = buffer.initialCapacity();
+    this.direct = buffer.direct();
+    this.pooled = new ArrayBlockingQueue<>(Math.max(1, buffer.maxPooled()));
+    // Buffers that have grown far beyond a normal batch are left to the GC instead of being pooled
+    this.maxPooledCapacity =
+        buffer.maxPooled() > 0 ? 2 * properties.aggregation().maxBatchBytes() : 0L;
+  }
+
+  public LogMessageBatchBuffer newBatch() {
+    return new LogMessageBatchBuffer(this);
+  }
+
+  AggregationMemoryBudget memoryBudget() {
+    return memoryBudget;
+  }
+
+  ByteBuffer acquire(int minCapacity) {
+    final var candidate = pooled.poll();
+    if (candidate != null) {
+      if (candidate.capacity() >= minCapacity) {
+        return candidate.clear();
+      }
+      // Too small for this batch, but still good for the next one
+      pooled.offer(candidate);
+    }
+    return allocate(Math.max(initialCapacity, minCapacity));
+  }
+
+  void release(ByteBuffer buffer) {
+    if (buffer != null && buffer.capacity() <= maxPooledCapacity) {
+      pooled.offer(buffer.clear());
+    }
+  }
+
+  int pooledCount() {
+    return pooled.size();
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.aggregation;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.camel.AggregationStrategy;
+import org.apache.camel.Exchange;
+import org.apache.camel.support.DefaultExchange;
+import org.springframework.stereotype.Component;
+
+// Appends each inbound body to a LogMessageBatchBuffer held as the body of the aggregated
+// exchange. The inbound exchanges are not retained, only their encoded bodies. Bodies received as
+// UTF-8 bytes are appended without being decoded.
+@Component
+@RequiredArgsConstructor
+public class LogMessageBatchAggregationStrategy implements AggregationStrategy {
+
+  public static final String AGGREGATED_BYTES = "LogSenderAggregatedBytes";
+
+  private final BatchBufferPool batchBufferPool;
+
+  @Override
+  public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+    final Exchange aggregated;
+    final LogMessageBatchBuffer batch;
+    if (oldExchange == null) {
+      aggregated = new DefaultExchange(newExchange.getContext());
+      batch = batchBufferPool.newBatch();
+      aggregated.getIn().setBody(batch);
+    } else {
+      aggregated = oldExchange;
+      batch = oldExchange.getIn().getBody(LogMessageBatchBuffer.class);
+    }
+
+    if (newExchange.getIn().getBody() instanceof byte[] json) {
+      batch.append(json);
+    } else {
+      batch.append(newExchange.getIn().getBody(String.class));
+    }
+    aggregated.setProperty(AGGREGATED_BYTES, (long) batch.size());
+    return aggregated;
+  }
+}
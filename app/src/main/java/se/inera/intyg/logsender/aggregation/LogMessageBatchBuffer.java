@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.aggregation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import tools.jackson.core.io.JsonStringEncoder;
+
+// Accumulates aggregated log messages directly in the wire format of the aggregated queue, a JSON
+// array of JSON encoded PdlLogMessage strings, in a buffer borrowed from the BatchBufferPool.
+public class LogMessageBatchBuffer {
+
+  private static final JsonStringEncoder ENCODER = JsonStringEncoder.getInstance();
+
+  private static final byte ARRAY_START = '[';
+  private static final byte ARRAY_END = ']';
+  private static final byte SEPARATOR = ',';
+  private static final byte QUOTE = '"';
+  private static final byte BACKSLASH = '\\';
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  // The largest array size the JVM allows, as in ArraysSupport
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+  private final BatchBufferPool pool;
+  private ByteBuffer buffer;
+  private int entries;
+  private long reservedBytes;
+
+  LogMessageBatchBuffer(BatchBufferPool pool) {
+    this.pool = pool;
+    this.buffer = pool.acquire(0);
+    this.buffer.put(ARRAY_START);
+  }
+
+  public int append(String json) {
+    final var quoted = ENCODER.quoteAsUTF8(json);
+    final var before = startEntry(quoted.length);
+    buffer.put(quoted);
+    return endEntry(before);
+  }
+
+  // Appends JSON that is already UTF-8 encoded, quoting it byte by byte without decoding it. Bytes
+  // of multibyte characters are all above 0x7F and never need escaping.
+  public int append(byte[] json) {
+    final var before = startEntry(quotedLength(json));
+    for (byte b : json) {
+      if (b == QUOTE || b == BACKSLASH) {
+        buffer.put(BACKSLASH).put(b);
+      } else if (b >= 0 && b < 0x20) {
+        buffer.put(BACKSLASH).put((byte) 'u').put((byte) '0').put((byte) '0');
+        buffer.put(HEX[b >> 4]).put(HEX[b & 0xF]);
+      } else {
+        buffer.put(b);
+      }
+    }
+    return endEntry(before);
+  }
+
+  public int entries() {
+    return entries;
+  }
+
+  public boolean isEmpty() {
+    return entries == 0;
+  }
+
+  // Bytes written so far, i.e. the size of the batch once closed, minus the closing bracket
+  public int size() {
+    return buffer.position();
+  }
+
+  public byte[] toByteArray() {
+    final var bytes = new byte[buffer.position() + 1];
+    buffer.duplicate().flip().get(bytes, 0, bytes.length - 1);
+    bytes[bytes.length - 1] = ARRAY_END;
+    return bytes;
+  }
+
+  // Returns the buffer to the pool, the bytes stay reserved in the memory budget until release
+  public void releaseBuffer() {
+    if (buffer != null) {
+      pool.release(buffer);
+      buffer = null;
+    }
+  }
+
+  public void release() {
+    releaseBuffer();
+    if (reservedBytes > 0) {
+      pool.memoryBudget().release(reservedBytes);
+      reservedBytes = 0;
+    }
+  }
+
+  private int startEntry(int quotedLength) {
+    final var before = buffer.position();
+    ensureCapacity(quotedLength + 3);
+    if (entries > 0) {
+      buffer.put(SEPARATOR);
+    }
+    buffer.put(QUOTE);
+    return before;
+  }
+
+  private int endEntry(int before) {
+    buffer.put(QUOTE);
+    entries++;
+    final var appended = buffer.position() - before;
+    reservedBytes += appended;
+    pool.memoryBudget().reserve(appended);
+    return appended;
+  }
+
+  private static int quotedLength(byte[] json) {
+    var length = json.length;
+    for (byte b : json) {
+      if (b == QUOTE || b == BACKSLASH) {
+        length++;
+      } else if (b >= 0 && b < 0x20) {
+        length += 5;
+      }
+    }
+    return length;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (buffer.remaining() >= additional) {
+      return;
+    }
+    final var grown =
+        pool.acquire(newCapacity(buffer.capacity(), (long) buffer.position() + additional));
+    grown.put(buffer.flip());
+    pool.release(buffer);
+    buffer = grown;
+  }
+
+  // Doubles the capacity, or grows it to the required capacity if that is larger, computed in long
+  // so that buffers past 1 GiB don't overflow
+  static int newCapacity(int capacity, long required) {
+    if (required > MAX_CAPACITY) {
+      throw new OutOfMemoryError("Batch buffer of " + required + " bytes is too large");
+    }
+    return (int) Math.max(required, Math.min(MAX_CAPACITY, (long) capacity * 2));
+  }
+}
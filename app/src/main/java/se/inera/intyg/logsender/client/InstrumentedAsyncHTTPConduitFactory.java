@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.cxf.Bus;
+import org.apache.cxf.transport.http.asyncclient.hc5.AsyncHTTPConduitFactory;
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+
+// CXF's HttpClient 5 conduit factory with the client instrumented for StoreLogConnectionMetrics.
+// The pool itself is configured through the bus properties read by AsyncHTTPConduitFactory.
+public class InstrumentedAsyncHTTPConduitFactory extends AsyncHTTPConduitFactory {
+
+  private final StoreLogConnectionMetrics metrics;
+
+  public InstrumentedAsyncHTTPConduitFactory(Bus bus, StoreLogConnectionMetrics metrics) {
+    super(bus);
+    this.metrics = metrics;
+  }
+
+  @Override
+  protected void adaptClientBuilder(HttpAsyncClientBuilder httpAsyncClientBuilder) {
+    httpAsyncClientBuilder.addExecInterceptorFirst(
+        "logsender-requests", track(metrics::requestStarted, metrics::requestDone));
+    // Runs once the connect step has leased a connection for the request
+    httpAsyncClientBuilder.addExecInterceptorAfter(
+        ChainElement.CONNECT.name(),
+        "logsender-leases",
+        track(metrics::connectionLeased, metrics::connectionReleased));
+    httpAsyncClientBuilder.addResponseInterceptorLast(
+        (response, entity, context) -> {
+          final var coreContext = HttpCoreContext.adapt(context);
+          final var endpointDetails = coreContext.getEndpointDetails();
+          if (endpointDetails != null) {
+            metrics.responseReceived(endpointDetails.getRequestCount());
+          }
+        });
+  }
+
+  static AsyncExecChainHandler track(Runnable started, Runnable done) {
+    return (request, entityProducer, scope, chain, asyncExecCallback) -> {
+      started.run();
+      final var callback = new CompletionCallback(asyncExecCallback, done);
+      try {
+        chain.proceed(request, entityProducer, scope, callback);
+      } catch (HttpException | IOException | RuntimeException e) {
+        callback.release();
+        throw e;
+      }
+    };
+  }
+
+  private static final class CompletionCallback implements AsyncExecCallback {
+
+    private final AsyncExecCallback delegate;
+    private final Runnable done;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private CompletionCallback(AsyncExecCallback delegate, Runnable done) {
+      this.delegate = delegate;
+      this.done = done;
+    }
+
+    @Override
+    public AsyncDataConsumer handleResponse(HttpResponse response, EntityDetails entityDetails)
+        throws HttpException, IOException {
+      return delegate.handleResponse(response, entityDetails);
+    }
+
+    @Override
+    public void handleInformationResponse(HttpResponse response) throws HttpException, IOException {
+      delegate.handleInformationResponse(response);
+    }
+
+    @Override
+    public void completed() {
+      release();
+      delegate.completed();
+    }
+
+    @Override
+    public void failed(Exception cause) {
+      release();
+      delegate.failed(cause);
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        done.run();
+      }
+    }
+  }
+}
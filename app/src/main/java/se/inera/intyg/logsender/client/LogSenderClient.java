@@ -24,5 +24,13 @@ import se.riv.informationsecurity.auditing.log.v2.LogType;
 
 public interface LogSenderClient {
 
+  // Oversized batches are sent as several concurrent StoreLog calls, see StoreLogChunkSender
   StoreLogResponseType sendLogMessage(List<LogType> logEntries);
+
+  boolean isOversized(List<LogType> logEntries);
+
+  // Marshals the entries into a StoreLog payload that can be sent, and resent, with sendPayload
+  StoreLogPayload toPayload(List<LogType> logEntries);
+
+  StoreLogResponseType sendPayload(StoreLogPayload payload);
 }
@@ -40,6 +40,7 @@ public class LogSenderClientImpl implements LogSenderClient {
 
   private final LogsenderProperties properties;
   private final SoapIntegrationService soapIntegrationService;
+  private final StoreLogChunkSender storeLogChunkSender;
 
   @Override
   public StoreLogResponseType sendLogMessage(List<LogType> logEntries) {
@@ -53,6 +54,18 @@ public class LogSenderClientImpl implements LogSenderClient {
       return response;
     }
 
+    if (storeLogChunkSender.isOversized(logEntries)) {
+      return storeLogChunkSender.send(logEntries, this::storeLog);
+    }
+    return storeLog(logEntries);
+  }
+
+  @Override
+  public boolean isOversized(List<LogType> logEntries) {
+    return storeLogChunkSender.isOversized(logEntries);
+  }
+
+  private StoreLogResponseType storeLog(List<LogType> logEntries) {
     final var request = new StoreLogType();
     request.getLog().addAll(logEntries);
 
@@ -70,4 +83,21 @@ public class LogSenderClientImpl implements LogSenderClient {
       throw new LoggtjanstExecutionException(e);
     }
   }
+
+  @Override
+  public StoreLogPayload toPayload(List<LogType> logEntries) {
+    final var request = new StoreLogType();
+    request.getLog().addAll(logEntries);
+    return new StoreLogPayload(soapIntegrationService.marshal(request), logEntries.size());
+  }
+
+  @Override
+  public StoreLogResponseType sendPayload(StoreLogPayload payload) {
+    try {
+      return soapIntegrationService.storeLog(
+          properties.storeLog().logicalAddress(), payload.bytes(), payload.entries());
+    } catch (WebServiceException e) {
+      throw new LoggtjanstExecutionException(e);
+    }
+  }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import se.riv.informationsecurity.auditing.log.v2.ResultCodeType;
+import se.riv.informationsecurity.auditing.log.v2.ResultType;
+
+// Sends batches with more than maxEntries entries, or an estimated request size of more than
+// maxBytes, as chunks that are stored concurrently by at most parallelism threads. The caller
+// waits for every chunk, and the responses are combined into one with the result code of the most
+// severe chunk, so a batch is only acknowledged when all of its chunks were stored. The request
+// size is estimated from the number of entries and resources, since the entries are not
+// marshalled until they are sent.
+//
+// Delivery is at least once: chunks that succeed are not tracked, so when one chunk fails the
+// whole batch is retried and the chunks that were already stored are stored again. The entries
+// keep their logIds across retries, which lets the log service identify the duplicates.
+@Component
+@Slf4j
+public class StoreLogChunkSender implements DisposableBean {
+
+  private static final int ENTRY_BYTES = 1024;
+  private static final int RESOURCE_BYTES = 512;
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final ExecutorService executor;
+
+  public StoreLogChunkSender(LogsenderProperties properties) {
+    final var oversizedBatch = properties.storeLog().oversizedBatch();
+    this.maxEntries = oversizedBatch.maxEntries();
+    this.maxBytes = oversizedBatch.maxBytes();
+    this.executor =
+        Executors.newFixedThreadPool(
+            oversizedBatch.parallelism(),
+            Thread.ofPlatform().name("storelog-chunk-", 0).daemon().factory());
+  }
+
+  public boolean isOversized(List<LogType> logEntries) {
+    return logEntries.size() > maxEntries
+        || logEntries.stream().mapToLong(StoreLogChunkSender::estimateBytes).sum() > maxBytes;
+  }
+
+  // Exceptions thrown by the sender for a chunk are rethrown once all chunks are done
+  public StoreLogResponseType send(
+      List<LogType> logEntries, Function<List<LogType>, StoreLogResponseType> sender) {
+    final var chunks = chunks(logEntries);
+    log.info("Sending batch of {} log entries as {} chunks", logEntries.size(), chunks.size());
+
+    final var mdc = MDC.getCopyOfContextMap();
+    final var futures =
+        chunks.stream()
+            .map(chunk -> CompletableFuture.supplyAsync(() -> send(chunk, sender, mdc), executor))
+            .toList();
+
+    final var responses = new ArrayList<StoreLogResponseType>(futures.size());
+    RuntimeException failure = null;
+    for (var future : futures) {
+      try {
+        responses.add(future.join());
+      } catch (CompletionException e) {
+        if (failure == null) {
+          failure =
+              e.getCause() instanceof RuntimeException runtimeException
+                  ? runtimeException
+                  : new IllegalStateException(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return combine(responses);
+  }
+
+  List<List<LogType>> chunks(List<LogType> logEntries) {
+    final var chunks = new ArrayList<List<LogType>>();
+    var chunk = new ArrayList<LogType>();
+    long chunkBytes = 0;
+    for (var logEntry : logEntries) {
+      final var entryBytes = estimateBytes(logEntry);
+      if (!chunk.isEmpty() && (chunk.size() == maxEntries || chunkBytes + entryBytes > maxBytes)) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+        chunkBytes = 0;
+      }
+      chunk.add(logEntry);
+      chunkBytes += entryBytes;
+    }
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  // The result code of the most severe chunk, with the result texts of the chunks that had it
+  static StoreLogResponseType combine(List<StoreLogResponseType> responses) {
+    final var resultCode = mostSevere(responses);
+    final var resultText =
+        IntStream.range(0, responses.size())
+            .filter(i -> Objects.equals(resultCode(responses.get(i)), resultCode))
+            .filter(i -> responses.get(i).getResult() != null)
+            .filter(i -> responses.get(i).getResult().getResultText() != null)
+            .mapToObj(
+                i ->
+                    "Chunk %d of %d: %s"
+                        .formatted(
+                            i + 1, responses.size(), responses.get(i).getResult().getResultText()))
+            .collect(Collectors.joining("; "));
+
+    final var result = new ResultType();
+    result.setResultCode(resultCode);
+    result.setResultText(resultText.isEmpty() ? null : resultText);
+    final var response = new StoreLogResponseType();
+    response.setResult(result);
+    return response;
+  }
+
+  // Not Stream.max, which rejects a null maximum, and a missing result code can be the most severe
+  private static ResultCodeType mostSevere(List<StoreLogResponseType> responses) {
+    var mostSevere = resultCode(responses.getFirst());
+    for (var response : responses) {
+      if (severity(resultCode(response)) > severity(mostSevere)) {
+        mostSevere = resultCode(response);
+      }
+    }
+    return mostSevere;
+  }
+
+  private static ResultCodeType resultCode(StoreLogResponseType response) {
+    return response.getResult() != null ? response.getResult().getResultCode() : null;
+  }
+
+  // Rejected chunks move the batch to the DLQ, unknown or missing result codes have it retried
+  private static int severity(ResultCodeType resultCode) {
+    if (resultCode == null) {
+      return 2;
+    }
+    return switch (resultCode) {
+      case OK -> 0;
+      case INFO -> 1;
+      case ERROR, VALIDATION_ERROR -> 3;
+      default -> 2;
+    };
+  }
+
+  private static long estimateBytes(LogType logEntry) {
+    final var resources =
+        logEntry.getResources() != null ? logEntry.getResources().getResource().size() : 0;
+    final var activityArgs =
+        logEntry.getActivity() != null && logEntry.getActivity().getActivityArgs() != null
+            ? logEntry.getActivity().getActivityArgs().length()
+            : 0;
+    return ENTRY_BYTES + (long) RESOURCE_BYTES * resources + activityArgs;
+  }
+
+  private static StoreLogResponseType send(
+      List<LogType> chunk,
+      Function<List<LogType>, StoreLogResponseType> sender,
+      Map<String, String> mdc) {
+    if (mdc != null) {
+      MDC.setContextMap(mdc);
+    }
+    try {
+      return sender.apply(chunk);
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+import org.apache.cxf.Bus;
+import org.apache.cxf.feature.AbstractFeature;
+import org.apache.cxf.interceptor.InterceptorProvider;
+import org.apache.cxf.interceptor.MessageSenderInterceptor;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.transport.common.gzip.GZIPInInterceptor;
+import org.apache.cxf.transport.common.gzip.GZIPOutInterceptor;
+
+// Gzip compresses StoreLog requests larger than threshold bytes with the interceptors of the CXF
+// GZIPFeature, and counts the request bytes before and after compression. The sent bytes are
+// counted below the gzip stream and the request bytes above it, so requests below the threshold
+// count as sent as is.
+public class StoreLogCompressionFeature extends AbstractFeature {
+
+  private static final String SENT_BYTES = StoreLogCompressionFeature.class.getName() + ".sent";
+
+  private final int threshold;
+  private final Counter requestBytes;
+  private final Counter sentBytes;
+  private final Counter savedBytes;
+
+  public StoreLogCompressionFeature(int threshold, MeterRegistry meterRegistry) {
+    this.threshold = threshold;
+    this.requestBytes =
+        Counter.builder("logsender.compression.bytes.in")
+            .description("StoreLog request bytes before compression")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    this.sentBytes =
+        Counter.builder("logsender.compression.bytes.out")
+            .description("StoreLog request bytes sent after compression")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    this.savedBytes =
+        Counter.builder("logsender.compression.bytes.saved")
+            .description("StoreLog request bytes saved by compression")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+  }
+
+  @Override
+  protected void initializeProvider(InterceptorProvider provider, Bus bus) {
+    provider.getInInterceptors().add(new GZIPInInterceptor());
+    provider.getInFaultInterceptors().add(new GZIPInInterceptor());
+    provider.getOutInterceptors().add(new GZIPOutInterceptor(threshold));
+    provider.getOutInterceptors().add(new SentBytesInterceptor());
+    provider.getOutInterceptors().add(new RequestBytesInterceptor());
+  }
+
+  private void record(long request, long sent) {
+    requestBytes.increment(request);
+    sentBytes.increment(sent);
+    savedBytes.increment(Math.max(0, request - sent));
+  }
+
+  private static final class SentBytesInterceptor extends AbstractPhaseInterceptor<Message> {
+
+    private SentBytesInterceptor() {
+      super(Phase.PREPARE_SEND);
+      addAfter(MessageSenderInterceptor.class.getName());
+      addBefore(GZIPOutInterceptor.class.getName());
+    }
+
+    @Override
+    public void handleMessage(Message message) {
+      final var outputStream = message.getContent(OutputStream.class);
+      if (outputStream != null) {
+        final var countingOutputStream = new CountingOutputStream(outputStream, null);
+        message.setContent(OutputStream.class, countingOutputStream);
+        message.put(SENT_BYTES, countingOutputStream);
+      }
+    }
+  }
+
+  private final class RequestBytesInterceptor extends AbstractPhaseInterceptor<Message> {
+
+    private RequestBytesInterceptor() {
+      super(Phase.PREPARE_SEND);
+      addAfter(GZIPOutInterceptor.class.getName());
+    }
+
+    @Override
+    public void handleMessage(Message message) {
+      final var outputStream = message.getContent(OutputStream.class);
+      if (outputStream != null && message.get(SENT_BYTES) instanceof CountingOutputStream sent) {
+        message.setContent(
+            OutputStream.class,
+            new CountingOutputStream(outputStream, request -> record(request, sent.count)));
+      }
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private final LongConsumer onClose;
+    private long count;
+    private boolean closed;
+
+    private CountingOutputStream(OutputStream out, LongConsumer onClose) {
+      super(out);
+      this.onClose = onClose;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    // The wrapped streams are closed first, so the sent bytes are final when recording
+    @Override
+    public void close() throws IOException {
+      super.close();
+      if (!closed && onClose != null) {
+        onClose.accept(count);
+      }
+      closed = true;
+    }
+  }
+}
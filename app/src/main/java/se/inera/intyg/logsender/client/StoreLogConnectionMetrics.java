@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+// Connection pool metrics for the async StoreLog transport. Requests are counted when they enter
+// the HTTP client and connections when they are leased for a request, so pending is the number of
+// requests waiting for a connection.
+@Component
+public class StoreLogConnectionMetrics {
+
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger leased = new AtomicInteger();
+  private final Counter newConnections;
+  private final Counter reusedConnections;
+
+  public StoreLogConnectionMetrics(MeterRegistry meterRegistry) {
+    Gauge.builder("logsender.http.pool.leased", leased, AtomicInteger::get)
+        .description("Connections leased for StoreLog requests")
+        .register(meterRegistry);
+    Gauge.builder("logsender.http.pool.pending", this, StoreLogConnectionMetrics::pending)
+        .description("StoreLog requests waiting for a connection")
+        .register(meterRegistry);
+    this.newConnections =
+        Counter.builder("logsender.http.pool.requests")
+            .description("StoreLog responses by whether the connection was new or reused")
+            .tag("connection", "new")
+            .register(meterRegistry);
+    this.reusedConnections =
+        Counter.builder("logsender.http.pool.requests")
+            .description("StoreLog responses by whether the connection was new or reused")
+            .tag("connection", "reused")
+            .register(meterRegistry);
+  }
+
+  void requestStarted() {
+    active.incrementAndGet();
+  }
+
+  void requestDone() {
+    active.decrementAndGet();
+  }
+
+  void connectionLeased() {
+    leased.incrementAndGet();
+  }
+
+  void connectionReleased() {
+    leased.decrementAndGet();
+  }
+
+  // requestCount is the number of requests sent on the connection, including this one
+  void responseReceived(long requestCount) {
+    if (requestCount > 1) {
+      reusedConnections.increment();
+    } else {
+      newConnections.increment();
+    }
+  }
+
+  public int leased() {
+    return leased.get();
+  }
+
+  public int pending() {
+    return Math.max(0, active.get() - leased.get());
+  }
+}
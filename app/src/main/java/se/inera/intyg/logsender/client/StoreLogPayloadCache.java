@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.LinkedHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+
+// Keeps the marshalled StoreLog payload of batches that are being sent, keyed by batch id, so a
+// redelivered batch is resent as is instead of being parsed, converted and marshalled again.
+// Entries are removed once Loggtjänsten has answered, and the least recently used entries are
+// evicted when holding more than maxBatches batches or maxBytes bytes. Payloads can only be sent
+// by the streaming client, so the cache is disabled unless streaming transport is enabled.
+@Component
+@Slf4j
+public class StoreLogPayloadCache {
+
+  private final boolean enabled;
+  private final int maxBatches;
+  private final long maxBytes;
+  private final LinkedHashMap<String, StoreLogPayload> payloads =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final Counter hits;
+  private final Counter misses;
+
+  private long bytes;
+
+  public StoreLogPayloadCache(LogsenderProperties properties, MeterRegistry meterRegistry) {
+    final var fragmentCache = properties.storeLog().fragmentCache();
+    final var streaming = properties.storeLog().transport().streaming();
+    if (fragmentCache.enabled() && !streaming) {
+      log.warn("Fragment cache requires streaming transport, the cache will not be used.");
+    }
+    this.enabled = fragmentCache.enabled() && streaming;
+    this.maxBatches = fragmentCache.maxBatches();
+    this.maxBytes = fragmentCache.maxBytes();
+
+    this.hits =
+        Counter.builder("logsender.fragment.cache.gets")
+            .description("Lookups of marshalled batches in the fragment cache")
+            .tag("result", "hit")
+            .register(meterRegistry);
+    this.misses =
+        Counter.builder("logsender.fragment.cache.gets")
+            .description("Lookups of marshalled batches in the fragment cache")
+            .tag("result", "miss")
+            .register(meterRegistry);
+    Gauge.builder("logsender.fragment.cache.size", this, StoreLogPayloadCache::size)
+        .description("Batches held in the fragment cache")
+        .register(meterRegistry);
+    Gauge.builder("logsender.fragment.cache.bytes", this, StoreLogPayloadCache::bytes)
+        .description("Bytes held in the fragment cache")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public synchronized StoreLogPayload get(String batchId) {
+    if (!enabled || batchId == null) {
+      return null;
+    }
+
+    final var payload = payloads.get(batchId);
+    (payload != null ? hits : misses).increment();
+    return payload;
+  }
+
+  public synchronized void put(String batchId, StoreLogPayload payload) {
+    if (!enabled || batchId == null || payload.bytes().length > maxBytes) {
+      return;
+    }
+
+    final var previous = payloads.put(batchId, payload);
+    bytes += payload.bytes().length - (previous != null ? previous.bytes().length : 0);
+    final var iterator = payloads.values().iterator();
+    while (payloads.size() > maxBatches || bytes > maxBytes) {
+      bytes -= iterator.next().bytes().length;
+      iterator.remove();
+    }
+  }
+
+  public synchronized void remove(String batchId) {
+    if (batchId == null) {
+      return;
+    }
+
+    final var removed = payloads.remove(batchId);
+    if (removed != null) {
+      bytes -= removed.bytes().length;
+    }
+  }
+
+  public synchronized int size() {
+    return payloads.size();
+  }
+
+  public synchronized long bytes() {
+    return bytes;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.ext.logging.event.EventType;
+import org.apache.cxf.ext.logging.event.LogEvent;
+import org.apache.cxf.ext.logging.event.LogEventSender;
+import org.apache.cxf.ext.logging.event.LogMessageFormatter;
+import org.apache.cxf.ext.logging.event.PrettyLoggingFilter;
+import org.apache.cxf.message.Exchange;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.inera.intyg.logsender.config.LogsenderProperties.PayloadLoggingMode;
+
+// Decides which StoreLog requests and responses are logged, see StoreLogPayloadLoggingFeature.
+// HEADERS logs every exchange without payload, SAMPLED logs one in sampleRate exchanges and
+// ON_ERROR keeps the events of exchanges in flight, at most the latest bufferSize, and only logs
+// the events of an exchange that fails. An exchange fails on a client error, an HTTP error or
+// SOAP fault response, or a response with result code ERROR or VALIDATION_ERROR, which
+// Loggtjänsten returns with HTTP 200. The events of other exchanges are dropped once their
+// response has been read. In OFF mode nothing is captured. The mode can be changed at runtime
+// through the payloadlogging actuator endpoint on JMX.
+@Component
+@Slf4j
+public class StoreLogPayloadLogging implements LogEventSender {
+
+  private static final String CAPTURED = StoreLogPayloadLogging.class.getName() + ".captured";
+  private static final Pattern ERROR_RESULT =
+      Pattern.compile("resultCode>\\s*(ERROR|VALIDATION_ERROR)\\s*</");
+
+  private final int bufferSize;
+  private final ArrayDeque<LogEvent> buffer;
+  private final AtomicLong exchanges = new AtomicLong();
+  private final LogEventSender payloadWriter;
+  private final LogEventSender failureWriter;
+
+  private volatile Settings settings;
+
+  public StoreLogPayloadLogging(LogsenderProperties properties) {
+    final var payloadLogging = properties.storeLog().payloadLogging();
+    this.settings = new Settings(payloadLogging.mode(), payloadLogging.sampleRate());
+    this.bufferSize = payloadLogging.bufferSize();
+    this.buffer = new ArrayDeque<>(bufferSize);
+    this.payloadWriter = prettyWriter(event -> log.info(LogMessageFormatter.format(event)));
+    this.failureWriter = prettyWriter(event -> log.warn(LogMessageFormatter.format(event)));
+  }
+
+  public record Settings(PayloadLoggingMode mode, int sampleRate) {}
+
+  public Settings settings() {
+    return settings;
+  }
+
+  public Settings configure(PayloadLoggingMode mode, Integer sampleRate) {
+    final var rate = sampleRate != null ? sampleRate : settings.sampleRate();
+    if (rate < 1) {
+      throw new IllegalArgumentException("Sample rate must be at least 1, was " + rate);
+    }
+
+    settings = new Settings(mode, rate);
+    if (mode != PayloadLoggingMode.ON_ERROR) {
+      synchronized (this) {
+        buffer.clear();
+      }
+    }
+    log.info("StoreLog payload logging set to {} with sample rate {}", mode, rate);
+    return settings;
+  }
+
+  // Called for each outgoing request, the decision is kept on the exchange for the response
+  boolean capture(Exchange exchange) {
+    final var current = settings;
+    final var captured =
+        switch (current.mode()) {
+          case OFF -> false;
+          case HEADERS, ON_ERROR -> true;
+          case SAMPLED -> exchanges.getAndIncrement() % current.sampleRate() == 0;
+        };
+    if (captured) {
+      exchange.put(CAPTURED, Boolean.TRUE);
+    }
+    return captured;
+  }
+
+  boolean isCaptured(Exchange exchange) {
+    return Boolean.TRUE.equals(exchange.get(CAPTURED));
+  }
+
+  // HEADERS logs no payload, so the interceptors need not copy it
+  boolean isPayloadLogged() {
+    return settings.mode() != PayloadLoggingMode.HEADERS;
+  }
+
+  // Writes the buffered events of a failed exchange when logging on error
+  void failed(Exchange exchange) {
+    removeBuffered(exchange).forEach(failureWriter::send);
+  }
+
+  // Drops the buffered events of an exchange whose response has been read, unless the response
+  // holds an error result code
+  void completed(Exchange exchange) {
+    final var events = removeBuffered(exchange);
+    if (events.stream().anyMatch(StoreLogPayloadLogging::isErrorResult)) {
+      events.forEach(failureWriter::send);
+    }
+  }
+
+  static boolean isErrorResult(LogEvent event) {
+    return event.getType() == EventType.RESP_IN
+        && event.getPayload() != null
+        && ERROR_RESULT.matcher(event.getPayload()).find();
+  }
+
+  private List<LogEvent> removeBuffered(Exchange exchange) {
+    final var exchangeId = (String) exchange.get(LogEvent.KEY_EXCHANGE_ID);
+    if (settings.mode() != PayloadLoggingMode.ON_ERROR || exchangeId == null) {
+      return List.of();
+    }
+
+    synchronized (this) {
+      final var events =
+          buffer.stream().filter(event -> exchangeId.equals(event.getExchangeId())).toList();
+      buffer.removeIf(event -> exchangeId.equals(event.getExchangeId()));
+      return events;
+    }
+  }
+
+  @Override
+  public void send(LogEvent event) {
+    switch (settings.mode()) {
+      case OFF -> {}
+      case HEADERS -> {
+        // The payload is suppressed by the interceptors, or was captured before the mode changed
+        event.setPayload(null);
+        log.info(LogMessageFormatter.format(event));
+      }
+      case SAMPLED -> payloadWriter.send(event);
+      case ON_ERROR -> buffer(event);
+    }
+  }
+
+  synchronized int buffered() {
+    return buffer.size();
+  }
+
+  private synchronized void buffer(LogEvent event) {
+    if (buffer.size() == bufferSize) {
+      buffer.removeFirst();
+    }
+    buffer.addLast(event);
+  }
+
+  private static LogEventSender prettyWriter(LogEventSender writer) {
+    final var prettyLoggingFilter = new PrettyLoggingFilter(writer);
+    prettyLoggingFilter.setPrettyLogging(true);
+    return prettyLoggingFilter;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.OptionalParameter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.client.StoreLogPayloadLogging.Settings;
+import se.inera.intyg.logsender.config.LogsenderProperties.PayloadLoggingMode;
+
+// Shows and switches the StoreLog payload logging mode, e.g. the configure operation of the
+// org.springframework.boot:type=Endpoint,name=Payloadlogging MBean with mode SAMPLED and
+// sampleRate 10. It is exposed on JMX only, since the write operation has no authentication.
+@Component
+@Endpoint(id = "payloadlogging")
+@RequiredArgsConstructor
+public class StoreLogPayloadLoggingEndpoint {
+
+  private final StoreLogPayloadLogging storeLogPayloadLogging;
+
+  @ReadOperation
+  public Settings settings() {
+    return storeLogPayloadLogging.settings();
+  }
+
+  @WriteOperation
+  public Settings configure(PayloadLoggingMode mode, @OptionalParameter Integer sampleRate) {
+    try {
+      return storeLogPayloadLogging.configure(mode, sampleRate);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+    }
+  }
+}
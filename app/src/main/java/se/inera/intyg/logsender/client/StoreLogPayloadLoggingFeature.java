@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.ext.logging.LoggingInInterceptor;
+import org.apache.cxf.ext.logging.LoggingOutInterceptor;
+import org.apache.cxf.ext.logging.event.LogEvent;
+import org.apache.cxf.feature.AbstractFeature;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.InterceptorProvider;
+import org.apache.cxf.message.Message;
+
+// Replaces the CXF LoggingFeature for the StoreLog client. The logging interceptors only run for
+// exchanges selected by StoreLogPayloadLogging, so unselected exchanges are not copied into a
+// cache, and exchanges that fail on the client or get an HTTP error or SOAP fault response are
+// reported to it. In HEADERS mode the interceptors suppress the content instead of copying it.
+// Like LoggingFeature, the interceptors are also added to the fault chains.
+public class StoreLogPayloadLoggingFeature extends AbstractFeature {
+
+  private static final int LIMIT = 1024 * 1024;
+
+  private final StoreLogPayloadLogging payloadLogging;
+
+  public StoreLogPayloadLoggingFeature(StoreLogPayloadLogging payloadLogging) {
+    this.payloadLogging = payloadLogging;
+  }
+
+  @Override
+  protected void initializeProvider(InterceptorProvider provider, Bus bus) {
+    final var out = new OutInterceptor(payloadLogging);
+    final var in = new InInterceptor(payloadLogging);
+    provider.getOutInterceptors().add(out);
+    provider.getOutFaultInterceptors().add(out);
+    provider.getInInterceptors().add(in);
+    provider.getInFaultInterceptors().add(in);
+  }
+
+  private static final class OutInterceptor extends LoggingOutInterceptor {
+
+    private final StoreLogPayloadLogging payloadLogging;
+
+    private OutInterceptor(StoreLogPayloadLogging payloadLogging) {
+      super(payloadLogging);
+      this.payloadLogging = payloadLogging;
+      setLimit(LIMIT);
+    }
+
+    @Override
+    protected boolean shouldLogContent(LogEvent event) {
+      return payloadLogging.isPayloadLogged() && super.shouldLogContent(event);
+    }
+
+    @Override
+    public void handleMessage(Message message) throws Fault {
+      if (payloadLogging.capture(message.getExchange())) {
+        super.handleMessage(message);
+      }
+    }
+
+    @Override
+    public void handleFault(Message message) {
+      super.handleFault(message);
+      if (payloadLogging.isCaptured(message.getExchange())) {
+        payloadLogging.failed(message.getExchange());
+      }
+    }
+  }
+
+  private static final class InInterceptor extends LoggingInInterceptor {
+
+    private final StoreLogPayloadLogging payloadLogging;
+
+    private InInterceptor(StoreLogPayloadLogging payloadLogging) {
+      super(payloadLogging);
+      this.payloadLogging = payloadLogging;
+      setLimit(LIMIT);
+    }
+
+    @Override
+    protected boolean shouldLogContent(LogEvent event) {
+      return payloadLogging.isPayloadLogged() && super.shouldLogContent(event);
+    }
+
+    @Override
+    public void handleMessage(Message message) throws Fault {
+      if (!payloadLogging.isCaptured(message.getExchange())) {
+        return;
+      }
+
+      super.handleMessage(message);
+      if (message == message.getExchange().getInFaultMessage()
+          || (message.get(Message.RESPONSE_CODE) instanceof Integer responseCode
+              && responseCode >= 400)) {
+        payloadLogging.failed(message.getExchange());
+      } else {
+        payloadLogging.completed(message.getExchange());
+      }
+    }
+
+    @Override
+    public void handleFault(Message message) {
+      super.handleFault(message);
+      if (payloadLogging.isCaptured(message.getExchange())) {
+        payloadLogging.failed(message.getExchange());
+      }
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import jakarta.jws.WebMethod;
+import jakarta.jws.WebParam;
+import jakarta.jws.WebService;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.util.JAXBSource;
+import jakarta.xml.ws.Binding;
+import jakarta.xml.ws.BindingProvider;
+import jakarta.xml.ws.Dispatch;
+import jakarta.xml.ws.EndpointReference;
+import jakarta.xml.ws.WebServiceException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.cxf.headers.Header;
+import org.apache.cxf.jaxb.JAXBDataBinding;
+import se.riv.informationsecurity.auditing.log.StoreLog.v2.rivtabp21.StoreLogResponderInterface;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogType;
+
+// Sends StoreLog requests through a CXF Dispatch in PAYLOAD mode instead of the JAX-WS proxy. The
+// request is handed to CXF as a JAXBSource, which CXF copies to the outbound XMLStreamWriter while
+// it is being marshalled, so LogType entries go to the (chunked) HTTP stream as they are written
+// instead of the whole request being marshalled into a buffer first. Element names, the SOAP
+// action and the LogicalAddress header are taken from the annotations of the generated
+// StoreLogResponderInterface, so both clients send the same message. Requests can also be
+// marshalled up front and sent as bytes, see StoreLogPayloadCache.
+public class StreamingStoreLogClient implements StoreLogResponderInterface, BindingProvider {
+
+  public static final QName SERVICE_NAME = new QName(namespace(), "StoreLogResponderService");
+  public static final QName PORT_NAME = new QName(namespace(), "StoreLogResponderPort");
+
+  private final Dispatch<Source> dispatch;
+  private final JAXBContext jaxbContext;
+  private final JAXBDataBinding headerDataBinding;
+  private final String soapAction;
+  private final QName logicalAddressName;
+  private final QName requestName;
+
+  public StreamingStoreLogClient(Dispatch<Source> dispatch) throws JAXBException {
+    this.dispatch = dispatch;
+    this.jaxbContext = JAXBContext.newInstance(StoreLogType.class, StoreLogResponseType.class);
+    this.headerDataBinding = new JAXBDataBinding(String.class);
+
+    final var storeLog = storeLogMethod();
+    this.soapAction = storeLog.getAnnotation(WebMethod.class).action();
+    this.logicalAddressName = parameterName(storeLog, 0);
+    this.requestName = parameterName(storeLog, 1);
+  }
+
+  @Override
+  public StoreLogResponseType storeLog(String logicalAddress, StoreLogType parameters) {
+    try {
+      return invoke(
+          logicalAddress,
+          new JAXBSource(
+              jaxbContext.createMarshaller(),
+              new JAXBElement<>(requestName, StoreLogType.class, parameters)));
+    } catch (JAXBException e) {
+      throw new WebServiceException("Could not marshal StoreLog request", e);
+    }
+  }
+
+  // Sends a payload produced by marshal, e.g. when resending a batch
+  public StoreLogResponseType storeLog(String logicalAddress, byte[] payload) {
+    return invoke(logicalAddress, new StreamSource(new ByteArrayInputStream(payload)));
+  }
+
+  // The StoreLog element of a request as UTF-8 encoded XML, without XML declaration
+  public byte[] marshal(StoreLogType parameters) {
+    try {
+      final var marshaller = jaxbContext.createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+      final var out = new ByteArrayOutputStream();
+      marshaller.marshal(new JAXBElement<>(requestName, StoreLogType.class, parameters), out);
+      return out.toByteArray();
+    } catch (JAXBException e) {
+      throw new WebServiceException("Could not marshal StoreLog request", e);
+    }
+  }
+
+  // The request context is thread local, see LogSenderWsConfig, so concurrent calls do not share
+  // their LogicalAddress header
+  private StoreLogResponseType invoke(String logicalAddress, Source request) {
+    final var requestContext = dispatch.getRequestContext();
+    requestContext.put(BindingProvider.SOAPACTION_USE_PROPERTY, true);
+    requestContext.put(BindingProvider.SOAPACTION_URI_PROPERTY, soapAction);
+    requestContext.put(
+        Header.HEADER_LIST,
+        List.of(new Header(logicalAddressName, logicalAddress, headerDataBinding)));
+
+    final var response = dispatch.invoke(request);
+    try {
+      return jaxbContext
+          .createUnmarshaller()
+          .unmarshal(response, StoreLogResponseType.class)
+          .getValue();
+    } catch (JAXBException e) {
+      throw new WebServiceException("Could not unmarshal StoreLog response", e);
+    }
+  }
+
+  @Override
+  public Map<String, Object> getRequestContext() {
+    return dispatch.getRequestContext();
+  }
+
+  @Override
+  public Map<String, Object> getResponseContext() {
+    return dispatch.getResponseContext();
+  }
+
+  @Override
+  public Binding getBinding() {
+    return dispatch.getBinding();
+  }
+
+  @Override
+  public EndpointReference getEndpointReference() {
+    return dispatch.getEndpointReference();
+  }
+
+  @Override
+  public <T extends EndpointReference> T getEndpointReference(Class<T> clazz) {
+    return dispatch.getEndpointReference(clazz);
+  }
+
+  private static String namespace() {
+    return StoreLogResponderInterface.class.getAnnotation(WebService.class).targetNamespace();
+  }
+
+  private static Method storeLogMethod() {
+    try {
+      return StoreLogResponderInterface.class.getMethod(
+          "storeLog", String.class, StoreLogType.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static QName parameterName(Method method, int index) {
+    for (var annotation : method.getParameterAnnotations()[index]) {
+      if (annotation instanceof WebParam webParam) {
+        return new QName(webParam.targetNamespace(), webParam.name());
+      }
+    }
+    throw new IllegalStateException("No @WebParam on parameter " + index + " of " + method);
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.config;
+
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+// SSLContext that enables the configured protocols and cipher suites, in preference order, on
+// every socket and engine it creates and records the duration of their initial handshake. Sockets
+// are used by the URLConnection conduit and engines by the HttpClient based conduits.
+final class HandshakeTimingSslContext extends SSLContext {
+
+  // A handshake resumed a cached session when the session was created before the handshake started
+  record Timers(Timer full, Timer resumed) {
+
+    void record(SSLSession session, long startedMillis, long durationNanos) {
+      final var timer = session.getCreationTime() < startedMillis ? resumed : full;
+      timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  HandshakeTimingSslContext(SSLContext delegate, SSLParameters parameters, Timers timers) {
+    super(new Spi(delegate, parameters, timers), delegate.getProvider(), delegate.getProtocol());
+  }
+
+  private static final class Spi extends SSLContextSpi {
+
+    private final SSLContext delegate;
+    private final SSLParameters parameters;
+    private final Timers timers;
+
+    private Spi(SSLContext delegate, SSLParameters parameters, Timers timers) {
+      this.delegate = delegate;
+      this.parameters = parameters;
+      this.timers = timers;
+    }
+
+    @Override
+    protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr)
+        throws KeyManagementException {
+      delegate.init(km, tm, sr);
+    }
+
+    @Override
+    protected SSLSocketFactory engineGetSocketFactory() {
+      return new TimingSocketFactory(delegate.getSocketFactory(), parameters, timers);
+    }
+
+    @Override
+    protected SSLServerSocketFactory engineGetServerSocketFactory() {
+      return delegate.getServerSocketFactory();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine() {
+      return new TimingEngine(delegate.createSSLEngine(), parameters, timers);
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine(String host, int port) {
+      return new TimingEngine(delegate.createSSLEngine(host, port), parameters, timers);
+    }
+
+    @Override
+    protected SSLSessionContext engineGetServerSessionContext() {
+      return delegate.getServerSessionContext();
+    }
+
+    @Override
+    protected SSLSessionContext engineGetClientSessionContext() {
+      return delegate.getClientSessionContext();
+    }
+
+    @Override
+    protected SSLParameters engineGetDefaultSSLParameters() {
+      final var defaults = delegate.getDefaultSSLParameters();
+      defaults.setProtocols(parameters.getProtocols());
+      defaults.setCipherSuites(parameters.getCipherSuites());
+      return defaults;
+    }
+
+    @Override
+    protected SSLParameters engineGetSupportedSSLParameters() {
+      return delegate.getSupportedSSLParameters();
+    }
+  }
+
+  private static final class TimingSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final SSLParameters parameters;
+    private final Timers timers;
+
+    private TimingSocketFactory(
+        SSLSocketFactory delegate, SSLParameters parameters, Timers timers) {
+      this.delegate = delegate;
+      this.parameters = parameters;
+      this.timers = timers;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+      return parameters.getCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+      return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose)
+        throws IOException {
+      return timed(delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+      return timed(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+        throws IOException {
+      return timed(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+      return timed(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(
+        InetAddress address, int port, InetAddress localAddress, int localPort)
+        throws IOException {
+      return timed(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    // Unconnected sockets are not created, the inherited createSocket() throws, so HTTPS clients
+    // connect a plain socket and layer TLS over it. All sockets are thus connected when created
+    // and start their handshake right away, so the time from creation to completion is the
+    // handshake without the connect.
+    private Socket timed(Socket socket) {
+      final var sslSocket = (SSLSocket) socket;
+      sslSocket.setEnabledProtocols(parameters.getProtocols());
+      sslSocket.setEnabledCipherSuites(parameters.getCipherSuites());
+      final var startedMillis = System.currentTimeMillis();
+      final var started = System.nanoTime();
+      final var recorded = new AtomicBoolean();
+      sslSocket.addHandshakeCompletedListener(
+          event -> {
+            if (recorded.compareAndSet(false, true)) {
+              timers.record(event.getSession(), startedMillis, System.nanoTime() - started);
+            }
+          });
+      return sslSocket;
+    }
+  }
+
+  private static final class TimingEngine extends SSLEngine {
+
+    private final SSLEngine delegate;
+    private final Timers timers;
+    private long handshakeStartedMillis;
+    private long handshakeStarted;
+    private boolean recorded;
+
+    private TimingEngine(SSLEngine delegate, SSLParameters parameters, Timers timers) {
+      super(delegate.getPeerHost(), delegate.getPeerPort());
+      this.delegate = delegate;
+      this.timers = timers;
+      delegate.setEnabledProtocols(parameters.getProtocols());
+      delegate.setEnabledCipherSuites(parameters.getCipherSuites());
+    }
+
+    @Override
+    public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst)
+        throws SSLException {
+      handshakeStarting();
+      return handshakeProgress(delegate.wrap(srcs, offset, length, dst));
+    }
+
+    @Override
+    public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length)
+        throws SSLException {
+      handshakeStarting();
+      return handshakeProgress(delegate.unwrap(src, dsts, offset, length));
+    }
+
+    @Override
+    public void beginHandshake() throws SSLException {
+      handshakeStarting();
+      delegate.beginHandshake();
+    }
+
+    private synchronized void handshakeStarting() {
+      if (handshakeStarted == 0) {
+        handshakeStartedMillis = System.currentTimeMillis();
+        handshakeStarted = System.nanoTime();
+      }
+    }
+
+    private synchronized SSLEngineResult handshakeProgress(SSLEngineResult result) {
+      if (!recorded && result.getHandshakeStatus() == HandshakeStatus.FINISHED) {
+        recorded = true;
+        timers.record(
+            delegate.getSession(), handshakeStartedMillis, System.nanoTime() - handshakeStarted);
+      }
+      return result;
+    }
+
+    @Override
+    public Runnable getDelegatedTask() {
+      return delegate.getDelegatedTask();
+    }
+
+    @Override
+    public void closeInbound() throws SSLException {
+      delegate.closeInbound();
+    }
+
+    @Override
+    public boolean isInboundDone() {
+      return delegate.isInboundDone();
+    }
+
+    @Override
+    public void closeOutbound() {
+      delegate.closeOutbound();
+    }
+
+    @Override
+    public boolean isOutboundDone() {
+      return delegate.isOutboundDone();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+      return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+      return delegate.getEnabledCipherSuites();
+    }
+
+    @Override
+    public void setEnabledCipherSuites(String[] suites) {
+      delegate.setEnabledCipherSuites(suites);
+    }
+
+    @Override
+    public String[] getSupportedProtocols() {
+      return delegate.getSupportedProtocols();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+      return delegate.getEnabledProtocols();
+    }
+
+    @Override
+    public void setEnabledProtocols(String[] protocols) {
+      delegate.setEnabledProtocols(protocols);
+    }
+
+    @Override
+    public SSLSession getSession() {
+      return delegate.getSession();
+    }
+
+    @Override
+    public SSLSession getHandshakeSession() {
+      return delegate.getHandshakeSession();
+    }
+
+    @Override
+    public HandshakeStatus getHandshakeStatus() {
+      return delegate.getHandshakeStatus();
+    }
+
+    @Override
+    public void setUseClientMode(boolean mode) {
+      delegate.setUseClientMode(mode);
+    }
+
+    @Override
+    public boolean getUseClientMode() {
+      return delegate.getUseClientMode();
+    }
+
+    @Override
+    public void setNeedClientAuth(boolean need) {
+      delegate.setNeedClientAuth(need);
+    }
+
+    @Override
+    public boolean getNeedClientAuth() {
+      return delegate.getNeedClientAuth();
+    }
+
+    @Override
+    public void setWantClientAuth(boolean want) {
+      delegate.setWantClientAuth(want);
+    }
+
+    @Override
+    public boolean getWantClientAuth() {
+      return delegate.getWantClientAuth();
+    }
+
+    @Override
+    public void setEnableSessionCreation(boolean flag) {
+      delegate.setEnableSessionCreation(flag);
+    }
+
+    @Override
+    public boolean getEnableSessionCreation() {
+      return delegate.getEnableSessionCreation();
+    }
+
+    @Override
+    public SSLParameters getSSLParameters() {
+      return delegate.getSSLParameters();
+    }
+
+    @Override
+    public void setSSLParameters(SSLParameters params) {
+      delegate.setSSLParameters(params);
+    }
+
+    @Override
+    public String getApplicationProtocol() {
+      return delegate.getApplicationProtocol();
+    }
+
+    @Override
+    public String getHandshakeApplicationProtocol() {
+      return delegate.getHandshakeApplicationProtocol();
+    }
+
+    @Override
+    public void setHandshakeApplicationProtocolSelector(
+        BiFunction<SSLEngine, List<String>, String> selector) {
+      delegate.setHandshakeApplicationProtocolSelector(selector);
+    }
+
+    @Override
+    public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+      return delegate.getHandshakeApplicationProtocolSelector();
+    }
+  }
+}
@@ -18,44 +18,56 @@
  */
 package se.inera.intyg.logsender.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
-import java.io.FileInputStream;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.ws.Service;
+import jakarta.xml.ws.soap.SOAPBinding;
 import java.io.IOException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import javax.net.ssl.KeyManager;
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
+import java.util.List;
+import javax.xml.transform.Source;
 import lombok.RequiredArgsConstructor;
+import org.apache.cxf.Bus;
+import org.apache.cxf.BusFactory;
 import org.apache.cxf.annotations.SchemaValidation;
 import org.apache.cxf.annotations.SchemaValidation.SchemaValidationType;
-import org.apache.cxf.configuration.jsse.TLSClientParameters;
-import org.apache.cxf.configuration.security.FiltersType;
-import org.apache.cxf.ext.logging.LoggingFeature;
+import org.apache.cxf.feature.AbstractFeature;
 import org.apache.cxf.frontend.ClientProxy;
+import org.apache.cxf.jaxws.DispatchImpl;
 import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.apache.cxf.jaxws.ServiceImpl;
 import org.apache.cxf.jaxws.spring.JaxWsProxyFactoryBeanDefinitionParser.JAXWSSpringClientProxyFactoryBean;
 import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transport.http.HTTPConduitFactory;
 import org.apache.cxf.transport.http.HttpConduitConfig;
+import org.apache.cxf.transport.http.asyncclient.hc5.AsyncHTTPConduitFactory;
+import org.apache.cxf.transport.http.asyncclient.hc5.AsyncHTTPConduitFactory.UseAsyncPolicy;
 import org.apache.cxf.transports.http.configuration.ConnectionType;
 import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
+import se.inera.intyg.logsender.client.InstrumentedAsyncHTTPConduitFactory;
+import se.inera.intyg.logsender.client.StoreLogCompressionFeature;
+import se.inera.intyg.logsender.client.StoreLogConnectionMetrics;
+import se.inera.intyg.logsender.client.StoreLogPayloadLogging;
+import se.inera.intyg.logsender.client.StoreLogPayloadLoggingFeature;
+import se.inera.intyg.logsender.client.StreamingStoreLogClient;
 import se.riv.informationsecurity.auditing.log.StoreLog.v2.rivtabp21.StoreLogResponderInterface;
 
 @Configuration
 @RequiredArgsConstructor
 public class LogSenderWsConfig {
 
-  private static final int LOG_MESSAGE_SIZE = 1024;
   private final LogsenderProperties properties;
+  private final StoreLogConnectionMetrics storeLogConnectionMetrics;
+  private final StoreLogTlsSupport storeLogTlsSupport;
+  private final StoreLogPayloadLogging storeLogPayloadLogging;
+  private final MeterRegistry meterRegistry;
 
   @Resource private Environment env;
 
@@ -63,54 +75,116 @@ public class LogSenderWsConfig {
   @Profile("!testability")
   @SchemaValidation(type = SchemaValidationType.BOTH)
   public StoreLogResponderInterface storeLogClient()
-      throws UnrecoverableKeyException,
-          CertificateException,
-          NoSuchAlgorithmException,
-          KeyStoreException,
-          IOException {
-    final var jaxWsProxyFactoryBean = createJaxWsProxyFactoryBean();
+      throws GeneralSecurityException, IOException, JAXBException {
+    if (properties.storeLog().transport().streaming()) {
+      return createStreamingStoreLogClient();
+    }
+
+    final var jaxWsProxyFactoryBean = createJaxWsProxyFactoryBean(storeLogBus());
     final var storeLogClient = (StoreLogResponderInterface) jaxWsProxyFactoryBean.create();
     setClient(storeLogClient);
     return storeLogClient;
   }
 
-  private JaxWsProxyFactoryBean createJaxWsProxyFactoryBean() {
+  // Requests are streamed with chunked transfer once they exceed the chunking threshold
+  private StoreLogResponderInterface createStreamingStoreLogClient()
+      throws GeneralSecurityException, IOException, JAXBException {
+    final var service =
+        new ServiceImpl(storeLogBus(), null, StreamingStoreLogClient.SERVICE_NAME, null);
+    service.addPort(
+        StreamingStoreLogClient.PORT_NAME,
+        SOAPBinding.SOAP11HTTP_BINDING,
+        properties.storeLog().endpointUrl());
+    final var dispatch =
+        service.createDispatch(
+            StreamingStoreLogClient.PORT_NAME,
+            Source.class,
+            Service.Mode.PAYLOAD,
+            features().toArray(AbstractFeature[]::new));
+
+    final var client = ((DispatchImpl<Source>) dispatch).getClient();
+    client.setThreadLocalRequestContext(true);
+    final var httpConduit = (HTTPConduit) client.getConduit();
+    if (!Arrays.asList(this.env.getActiveProfiles()).contains("dev")) {
+      configureTlsParameters().apply(httpConduit);
+      storeLogTlsSupport.prewarm(properties.storeLog().endpointUrl());
+    }
+    final var httpClientPolicy = httpConduit.getClient();
+    httpClientPolicy.setAllowChunking(true);
+    httpClientPolicy.setChunkingThreshold(properties.storeLog().transport().chunkingThreshold());
+    configureHttpClientPolicy(httpClientPolicy);
+    return new StreamingStoreLogClient(dispatch);
+  }
+
+  // The async conduit keeps one connection pool per bus, so the StoreLog clients share a bus of
+  // their own with the pool settings read by AsyncHTTPConduitFactory. The bus is shut down with
+  // the context, which closes the pool.
+  @Bean(destroyMethod = "shutdown")
+  @Profile("!testability")
+  public Bus storeLogBus() {
+    final var bus = BusFactory.newInstance().createBus();
+    final var httpClient = properties.storeLog().transport().httpClient();
+    if (!httpClient.async()) {
+      return bus;
+    }
+
+    bus.setProperty(AsyncHTTPConduitFactory.USE_POLICY, UseAsyncPolicy.ALWAYS);
+    bus.setProperty(AsyncHTTPConduitFactory.MAX_CONNECTIONS, httpClient.maxConnections());
+    bus.setProperty(
+        AsyncHTTPConduitFactory.MAX_PER_HOST_CONNECTIONS, httpClient.maxConnectionsPerHost());
+    bus.setProperty(AsyncHTTPConduitFactory.CONNECTION_TTL, httpClient.connectionTtl());
+    bus.setExtension(
+        new InstrumentedAsyncHTTPConduitFactory(bus, storeLogConnectionMetrics),
+        HTTPConduitFactory.class);
+    return bus;
+  }
+
+  // The receive timeout is the upper bound, SoapIntegrationServiceImpl sets it per call when
+  // adaptive timeouts are enabled
+  private void configureHttpClientPolicy(HTTPClientPolicy httpClientPolicy) {
+    final var timeout = properties.storeLog().transport().timeout();
+    httpClientPolicy.setConnectionTimeout(timeout.connectTimeout());
+    httpClientPolicy.setReceiveTimeout(timeout.maxReceiveTimeout());
+    if (properties.storeLog().transport().httpClient().http2()) {
+      httpClientPolicy.setVersion("2");
+    }
+  }
+
+  private JaxWsProxyFactoryBean createJaxWsProxyFactoryBean(Bus bus) {
     final var jaxWsProxyFactoryBean = new JAXWSSpringClientProxyFactoryBean();
+    jaxWsProxyFactoryBean.setBus(bus);
     jaxWsProxyFactoryBean.setServiceClass(StoreLogResponderInterface.class);
     jaxWsProxyFactoryBean.setAddress(properties.storeLog().endpointUrl());
-    jaxWsProxyFactoryBean.getFeatures().add(loggingFeature());
+    jaxWsProxyFactoryBean.getFeatures().addAll(features());
     return jaxWsProxyFactoryBean;
   }
 
-  private LoggingFeature loggingFeature() {
-    final var loggingFeature = new LoggingFeature();
-    loggingFeature.setLimit(LOG_MESSAGE_SIZE * LOG_MESSAGE_SIZE);
-    loggingFeature.setPrettyLogging(true);
-    return loggingFeature;
+  private List<AbstractFeature> features() {
+    final var features = new ArrayList<AbstractFeature>();
+    features.add(new StoreLogPayloadLoggingFeature(storeLogPayloadLogging));
+    final var compression = properties.storeLog().transport().compression();
+    if (compression.enabled()) {
+      features.add(new StoreLogCompressionFeature(compression.threshold(), meterRegistry));
+    }
+    return features;
   }
 
   private void setClient(StoreLogResponderInterface storeLogClient)
-      throws UnrecoverableKeyException,
-          CertificateException,
-          NoSuchAlgorithmException,
-          KeyStoreException,
-          IOException {
+      throws GeneralSecurityException, IOException {
     final var client = ClientProxy.getClient(storeLogClient);
+    client.setThreadLocalRequestContext(true);
+    final var httpConduit = (HTTPConduit) client.getConduit();
     if (!Arrays.asList(this.env.getActiveProfiles()).contains("dev")) {
-      final var httpConduit = (HTTPConduit) client.getConduit();
       configureTlsParameters().apply(httpConduit);
+      storeLogTlsSupport.prewarm(properties.storeLog().endpointUrl());
     }
+    configureHttpClientPolicy(httpConduit.getClient());
   }
 
-  private HttpConduitConfig configureTlsParameters()
-      throws UnrecoverableKeyException,
-          CertificateException,
-          NoSuchAlgorithmException,
-          KeyStoreException,
-          IOException {
+  private HttpConduitConfig configureTlsParameters() throws GeneralSecurityException, IOException {
     final var config = new HttpConduitConfig();
     config.setClientPolicy(setupHTTPClientPolicy());
-    config.setTlsClientParameters(setupTLSClientParameters());
+    config.setTlsClientParameters(storeLogTlsSupport.tlsClientParameters());
     return config;
   }
 
@@ -121,63 +195,4 @@ public class LogSenderWsConfig {
     httpClientPolicy.setConnection(ConnectionType.KEEP_ALIVE);
     return httpClientPolicy;
   }
-
-  private TLSClientParameters setupTLSClientParameters()
-      throws KeyStoreException,
-          IOException,
-          NoSuchAlgorithmException,
-          CertificateException,
-          UnrecoverableKeyException {
-    final var tlsClientParameters = new TLSClientParameters();
-    tlsClientParameters.setDisableCNCheck(true);
-    tlsClientParameters.setCipherSuitesFilter(setupCipherSuitesFilter());
-    tlsClientParameters.setKeyManagers(setupKeyManagers());
-    tlsClientParameters.setTrustManagers(setupTrustManagers());
-    return tlsClientParameters;
-  }
-
-  private KeyManager[] setupKeyManagers()
-      throws KeyStoreException,
-          IOException,
-          UnrecoverableKeyException,
-          NoSuchAlgorithmException,
-          CertificateException {
-    final var keyStoreFile = properties.storeLog().certificate().file();
-    final var keyStorePassword = properties.storeLog().certificate().password().toCharArray();
-    final var keyStore = KeyStore.getInstance(properties.storeLog().certificate().type());
-    try (FileInputStream keyStoreInputStream = new FileInputStream(keyStoreFile)) {
-      keyStore.load(keyStoreInputStream, keyStorePassword);
-    }
-    final var keyManagerFactory =
-        KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-    keyManagerFactory.init(keyStore, keyStorePassword);
-    return keyManagerFactory.getKeyManagers();
-  }
-
-  private TrustManager[] setupTrustManagers()
-      throws KeyStoreException, IOException, CertificateException, NoSuchAlgorithmException {
-    final var trustStoreFile = properties.storeLog().trustStore().file();
-    final var trustStorePassword = properties.storeLog().trustStore().password().toCharArray();
-    final var trustStore = KeyStore.getInstance(properties.storeLog().trustStore().type());
-    try (FileInputStream trustStoreInputStream = new FileInputStream(trustStoreFile)) {
-      trustStore.load(trustStoreInputStream, trustStorePassword);
-    }
-    final var trustManagerFactory =
-        TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-    trustManagerFactory.init(trustStore);
-    return trustManagerFactory.getTrustManagers();
-  }
-
-  private FiltersType setupCipherSuitesFilter() {
-    final var cipherSuitesFilter = new FiltersType();
-    cipherSuitesFilter.getInclude().add(".*_EXPORT_.*");
-    cipherSuitesFilter.getInclude().add(".*_EXPORT1024_.*");
-    cipherSuitesFilter.getInclude().add(".*_WITH_AES_256_.*");
-    cipherSuitesFilter.getInclude().add(".*_WITH_AES_128_.*");
-    cipherSuitesFilter.getInclude().add(".*_WITH_3DES_.*");
-    cipherSuitesFilter.getInclude().add(".*_WITH_DES_.*");
-    cipherSuitesFilter.getInclude().add(".*_WITH_NULL_.*");
-    cipherSuitesFilter.getExclude().add(".*_DH_anon_.*");
-    return cipherSuitesFilter;
-  }
 }
@@ -19,9 +19,13 @@
 package se.inera.intyg.logsender.config;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
@@ -32,21 +36,178 @@ public record LogsenderProperties(
     @NotNull @Valid Queue queue,
     @NotNull @Valid StoreLog storeLog) {
 
+  // Besides the open batch, every inbound consumer can hold a completed batch on its way to the
+  // aggregated queue, a smaller budget pauses and resumes consumption under normal load
+  @AssertTrue(
+      message =
+          "aggregation.memory-budget.max-bytes must be at least max-batch-bytes * (concurrent"
+              + " consumers of queue.receive-log-message-endpoint + 1)")
+  public boolean isMemoryBudgetSufficient() {
+    if (aggregation == null
+        || aggregation.maxBatchBytes() == null
+        || aggregation.memoryBudget() == null
+        || aggregation.memoryBudget().maxBytes() == null
+        || queue == null
+        || queue.receiveLogMessageEndpoint() == null) {
+      return true;
+    }
+    final var consumers = concurrentConsumers(queue.receiveLogMessageEndpoint());
+    return aggregation.memoryBudget().maxBytes() >= aggregation.maxBatchBytes() * (consumers + 1);
+  }
+
+  // Camel JMS consumes with one consumer unless concurrentConsumers, or maxConcurrentConsumers
+  // when scaling up, is set on the endpoint
+  static int concurrentConsumers(String endpointUri) {
+    final var options = endpointUri.indexOf('?');
+    var consumers = 1;
+    if (options < 0) {
+      return consumers;
+    }
+    for (final var option : endpointUri.substring(options + 1).split("&")) {
+      final var separator = option.indexOf('=');
+      final var name = separator < 0 ? option : option.substring(0, separator);
+      if (name.equals("concurrentConsumers") || name.equals("maxConcurrentConsumers")) {
+        try {
+          consumers = Math.max(consumers, Integer.parseInt(option.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+          // Placeholders are resolved by Camel, fall back to the other options
+        }
+      }
+    }
+    return consumers;
+  }
+
   public record Aggregation(
-      @NotNull @Min(1) @Valid Integer bulkSize, @NotNull @Min(1000) @Valid Long bulkTimeout) {}
+      @NotNull @Min(1) @Valid Integer bulkSize,
+      @NotNull @Min(1000) @Valid Long bulkTimeout,
+      @NotNull @Min(1024) @Valid Long maxBatchBytes,
+      @NotNull @Valid Buffer buffer,
+      @NotNull @Valid MemoryBudget memoryBudget,
+      @NotNull @Valid Split split) {
+  }
+
+  public record Buffer(
+      @NotNull @Min(1024) @Valid Integer initialCapacity,
+      @NotNull @Min(0) @Valid Integer maxPooled,
+      @NotNull @Valid Boolean direct) {}
+
+  public record MemoryBudget(
+      @NotNull @Min(1024) @Valid Long maxBytes, @NotNull @Min(0) @Valid Long resumeBytes) {}
+
+  public record Split(
+      @NotNull @Valid SplitMode mode, @NotNull @Min(1) @Valid Integer maxResourcesPerMessage) {}
+
+  public enum SplitMode {
+    PER_RESOURCE,
+    PER_MESSAGE
+  }
 
   @Validated
   public record Queue(
       @NotBlank @Valid String receiveLogMessageEndpoint,
       @NotBlank @Valid String receiveAggregatedLogMessageEndpoint,
-      @NotBlank @Valid String receiveAggregatedLogMessageDlq) {}
+      @NotBlank @Valid String receiveAggregatedLogMessageDlq,
+      @NotNull @Valid Drain drain,
+      @NotNull @Valid Retry retry) {}
+
+  public record Retry(
+      @NotBlank @Valid String endpoint,
+      @NotNull @Min(1) @Valid Integer concurrency,
+      @NotNull @Min(1) @Valid Integer maxAttempts,
+      @NotNull @Min(0) @Valid Long initialDelay,
+      @NotNull @DecimalMin("1.0") @Valid Double multiplier,
+      @NotNull @Min(0) @Valid Long maxDelay) {}
+
+  public record Drain(
+      @NotNull @Valid Boolean enabled,
+      @NotNull @Min(1) @Valid Long startDepth,
+      @NotNull @Min(0) @Valid Long stopDepth,
+      @NotNull @Min(1) @Valid Integer batchesPerTransaction,
+      @NotNull @Min(1) @Valid Integer concurrency,
+      @NotNull @Min(1000) @Valid Long checkInterval) {}
 
   public record StoreLog(
       @NotBlank @Valid String logicalAddress,
       @NotBlank @Valid String endpointUrl,
       @NotBlank @Valid String ntjpBaseUrl,
       @NotNull @Valid Certificate certificate,
-      @NotNull @Valid TrustStore trustStore) {}
+      @NotNull @Valid TrustStore trustStore,
+      @NotNull @Valid Coalesce coalesce,
+      @NotNull @Valid Conversion conversion,
+      @NotNull @Valid Transport transport,
+      @NotNull @Valid FragmentCache fragmentCache,
+      @NotNull @Valid PayloadLogging payloadLogging,
+      @NotNull @Valid OversizedBatch oversizedBatch) {}
+
+  public record OversizedBatch(
+      @NotNull @Min(1) @Valid Integer maxEntries,
+      @NotNull @Min(1024) @Valid Long maxBytes,
+      @NotNull @Min(1) @Valid Integer parallelism) {}
+
+  public record PayloadLogging(
+      @NotNull @Valid PayloadLoggingMode mode,
+      @NotNull @Min(1) @Valid Integer sampleRate,
+      @NotNull @Min(1) @Valid Integer bufferSize) {}
+
+  public enum PayloadLoggingMode {
+    OFF,
+    HEADERS,
+    SAMPLED,
+    ON_ERROR
+  }
+
+  public record Transport(
+      @NotNull @Valid Boolean streaming,
+      @NotNull @Min(0) @Valid Integer chunkingThreshold,
+      @NotNull @Valid HttpClient httpClient,
+      @NotNull @Valid Tls tls,
+      @NotNull @Valid Timeout timeout,
+      @NotNull @Valid Compression compression) {}
+
+  public record Compression(
+      @NotNull @Valid Boolean enabled, @NotNull @Min(0) @Valid Integer threshold) {}
+
+  public record Timeout(
+      @NotNull @Valid Boolean adaptive,
+      @NotNull @Min(1) @Valid Long connectTimeout,
+      @NotNull @Min(1) @Valid Long minReceiveTimeout,
+      @NotNull @Min(1) @Valid Long maxReceiveTimeout,
+      @NotNull @DecimalMin("1.0") @Valid Double factor,
+      @NotNull @Min(1) @Valid Integer window,
+      @NotNull @Min(1) @Valid Integer minSamples) {}
+
+  public record HttpClient(
+      @NotNull @Valid Boolean async,
+      @NotNull @Valid Boolean http2,
+      @NotNull @Min(1) @Valid Integer maxConnections,
+      @NotNull @Min(1) @Valid Integer maxConnectionsPerHost,
+      @NotNull @Min(0) @Valid Long connectionTtl) {}
+
+  public record Tls(
+      @NotEmpty @Valid List<String> protocols,
+      @NotNull @Min(0) @Valid Integer sessionCacheSize,
+      @NotNull @Min(0) @Valid Integer sessionTimeout,
+      @NotNull @Min(0) @Valid Integer prewarmConnections,
+      @NotNull @Min(0) @Valid Long reloadInterval) {}
+
+  public record FragmentCache(
+      @NotNull @Valid Boolean enabled,
+      @NotNull @Min(1) @Valid Integer maxBatches,
+      @NotNull @Min(1024) @Valid Long maxBytes) {}
+
+  public record Conversion(
+      @NotNull @Valid ConversionMode mode,
+      @NotNull @Min(1) @Valid Integer parallelThreshold,
+      @NotNull @Min(1) @Valid Integer parallelism) {}
+
+  public enum ConversionMode {
+    MODEL,
+    COMPACT,
+    STREAMING
+  }
+
+  public record Coalesce(
+      @NotNull @Valid Boolean enabled, @NotNull @Min(1) @Valid Integer maxResourcesPerEntry) {}
 
   public record Certificate(
       @NotBlank @Valid String file,
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.configuration.jsse.TLSClientParameters;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+// TLS setup of the StoreLog client. All connections share one SSLContext, so its client session
+// cache lets new pooled connections resume a session instead of making a full handshake. TLS 1.3
+// and AES-GCM suites are offered first, and handshakes are timed as logsender.tls.handshake,
+// tagged by whether a cached session was resumed.
+// The key store and trust store are polled for changes and swapped in without a restart.
+@Component
+@Slf4j
+public class StoreLogTlsSupport implements DisposableBean {
+
+  private static final Pattern EXCLUDED_CIPHER_SUITES =
+      Pattern.compile(".*(_EXPORT|_NULL_|_anon_|_RC4_|_DES_|_DES40_|_3DES_|_MD5$).*");
+  private static final int PREWARM_READ_TIMEOUT_MILLIS = 500;
+
+  private final LogsenderProperties properties;
+  private final HandshakeTimingSslContext.Timers handshakeTimers;
+  private final Counter reloads;
+  private final Counter failedReloads;
+
+  private SSLContext sslContext;
+  private ReloadingKeyManager keyManager;
+  private ReloadingTrustManager trustManager;
+  private FileStamp keyStoreStamp;
+  private FileStamp trustStoreStamp;
+  private ScheduledExecutorService reloadExecutor;
+
+  public StoreLogTlsSupport(LogsenderProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.handshakeTimers =
+        new HandshakeTimingSslContext.Timers(
+            handshakeTimer(meterRegistry, false), handshakeTimer(meterRegistry, true));
+    this.reloads =
+        Counter.builder("logsender.tls.reloads")
+            .description("Reloads of the StoreLog key store and trust store")
+            .tag("result", "success")
+            .register(meterRegistry);
+    this.failedReloads =
+        Counter.builder("logsender.tls.reloads")
+            .description("Reloads of the StoreLog key store and trust store")
+            .tag("result", "failure")
+            .register(meterRegistry);
+  }
+
+  private static Timer handshakeTimer(MeterRegistry meterRegistry, boolean resumed) {
+    return Timer.builder("logsender.tls.handshake")
+        .description("TLS handshakes made by the StoreLog client")
+        .tag("resumed", Boolean.toString(resumed))
+        .register(meterRegistry);
+  }
+
+  public TLSClientParameters tlsClientParameters() throws GeneralSecurityException, IOException {
+    final var context = sslContext();
+    final var tlsClientParameters = new TLSClientParameters();
+    tlsClientParameters.setDisableCNCheck(true);
+    tlsClientParameters.setSslContext(context);
+    tlsClientParameters.setSSLSocketFactory(context.getSocketFactory());
+    tlsClientParameters.setCipherSuites(
+        Arrays.asList(context.getDefaultSSLParameters().getCipherSuites()));
+    return tlsClientParameters;
+  }
+
+  public synchronized SSLContext sslContext() throws GeneralSecurityException, IOException {
+    if (sslContext == null) {
+      final var tls = properties.storeLog().transport().tls();
+      keyStoreStamp = FileStamp.of(properties.storeLog().certificate().file());
+      trustStoreStamp = FileStamp.of(properties.storeLog().trustStore().file());
+      keyManager = new ReloadingKeyManager(loadKeyManager());
+      trustManager = new ReloadingTrustManager(loadTrustManager());
+
+      final var delegate = SSLContext.getInstance("TLS");
+      delegate.init(new KeyManager[] {keyManager}, new TrustManager[] {trustManager}, null);
+      delegate.getClientSessionContext().setSessionCacheSize(tls.sessionCacheSize());
+      delegate.getClientSessionContext().setSessionTimeout(tls.sessionTimeout());
+
+      final var parameters =
+          new SSLParameters(
+              preferredCipherSuites(delegate.getDefaultSSLParameters().getCipherSuites())
+                  .toArray(String[]::new),
+              tls.protocols().toArray(String[]::new));
+      sslContext = new HandshakeTimingSslContext(delegate, parameters, handshakeTimers);
+      startReloading(tls.reloadInterval());
+    }
+    return sslContext;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (reloadExecutor != null) {
+      reloadExecutor.shutdownNow();
+    }
+  }
+
+  private void startReloading(long reloadInterval) {
+    if (reloadInterval == 0) {
+      return;
+    }
+
+    reloadExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("storelog-tls-reload").daemon().factory());
+    reloadExecutor.scheduleWithFixedDelay(
+        this::reloadIfChanged, reloadInterval, reloadInterval, TimeUnit.MILLISECONDS);
+  }
+
+  // Modification time and size are polled rather than watched, which also catches files replaced
+  // by swapping a symlink as with mounted Kubernetes secrets. Both stores are loaded before either
+  // is swapped, so a store that cannot be read leaves the current material in place.
+  synchronized void reloadIfChanged() {
+    try {
+      final var newKeyStoreStamp = FileStamp.of(properties.storeLog().certificate().file());
+      final var newTrustStoreStamp = FileStamp.of(properties.storeLog().trustStore().file());
+      if (newKeyStoreStamp.equals(keyStoreStamp) && newTrustStoreStamp.equals(trustStoreStamp)) {
+        return;
+      }
+
+      final var newKeyManager = loadKeyManager();
+      final var newTrustManager = loadTrustManager();
+      keyManager.swap(newKeyManager);
+      trustManager.swap(newTrustManager);
+      keyStoreStamp = newKeyStoreStamp;
+      trustStoreStamp = newTrustStoreStamp;
+
+      // Cached sessions were authenticated with the previous material
+      invalidateSessions();
+      reloads.increment();
+      log.info("Reloaded StoreLog key store and trust store");
+    } catch (GeneralSecurityException | IOException e) {
+      failedReloads.increment();
+      log.error(
+          "Could not reload StoreLog key store and trust store, keeping the current ones: {}",
+          e.toString());
+    }
+  }
+
+  private void invalidateSessions() {
+    final var sessionContext = sslContext.getClientSessionContext();
+    for (byte[] id : Collections.list(sessionContext.getIds())) {
+      final var session = sessionContext.getSession(id);
+      if (session != null) {
+        session.invalidate();
+      }
+    }
+  }
+
+  // Handshakes with the endpoint in the background so the session cache is filled, and the
+  // handshake code warmed up, before the first batch is sent
+  public void prewarm(String endpointUrl) {
+    final var connections = properties.storeLog().transport().tls().prewarmConnections();
+    if (connections > 0) {
+      Thread.ofVirtual()
+          .name("storelog-tls-prewarm")
+          .start(() -> prewarm(URI.create(endpointUrl), connections));
+    }
+  }
+
+  private void prewarm(URI endpoint, int connections) {
+    final var port = endpoint.getPort() != -1 ? endpoint.getPort() : 443;
+    for (int i = 0; i < connections; i++) {
+      try (SSLSocket socket =
+          (SSLSocket) sslContext().getSocketFactory().createSocket(endpoint.getHost(), port)) {
+        socket.startHandshake();
+        awaitSessionTicket(socket);
+      } catch (GeneralSecurityException | IOException e) {
+        log.warn("Could not pre-warm TLS connection to {}: {}", endpoint.getHost(), e.toString());
+        return;
+      }
+    }
+    log.info("Pre-warmed {} TLS connection(s) to {}", connections, endpoint.getHost());
+  }
+
+  // TLS 1.3 servers send session tickets after the handshake, and they are only stored once read
+  private static void awaitSessionTicket(SSLSocket socket) throws IOException {
+    if (!"TLSv1.3".equals(socket.getSession().getProtocol())) {
+      return;
+    }
+
+    socket.setSoTimeout(PREWARM_READ_TIMEOUT_MILLIS);
+    try {
+      socket.getInputStream().read();
+    } catch (SocketTimeoutException e) {
+      // No application data is expected
+    }
+  }
+
+  static List<String> preferredCipherSuites(String[] cipherSuites) {
+    return Arrays.stream(cipherSuites)
+        .filter(cipherSuite -> !EXCLUDED_CIPHER_SUITES.matcher(cipherSuite).matches())
+        .sorted(Comparator.comparingInt(StoreLogTlsSupport::cipherSuiteRank))
+        .toList();
+  }
+
+  // TLS 1.3 AES-GCM first, then other TLS 1.3 suites, ECDHE with AES-GCM, other AES-GCM and last
+  // the remaining suites in the order of the JDK defaults
+  private static int cipherSuiteRank(String cipherSuite) {
+    final var gcm = cipherSuite.contains("_GCM_");
+    if (cipherSuite.startsWith("TLS_AES_") || cipherSuite.startsWith("TLS_CHACHA20_")) {
+      return gcm ? 0 : 1;
+    }
+    if (gcm) {
+      return cipherSuite.startsWith("TLS_ECDHE_") ? 2 : 3;
+    }
+    return cipherSuite.endsWith("_SCSV") ? 5 : 4;
+  }
+
+  private X509ExtendedKeyManager loadKeyManager() throws GeneralSecurityException, IOException {
+    final var keyStoreFile = properties.storeLog().certificate().file();
+    final var keyStorePassword = properties.storeLog().certificate().password().toCharArray();
+    final var keyStore = KeyStore.getInstance(properties.storeLog().certificate().type());
+    try (FileInputStream keyStoreInputStream = new FileInputStream(keyStoreFile)) {
+      keyStore.load(keyStoreInputStream, keyStorePassword);
+    }
+    final var keyManagerFactory =
+        KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagerFactory.init(keyStore, keyStorePassword);
+    return Arrays.stream(keyManagerFactory.getKeyManagers())
+        .filter(X509ExtendedKeyManager.class::isInstance)
+        .map(X509ExtendedKeyManager.class::cast)
+        .findFirst()
+        .orElseThrow(() -> new KeyStoreException("No X509 key manager for " + keyStoreFile));
+  }
+
+  private X509ExtendedTrustManager loadTrustManager() throws GeneralSecurityException, IOException {
+    final var trustStoreFile = properties.storeLog().trustStore().file();
+    final var trustStorePassword = properties.storeLog().trustStore().password().toCharArray();
+    final var trustStore = KeyStore.getInstance(properties.storeLog().trustStore().type());
+    try (FileInputStream trustStoreInputStream = new FileInputStream(trustStoreFile)) {
+      trustStore.load(trustStoreInputStream, trustStorePassword);
+    }
+    final var trustManagerFactory =
+        TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagerFactory.init(trustStore);
+    return Arrays.stream(trustManagerFactory.getTrustManagers())
+        .filter(X509ExtendedTrustManager.class::isInstance)
+        .map(X509ExtendedTrustManager.class::cast)
+        .findFirst()
+        .orElseThrow(() -> new KeyStoreException("No X509 trust manager for " + trustStoreFile));
+  }
+
+  private record FileStamp(FileTime lastModified, long size) {
+
+    static FileStamp of(String file) throws IOException {
+      final var path = Path.of(file);
+      return new FileStamp(Files.getLastModifiedTime(path), Files.size(path));
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import se.riv.informationsecurity.auditing.log.v2.CareProviderType;
+import se.riv.informationsecurity.auditing.log.v2.CareUnitType;
+
+// Batch scoped cache building each distinct care unit and care provider of a batch once, and
+// sharing the instance between all LogTypes of the batch. The instances are never modified after
+// creation. Safe for use by the parallel conversion of a batch.
+public final class EnhetTypeCache {
+
+  private static final LogTypeFactoryUtil util = LogTypeFactoryUtil.getInstance();
+
+  private final Map<Key, CareUnitType> careUnits = new ConcurrentHashMap<>();
+  private final Map<Key, CareProviderType> careProviders = new ConcurrentHashMap<>();
+
+  CareUnitType careUnit(String careUnitId, String careUnitName) {
+    return careUnits.computeIfAbsent(
+        new Key(careUnitId, careUnitName), key -> util.careUnit(key.id(), key.name()));
+  }
+
+  CareProviderType careProvider(String careProviderId, String careProviderName) {
+    return careProviders.computeIfAbsent(
+        new Key(careProviderId, careProviderName), key -> util.careProvider(key.id(), key.name()));
+  }
+
+  int size() {
+    return careUnits.size() + careProviders.size();
+  }
+
+  private record Key(String id, String name) {}
+}
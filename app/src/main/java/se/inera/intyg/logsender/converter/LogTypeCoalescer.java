@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.namespace.QName;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import se.riv.informationsecurity.auditing.log.v2.ResourcesType;
+
+// Merges LogTypes that only differ in their resources, i.e. with identical user, care unit, care
+// provider, system and activity, into a new LogType holding all their resources. The LogTypes
+// passed in are left unchanged. The merged entry keeps the logId of the first entry in the group,
+// StoreLog has no place for the logIds of the other entries, so they are logged with the logId
+// they were merged into. The marshalled size of one in SIZE_SAMPLE_RATE batches is measured
+// before and after coalescing.
+@Component
+@Slf4j
+public class LogTypeCoalescer {
+
+  private static final int SIZE_SAMPLE_RATE = 100;
+  private static final QName REQUEST_NAME = new QName("StoreLog");
+
+  private final boolean enabled;
+  private final int maxResourcesPerEntry;
+  private final Counter entriesIn;
+  private final Counter entriesOut;
+  private final Counter bytesIn;
+  private final Counter bytesOut;
+  private final AtomicLong batches = new AtomicLong();
+  private final JAXBContext jaxbContext;
+
+  public LogTypeCoalescer(LogsenderProperties properties, MeterRegistry meterRegistry) {
+    final var coalesce = properties.storeLog().coalesce();
+    this.enabled = coalesce.enabled();
+    this.maxResourcesPerEntry = coalesce.maxResourcesPerEntry();
+    this.entriesIn =
+        Counter.builder("logsender.coalesce.entries.in")
+            .description("Log entries passed to coalescing")
+            .register(meterRegistry);
+    this.entriesOut =
+        Counter.builder("logsender.coalesce.entries.out")
+            .description("Log entries remaining after coalescing")
+            .register(meterRegistry);
+    this.bytesIn =
+        Counter.builder("logsender.coalesce.bytes.in")
+            .description("Marshalled size of sampled batches before coalescing")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    this.bytesOut =
+        Counter.builder("logsender.coalesce.bytes.out")
+            .description("Marshalled size of sampled batches after coalescing")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    try {
+      this.jaxbContext = JAXBContext.newInstance(StoreLogType.class);
+    } catch (JAXBException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public List<LogType> coalesce(List<LogType> logTypes) {
+    if (!enabled || logTypes.size() < 2) {
+      return logTypes;
+    }
+
+    final var groups = new LinkedHashMap<Key, List<Merge>>();
+    for (LogType logType : logTypes) {
+      final var group = groups.computeIfAbsent(Key.of(logType), key -> new ArrayList<>());
+      final var current = group.isEmpty() ? null : group.getLast();
+      if (current != null
+          && current.resources + logType.getResources().getResource().size()
+              <= maxResourcesPerEntry) {
+        current.add(logType);
+      } else {
+        group.add(new Merge(logType));
+      }
+    }
+
+    final var coalesced =
+        groups.values().stream().flatMap(List::stream).map(Merge::toLogType).toList();
+    entriesIn.increment(logTypes.size());
+    entriesOut.increment(coalesced.size());
+    log.debug("Coalesced {} log entries into {}", logTypes.size(), coalesced.size());
+
+    if (coalesced.size() < logTypes.size() && batches.getAndIncrement() % SIZE_SAMPLE_RATE == 0) {
+      measure(logTypes, coalesced);
+    }
+    return coalesced;
+  }
+
+  private void measure(List<LogType> logTypes, List<LogType> coalesced) {
+    try {
+      final var before = marshalledSize(logTypes);
+      final var after = marshalledSize(coalesced);
+      bytesIn.increment(before);
+      bytesOut.increment(after);
+    } catch (JAXBException e) {
+      log.debug("Could not measure size of coalesced batch", e);
+    }
+  }
+
+  private long marshalledSize(List<LogType> logTypes) throws JAXBException {
+    final var request = new StoreLogType();
+    request.getLog().addAll(logTypes);
+    final var out = new ByteArrayOutputStream();
+    jaxbContext
+        .createMarshaller()
+        .marshal(new JAXBElement<>(REQUEST_NAME, StoreLogType.class, request), out);
+    return out.size();
+  }
+
+  // LogTypes merged into the first one of a group
+  private static final class Merge {
+
+    private final LogType first;
+    private final List<LogType> merged = new ArrayList<>();
+    private int resources;
+
+    private Merge(LogType first) {
+      this.first = first;
+      this.resources = first.getResources().getResource().size();
+    }
+
+    private void add(LogType logType) {
+      merged.add(logType);
+      resources += logType.getResources().getResource().size();
+    }
+
+    private LogType toLogType() {
+      if (merged.isEmpty()) {
+        return first;
+      }
+
+      final var logType = new LogType();
+      logType.setLogId(first.getLogId());
+      logType.setSystem(first.getSystem());
+      logType.setActivity(first.getActivity());
+      logType.setUser(first.getUser());
+      logType.setResources(new ResourcesType());
+      logType.getResources().getResource().addAll(first.getResources().getResource());
+      for (LogType other : merged) {
+        logType.getResources().getResource().addAll(other.getResources().getResource());
+      }
+      log.info(
+          "Coalesced log entries {} into log entry {}",
+          merged.stream().map(LogType::getLogId).toList(),
+          first.getLogId());
+      return logType;
+    }
+  }
+
+  private record Key(
+      String userId,
+      String userName,
+      String userAssignment,
+      String userTitle,
+      String careUnitId,
+      String careUnitName,
+      String careProviderId,
+      String careProviderName,
+      String systemId,
+      String systemName,
+      String activityType,
+      LocalDateTime startDate,
+      String purpose,
+      String activityLevel,
+      String activityArgs) {
+
+    static Key of(LogType logType) {
+      final var user = logType.getUser();
+      final var system = logType.getSystem();
+      final var activity = logType.getActivity();
+      return new Key(
+          user.getUserId(),
+          user.getName(),
+          user.getAssignment(),
+          user.getTitle(),
+          user.getCareUnit().getCareUnitId(),
+          user.getCareUnit().getCareUnitName(),
+          user.getCareProvider().getCareProviderId(),
+          user.getCareProvider().getCareProviderName(),
+          system.getSystemId(),
+          system.getSystemName(),
+          activity.getActivityType(),
+          activity.getStartDate(),
+          activity.getPurpose(),
+          activity.getActivityLevel(),
+          activity.getActivityArgs());
+    }
+  }
+}
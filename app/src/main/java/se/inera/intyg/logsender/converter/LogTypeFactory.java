@@ -18,10 +18,18 @@
  */
 package se.inera.intyg.logsender.converter;
 
+import java.util.List;
+import se.inera.intyg.logsender.model.CompactPdlLogMessage;
 import se.inera.intyg.logsender.model.PdlLogMessage;
 import se.riv.informationsecurity.auditing.log.v2.LogType;
 
 public interface LogTypeFactory {
 
   LogType convert(PdlLogMessage source);
+
+  List<LogType> convertPerResource(PdlLogMessage source);
+
+  List<LogType> convertPerResource(PdlLogMessage source, EnhetTypeCache cache);
+
+  List<LogType> convertPerResource(CompactPdlLogMessage source, EnhetTypeCache cache);
 }
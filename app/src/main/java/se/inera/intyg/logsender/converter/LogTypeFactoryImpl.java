@@ -18,16 +18,17 @@
  */
 package se.inera.intyg.logsender.converter;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.model.CompactPdlLogMessage;
 import se.inera.intyg.logsender.model.Enhet;
 import se.inera.intyg.logsender.model.Patient;
 import se.inera.intyg.logsender.model.PdlLogMessage;
 import se.inera.intyg.logsender.model.PdlResource;
-import se.inera.intyg.schemas.contract.Personnummer;
 import se.riv.informationsecurity.auditing.log.v2.ActivityType;
 import se.riv.informationsecurity.auditing.log.v2.CareProviderType;
 import se.riv.informationsecurity.auditing.log.v2.CareUnitType;
-import se.riv.informationsecurity.auditing.log.v2.IIType;
 import se.riv.informationsecurity.auditing.log.v2.LogType;
 import se.riv.informationsecurity.auditing.log.v2.PatientType;
 import se.riv.informationsecurity.auditing.log.v2.ResourceType;
@@ -42,26 +43,125 @@ public class LogTypeFactoryImpl implements LogTypeFactory {
 
   @Override
   public LogType convert(PdlLogMessage source) {
+    return convert(source, new EnhetTypeCache());
+  }
+
+  @Override
+  public List<LogType> convertPerResource(PdlLogMessage source) {
+    return convertPerResource(source, new EnhetTypeCache());
+  }
+
+  @Override
+  public List<LogType> convertPerResource(PdlLogMessage source, EnhetTypeCache cache) {
+    if (source.getPdlResourceList().size() <= 1) {
+      return List.of(convert(source, cache));
+    }
+
+    final var resources = source.getPdlResourceList();
+    final var logTypes = new ArrayList<LogType>(resources.size());
+    for (int i = 0; i < resources.size(); i++) {
+      final var copy = source.derive(i);
+      copy.getPdlResourceList().add(resources.get(i));
+      logTypes.add(convert(copy, cache));
+    }
+    return logTypes;
+  }
+
+  @Override
+  public List<LogType> convertPerResource(CompactPdlLogMessage source, EnhetTypeCache cache) {
+    final var resources = source.pdlResourceList();
+    if (resources.size() <= 1) {
+      return List.of(convert(source, source.logId(), resources, cache));
+    }
+
+    final var logTypes = new ArrayList<LogType>(resources.size());
+    for (int i = 0; i < resources.size(); i++) {
+      final var logId =
+          PdlLogMessage.deriveLogId(
+              source.logId(), source.parentLogId(), source.resourceOffset(), i);
+      logTypes.add(convert(source, logId, List.of(resources.get(i)), cache));
+    }
+    return logTypes;
+  }
+
+  private LogType convert(PdlLogMessage source, EnhetTypeCache cache) {
     final var logType = new LogType();
     logType.setLogId(source.getLogId());
 
     buildSystemType(source, logType);
     buildActivityType(source, logType);
-    buildUserType(source, logType);
+    buildUserType(source, logType, cache);
 
     logType.setResources(new ResourcesType());
 
-    final var resources = source.getPdlResourceList().stream().map(this::buildResource).toList();
+    final var resources =
+        source.getPdlResourceList().stream()
+            .map(resource -> buildResource(resource, cache))
+            .toList();
     logType.getResources().getResource().addAll(resources);
 
     return logType;
   }
 
-  private void buildUserType(PdlLogMessage source, LogType logType) {
+  private LogType convert(
+      CompactPdlLogMessage source,
+      String logId,
+      List<CompactPdlLogMessage.Resource> resources,
+      EnhetTypeCache cache) {
+    final var logType = new LogType();
+    logType.setLogId(logId);
+
+    final var system = new SystemType();
+    system.setSystemId(util.trim(source.systemId()));
+    system.setSystemName(util.trimToNull(source.systemName()));
+    logType.setSystem(system);
+
+    final var activity = new ActivityType();
+    activity.setActivityType(source.activityType().getType());
+    activity.setStartDate(source.timestamp());
+    activity.setPurpose(source.purpose().getType());
+
+    // optional according to XML schema
+    activity.setActivityLevel(util.trimToNull(source.activityLevel()));
+    activity.setActivityArgs(util.trimToNull(source.activityArgs()));
+    logType.setActivity(activity);
+
+    final var userCareUnit = source.userCareUnit();
+    final var user = new UserType();
+    user.setUserId(util.trim(source.userId()));
+    user.setCareProvider(
+        cache.careProvider(userCareUnit.vardgivareId(), userCareUnit.vardgivareNamn()));
+    user.setCareUnit(cache.careUnit(userCareUnit.enhetsId(), userCareUnit.enhetsNamn()));
+
+    // optional according to XML schema
+    user.setName(util.trimToNull(source.userName()));
+    user.setAssignment(util.trimToNull(source.userAssignment()));
+    user.setTitle(util.trimToNull(source.userTitle()));
+    logType.setUser(user);
+
+    logType.setResources(new ResourcesType());
+    for (CompactPdlLogMessage.Resource resource : resources) {
+      final var owner = resource.resourceOwner();
+      final var resourceType = new ResourceType();
+      resourceType.setResourceType(resource.resourceType());
+      resourceType.setCareProvider(
+          cache.careProvider(owner.vardgivareId(), owner.vardgivareNamn()));
+      resourceType.setCareUnit(cache.careUnit(owner.enhetsId(), owner.enhetsNamn()));
+
+      // optional according to XML schema
+      resourceType.setPatient(
+          util.patient(resource.patient().patientId(), resource.patient().patientNamn()));
+      logType.getResources().getResource().add(resourceType);
+    }
+
+    return logType;
+  }
+
+  private void buildUserType(PdlLogMessage source, LogType logType, EnhetTypeCache cache) {
     final var user = new UserType();
     user.setUserId(util.trim(source.getUserId()));
-    user.setCareProvider(careProvider(source.getUserCareUnit()));
-    user.setCareUnit(careUnit(source.getUserCareUnit()));
+    user.setCareProvider(careProvider(source.getUserCareUnit(), cache));
+    user.setCareUnit(careUnit(source.getUserCareUnit(), cache));
 
     // optional according to XML schema
     user.setName(util.trimToNull(source.getUserName()));
@@ -94,56 +194,22 @@ public class LogTypeFactoryImpl implements LogTypeFactory {
   }
 
   private PatientType patient(Patient source) {
-    final var id = util.trim(source.getPatientId());
-
-    final var personnummer =
-        Personnummer.createPersonnummer(id)
-            .orElseThrow(
-                () ->
-                    new IllegalArgumentException(
-                        "PatientId must be a valid personnummer or samordningsnummer"));
-
-    final var patientId = new IIType();
-    patientId.setRoot(
-        util.isSamordningsNummer(personnummer)
-            ? util.getSamordningsNummerRoot()
-            : util.getPersonnummerRoot());
-    patientId.setExtension(util.trim(source.getPatientId()));
-
-    final var patient = new PatientType();
-    patient.setPatientId(patientId);
-
-    // optional according to XML schema
-    patient.setPatientName(util.trimToNull(source.getPatientNamn()));
-
-    return patient;
+    return util.patient(source.getPatientId(), source.getPatientNamn());
   }
 
-  private CareUnitType careUnit(Enhet source) {
-    final var careUnit = new CareUnitType();
-    careUnit.setCareUnitId(util.trim(source.getEnhetsId()));
-
-    // optional according to XML schema
-    careUnit.setCareUnitName(util.trimToNull(source.getEnhetsNamn()));
-
-    return careUnit;
+  private CareUnitType careUnit(Enhet source, EnhetTypeCache cache) {
+    return cache.careUnit(source.getEnhetsId(), source.getEnhetsNamn());
   }
 
-  private CareProviderType careProvider(Enhet source) {
-    final var careProvider = new CareProviderType();
-    careProvider.setCareProviderId(util.trim(source.getVardgivareId()));
-
-    // optional according to XML schema
-    careProvider.setCareProviderName(util.trimToNull(source.getVardgivareNamn()));
-
-    return careProvider;
+  private CareProviderType careProvider(Enhet source, EnhetTypeCache cache) {
+    return cache.careProvider(source.getVardgivareId(), source.getVardgivareNamn());
   }
 
-  private ResourceType buildResource(PdlResource source) {
+  private ResourceType buildResource(PdlResource source, EnhetTypeCache cache) {
     final var resource = new ResourceType();
     resource.setResourceType(source.getResourceType());
-    resource.setCareProvider(careProvider(source.getResourceOwner()));
-    resource.setCareUnit(careUnit(source.getResourceOwner()));
+    resource.setCareProvider(careProvider(source.getResourceOwner(), cache));
+    resource.setCareUnit(careUnit(source.getResourceOwner(), cache));
 
     // optional according to XML schema
     resource.setPatient(patient(source.getPatient()));
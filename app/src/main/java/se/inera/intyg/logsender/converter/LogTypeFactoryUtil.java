@@ -20,6 +20,10 @@ package se.inera.intyg.logsender.converter;
 
 import java.util.Optional;
 import se.inera.intyg.schemas.contract.Personnummer;
+import se.riv.informationsecurity.auditing.log.v2.CareProviderType;
+import se.riv.informationsecurity.auditing.log.v2.CareUnitType;
+import se.riv.informationsecurity.auditing.log.v2.IIType;
+import se.riv.informationsecurity.auditing.log.v2.PatientType;
 
 final class LogTypeFactoryUtil {
 
@@ -29,8 +33,17 @@ final class LogTypeFactoryUtil {
   private static final int SAMORDNING_MONTH_INDEX = 6;
   private static final int SAMORDNING_MONTH_VALUE_MIN = 6;
 
+  private static final int MAX_CACHED_PATIENT_IDS = 10_000;
+
   private static final LogTypeFactoryUtil instance = new LogTypeFactoryUtil();
 
+  private final PatientIdClassifier patientIdClassifier =
+      new PatientIdClassifier(
+          MAX_CACHED_PATIENT_IDS,
+          KODVERK_PERSONNUMMER,
+          KODVERK_SAMORDNINGSNUMMER,
+          this::resolvePatientIdRoot);
+
   private LogTypeFactoryUtil() {}
 
   static LogTypeFactoryUtil getInstance() {
@@ -63,4 +76,51 @@ final class LogTypeFactoryUtil {
   public String trimToNull(String input) {
     return input != null && !input.trim().isEmpty() ? input.trim() : null;
   }
+
+  PatientType patient(String patientId, String patientName) {
+    final var id = trim(patientId);
+
+    final var iiType = new IIType();
+    iiType.setRoot(patientIdClassifier.root(id));
+    iiType.setExtension(id);
+
+    final var patient = new PatientType();
+    patient.setPatientId(iiType);
+
+    // optional according to XML schema
+    patient.setPatientName(trimToNull(patientName));
+
+    return patient;
+  }
+
+  String resolvePatientIdRoot(String patientId) {
+    final var personnummer =
+        Personnummer.createPersonnummer(patientId)
+            .orElseThrow(
+                () ->
+                    new IllegalArgumentException(
+                        "PatientId must be a valid personnummer or samordningsnummer"));
+
+    return isSamordningsNummer(personnummer) ? getSamordningsNummerRoot() : getPersonnummerRoot();
+  }
+
+  CareUnitType careUnit(String careUnitId, String careUnitName) {
+    final var careUnit = new CareUnitType();
+    careUnit.setCareUnitId(trim(careUnitId));
+
+    // optional according to XML schema
+    careUnit.setCareUnitName(trimToNull(careUnitName));
+
+    return careUnit;
+  }
+
+  CareProviderType careProvider(String careProviderId, String careProviderName) {
+    final var careProvider = new CareProviderType();
+    careProvider.setCareProviderId(trim(careProviderId));
+
+    // optional according to XML schema
+    careProvider.setCareProviderName(trimToNull(careProviderName));
+
+    return careProvider;
+  }
 }
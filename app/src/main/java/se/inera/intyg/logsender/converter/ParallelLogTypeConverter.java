@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+
+// Converts the entries of a batch to LogTypes, spreading batches of at least parallelThreshold
+// entries over a dedicated fork/join pool. Entry order is kept, and an exception thrown by the
+// conversion of an entry is rethrown as is, so callers see the same errors as when converting
+// sequentially. The MDC of the caller is set in the pool threads while they convert an entry.
+@Component
+public class ParallelLogTypeConverter implements DisposableBean {
+
+  private final int parallelThreshold;
+  private final ForkJoinPool pool;
+
+  public ParallelLogTypeConverter(LogsenderProperties properties) {
+    final var conversion = properties.storeLog().conversion();
+    this.parallelThreshold = conversion.parallelThreshold();
+    this.pool = new ForkJoinPool(conversion.parallelism());
+  }
+
+  public List<LogType> convert(List<String> entries, Function<String, Stream<LogType>> converter)
+      throws InterruptedException {
+    if (entries.size() < parallelThreshold) {
+      return entries.stream().flatMap(converter).toList();
+    }
+
+    final var withMdc = withMdc(converter, MDC.getCopyOfContextMap());
+    try {
+      return pool.submit(() -> entries.parallelStream().flatMap(withMdc).toList()).get();
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  private static Function<String, Stream<LogType>> withMdc(
+      Function<String, Stream<LogType>> converter, Map<String, String> mdc) {
+    if (mdc == null) {
+      return converter;
+    }
+    return entry -> {
+      MDC.setContextMap(mdc);
+      try {
+        return converter.apply(entry);
+      } finally {
+        MDC.clear();
+      }
+    };
+  }
+
+  // A fork/join task rethrows an exception from another thread as a new exception of the same type
+  // with the original as its cause, so the original is unwrapped from any such copies
+  private static RuntimeException rethrow(Throwable cause) {
+    var original = cause;
+    while (original.getCause() != null && original.getCause().getClass() == original.getClass()) {
+      original = original.getCause();
+    }
+    if (original instanceof RuntimeException runtimeException) {
+      throw runtimeException;
+    }
+    if (original instanceof Error error) {
+      throw error;
+    }
+    // The converter is a Function, so it can't throw checked exceptions other than sneakily
+    throw new IllegalStateException(original);
+  }
+
+  @Override
+  public void destroy() {
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.time.YearMonth;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+// Resolves the OID root of a patient id. Ids on the common 12 digit forms yyyyMMddNNNN and
+// yyyyMMdd-NNNN with a valid date and control digit are classified directly. Other ids are
+// resolved by the fallback, which throws IllegalArgumentException for invalid ids. Resolved ids
+// are cached since the same patients recur within a burst of log messages. Entries are converted
+// in parallel, so the cache is a ConcurrentHashMap bounded by a ring of the cached ids: each new
+// id takes the next slot and evicts the id that was there, first in first out, without locking.
+final class PatientIdClassifier {
+
+  private static final int SAMORDNING_DAY_OFFSET = 60;
+
+  private final ConcurrentHashMap<String, String> cache;
+  private final AtomicReferenceArray<String> cachedIds;
+  private final AtomicLong nextSlot = new AtomicLong();
+  private final String personnummerRoot;
+  private final String samordningsnummerRoot;
+  private final Function<String, String> fallback;
+
+  PatientIdClassifier(
+      int maxCachedIds,
+      String personnummerRoot,
+      String samordningsnummerRoot,
+      Function<String, String> fallback) {
+    this.cache = new ConcurrentHashMap<>();
+    this.cachedIds = new AtomicReferenceArray<>(maxCachedIds);
+    this.personnummerRoot = personnummerRoot;
+    this.samordningsnummerRoot = samordningsnummerRoot;
+    this.fallback = fallback;
+  }
+
+  String root(String patientId) {
+    if (patientId == null) {
+      return fallback.apply(null);
+    }
+
+    final var cached = cache.get(patientId);
+    if (cached != null) {
+      return cached;
+    }
+
+    var root = classify(patientId);
+    if (root == null) {
+      root = fallback.apply(patientId);
+    }
+    if (cache.putIfAbsent(patientId, root) == null) {
+      final var slot = (int) (nextSlot.getAndIncrement() % cachedIds.length());
+      final var evicted = cachedIds.getAndSet(slot, patientId);
+      if (evicted != null) {
+        cache.remove(evicted);
+      }
+    }
+    return root;
+  }
+
+  int cachedCount() {
+    return cache.size();
+  }
+
+  // Returns null when the id is not on a form handled by the fast path
+  private String classify(String patientId) {
+    final var length = patientId.length();
+    if (length != 12 && (length != 13 || patientId.charAt(8) != '-')) {
+      return null;
+    }
+
+    final var digits = new int[12];
+    for (int i = 0, d = 0; i < length; i++) {
+      if (i == 8 && length == 13) {
+        continue;
+      }
+      final var c = patientId.charAt(i);
+      if (c < '0' || c > '9') {
+        return null;
+      }
+      digits[d++] = c - '0';
+    }
+
+    final var year = digits[0] * 1000 + digits[1] * 100 + digits[2] * 10 + digits[3];
+    final var month = digits[4] * 10 + digits[5];
+    final var day = digits[6] * 10 + digits[7];
+    final var samordningsnummer = day > SAMORDNING_DAY_OFFSET;
+    final var dayOfMonth = samordningsnummer ? day - SAMORDNING_DAY_OFFSET : day;
+    if (month < 1
+        || month > 12
+        || dayOfMonth < 1
+        || !YearMonth.of(year, month).isValidDay(dayOfMonth)
+        || !hasValidControlDigit(digits)) {
+      return null;
+    }
+
+    return samordningsnummer ? samordningsnummerRoot : personnummerRoot;
+  }
+
+  // Luhn over the ten digits following the century
+  private static boolean hasValidControlDigit(int[] digits) {
+    var sum = 0;
+    for (int i = 2; i < 11; i++) {
+      final var product = digits[i] * (i % 2 == 0 ? 2 : 1);
+      sum += product / 10 + product % 10;
+    }
+    return (10 - sum % 10) % 10 == digits[11];
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.util.Locale;
+import lombok.Getter;
+
+// Encodings accepted for inbound PdlLogMessages, selected by the contentType header of the JMS
+// message. Messages without the header are JSON.
+@Getter
+public enum PayloadFormat {
+  JSON("application/json"),
+  SMILE("application/x-jackson-smile"),
+  CBOR("application/cbor");
+
+  public static final String CONTENT_TYPE_HEADER = "contentType";
+  public static final String CONTENT_ENCODING_HEADER = "contentEncoding";
+  public static final String GZIP = "gzip";
+
+  private final String contentType;
+
+  PayloadFormat(String contentType) {
+    this.contentType = contentType;
+  }
+
+  // Parameters such as charset are ignored, JSON is always read as UTF-8
+  public static PayloadFormat fromContentType(String contentType) {
+    if (contentType == null || contentType.isBlank()) {
+      return JSON;
+    }
+
+    final var separator = contentType.indexOf(';');
+    final var mediaType =
+        (separator < 0 ? contentType : contentType.substring(0, separator))
+            .trim()
+            .toLowerCase(Locale.ROOT);
+    for (PayloadFormat format : values()) {
+      if (format.contentType.equals(mediaType)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported content type of log message: " + contentType);
+  }
+
+  public static boolean isGzip(String contentEncoding) {
+    return contentEncoding != null && GZIP.equalsIgnoreCase(contentEncoding.trim());
+  }
+}
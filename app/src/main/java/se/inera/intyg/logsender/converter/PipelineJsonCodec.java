@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.model.BatchStringInterner;
+import se.inera.intyg.logsender.model.CompactPdlLogMessage;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.MapperFeature;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.cfg.MapperBuilder;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+import tools.jackson.module.blackbird.BlackbirdModule;
+
+// Readers and writers for all JSON passing through the pipeline, resolved once at startup instead
+// of looking up the (de)serializers by type on every call. The mapper is derived from the
+// application ObjectMapper with Blackbird added, which replaces reflective property access with
+// generated lambdas where the JVM allows it. Inbound PdlLogMessages may also be Smile or CBOR
+// encoded. A mapper can't be rebuilt into another format, so those mappers are built with the
+// modules, mapper features and deserialization features copied from the application ObjectMapper.
+@Component
+public class PipelineJsonCodec {
+
+  // Upper bound of an inflated gzipped payload, guarding against compression bombs
+  static final int MAX_INFLATED_BYTES = 32 * 1024 * 1024;
+
+  private final ObjectMapper objectMapper;
+  private final ObjectReader pdlLogMessageReader;
+  private final Map<PayloadFormat, ObjectReader> inboundReaders;
+  private final ObjectWriter pdlLogMessageWriter;
+  private final ObjectReader compactPdlLogMessageReader;
+  private final ObjectReader batchReader;
+  private final ObjectReader timestampReader;
+
+  public PipelineJsonCodec(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper.rebuild().addModule(new BlackbirdModule()).build();
+    this.pdlLogMessageReader = this.objectMapper.readerFor(PdlLogMessage.class);
+    this.inboundReaders = new EnumMap<>(PayloadFormat.class);
+    this.inboundReaders.put(PayloadFormat.JSON, pdlLogMessageReader);
+    this.inboundReaders.put(
+        PayloadFormat.SMILE, inboundReader(SmileMapper.builder(), objectMapper));
+    this.inboundReaders.put(PayloadFormat.CBOR, inboundReader(CBORMapper.builder(), objectMapper));
+    this.pdlLogMessageWriter = this.objectMapper.writerFor(PdlLogMessage.class);
+    this.compactPdlLogMessageReader = this.objectMapper.readerFor(CompactPdlLogMessage.class);
+    this.batchReader = this.objectMapper.readerFor(new TypeReference<List<String>>() {});
+    this.timestampReader = this.objectMapper.readerFor(LocalDateTime.class);
+  }
+
+  public PdlLogMessage readPdlLogMessage(String json) {
+    return pdlLogMessageReader.readValue(json);
+  }
+
+  public PdlLogMessage readPdlLogMessage(byte[] json) {
+    return pdlLogMessageReader.readValue(json);
+  }
+
+  // Reads all PdlLogMessages of an inbound payload, a single message, an array of messages or a
+  // sequence of root level messages such as NDJSON
+  public List<PdlLogMessage> readPdlLogMessages(String json) {
+    try (MappingIterator<PdlLogMessage> messages = pdlLogMessageReader.readValues(json)) {
+      return messages.readAll();
+    }
+  }
+
+  // As above for an inbound payload in the given format, inflating it first when gzipped
+  public List<PdlLogMessage> readPdlLogMessages(
+      byte[] payload, PayloadFormat format, boolean gzipped) throws IOException {
+    final var reader = inboundReaders.get(format);
+    if (!gzipped) {
+      try (MappingIterator<PdlLogMessage> messages = reader.readValues(payload)) {
+        return messages.readAll();
+      }
+    }
+    try (MappingIterator<PdlLogMessage> messages = reader.readValues(inflate(payload))) {
+      return messages.readAll();
+    }
+  }
+
+  static byte[] inflate(byte[] payload) throws IOException {
+    try (var inflater = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+      final var inflated = inflater.readNBytes(MAX_INFLATED_BYTES + 1);
+      if (inflated.length > MAX_INFLATED_BYTES) {
+        throw new IOException(
+            "Inflated payload exceeds " + MAX_INFLATED_BYTES + " bytes, discarding message.");
+      }
+      return inflated;
+    }
+  }
+
+  public String writePdlLogMessage(PdlLogMessage pdlLogMessage) {
+    return pdlLogMessageWriter.writeValueAsString(pdlLogMessage);
+  }
+
+  // Strings marked @Interned are shared between all messages read by the returned reader
+  public ObjectReader compactPdlLogMessageReader(BatchStringInterner interner) {
+    return compactPdlLogMessageReader.withAttribute(BatchStringInterner.class, interner);
+  }
+
+  // A batch as produced by the aggregation, a JSON array of JSON encoded PdlLogMessages
+  public List<String> readBatch(byte[] json) {
+    return batchReader.readValue(json);
+  }
+
+  public JsonParser createParser(String json) {
+    return objectMapper.createParser(json);
+  }
+
+  // Reads the current value of the parser with the same date formats as the PdlLogMessage model
+  public LocalDateTime readTimestamp(JsonParser parser) {
+    return timestampReader.readValue(parser);
+  }
+
+  private static ObjectReader inboundReader(MapperBuilder<?, ?> builder, ObjectMapper source) {
+    final var config = source.deserializationConfig();
+    for (var feature : MapperFeature.values()) {
+      builder.configure(feature, config.isEnabled(feature));
+    }
+    for (var feature : DeserializationFeature.values()) {
+      builder.configure(feature, config.isEnabled(feature));
+    }
+    source.registeredModules().forEach(builder::addModule);
+    return builder.addModule(new BlackbirdModule()).build().readerFor(PdlLogMessage.class);
+  }
+}
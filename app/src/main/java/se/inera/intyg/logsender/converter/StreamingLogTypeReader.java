@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.model.ActivityPurpose;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import se.riv.informationsecurity.auditing.log.v2.ActivityType;
+import se.riv.informationsecurity.auditing.log.v2.CareProviderType;
+import se.riv.informationsecurity.auditing.log.v2.CareUnitType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import se.riv.informationsecurity.auditing.log.v2.ResourceType;
+import se.riv.informationsecurity.auditing.log.v2.ResourcesType;
+import se.riv.informationsecurity.auditing.log.v2.SystemType;
+import se.riv.informationsecurity.auditing.log.v2.UserType;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+
+// Reads a JSON encoded PdlLogMessage token by token directly into LogTypes, without building the
+// intermediate PdlLogMessage graph. The result is the same as LogTypeFactory.convertPerResource
+// applied to the deserialized PdlLogMessage.
+@Component
+@RequiredArgsConstructor
+public class StreamingLogTypeReader {
+
+  private static final LogTypeFactoryUtil util = LogTypeFactoryUtil.getInstance();
+
+  private final PipelineJsonCodec pipelineJsonCodec;
+
+  public List<LogType> readPerResource(String json) {
+    return readPerResource(json, new EnhetTypeCache());
+  }
+
+  public List<LogType> readPerResource(String json, EnhetTypeCache cache) {
+    try (JsonParser parser = pipelineJsonCodec.createParser(json)) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT);
+      return readLogMessage(parser, cache);
+    } catch (JacksonException e) {
+      throw new IllegalArgumentException(
+          "Could not parse PdlLogMessage from log message JSON: " + e);
+    }
+  }
+
+  private List<LogType> readLogMessage(JsonParser parser, EnhetTypeCache cache) {
+    final var message = new Message();
+    while (parser.nextToken() != JsonToken.END_OBJECT) {
+      final var name = parser.currentName();
+      parser.nextToken();
+      switch (name) {
+        case "logId" -> message.logId = text(parser);
+        case "parentLogId" -> message.parentLogId = text(parser);
+        case "resourceOffset" -> message.resourceOffset = intValue(parser);
+        case "systemId" -> message.systemId = text(parser);
+        case "systemName" -> message.systemName = text(parser);
+        case "activityLevel" -> message.activityLevel = text(parser);
+        case "activityArgs" -> message.activityArgs = text(parser);
+        case "activityType" -> message.activityType = activityType(text(parser));
+        case "purpose" -> message.purpose = purpose(text(parser));
+        case "timestamp" -> message.timestamp = pipelineJsonCodec.readTimestamp(parser);
+        case "userId" -> message.userId = text(parser);
+        case "userName" -> message.userName = text(parser);
+        case "userTitle" -> message.userTitle = text(parser);
+        case "userAssignment" -> message.userAssignment = text(parser);
+        case "userCareUnit" -> message.userCareUnit = readEnhet(parser);
+        case "pdlResourceList" -> message.resources = readResources(parser, cache);
+        default -> parser.skipChildren();
+      }
+    }
+
+    if (message.logId == null) {
+      message.logId = UUID.randomUUID().toString();
+    }
+
+    if (message.resources.size() <= 1) {
+      return List.of(message.toLogType(message.logId, message.resources, cache));
+    }
+
+    final var logTypes = new ArrayList<LogType>(message.resources.size());
+    for (int i = 0; i < message.resources.size(); i++) {
+      logTypes.add(
+          message.toLogType(
+              PdlLogMessage.deriveLogId(
+                  message.logId, message.parentLogId, message.resourceOffset, i),
+              List.of(message.resources.get(i)),
+              cache));
+    }
+    return logTypes;
+  }
+
+  private List<ResourceType> readResources(JsonParser parser, EnhetTypeCache cache) {
+    final var resources = new ArrayList<ResourceType>();
+    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+      return resources;
+    }
+
+    expect(parser.currentToken(), JsonToken.START_ARRAY);
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      resources.add(readResource(parser, cache));
+    }
+    return resources;
+  }
+
+  private ResourceType readResource(JsonParser parser, EnhetTypeCache cache) {
+    expect(parser.currentToken(), JsonToken.START_OBJECT);
+    String resourceType = null;
+    Enhet resourceOwner = null;
+    Patient patient = null;
+    while (parser.nextToken() != JsonToken.END_OBJECT) {
+      final var name = parser.currentName();
+      parser.nextToken();
+      switch (name) {
+        case "resourceType" -> resourceType = text(parser);
+        case "resourceOwner" -> resourceOwner = readEnhet(parser);
+        case "patient" -> patient = readPatient(parser);
+        default -> parser.skipChildren();
+      }
+    }
+
+    final var resource = new ResourceType();
+    resource.setResourceType(resourceType);
+    resource.setCareProvider(resourceOwner.careProvider(cache));
+    resource.setCareUnit(resourceOwner.careUnit(cache));
+
+    // optional according to XML schema
+    resource.setPatient(util.patient(patient.patientId(), patient.patientNamn()));
+
+    return resource;
+  }
+
+  private Enhet readEnhet(JsonParser parser) {
+    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+
+    expect(parser.currentToken(), JsonToken.START_OBJECT);
+    String enhetsId = null;
+    String enhetsNamn = null;
+    String vardgivareId = null;
+    String vardgivareNamn = null;
+    while (parser.nextToken() != JsonToken.END_OBJECT) {
+      final var name = parser.currentName();
+      parser.nextToken();
+      switch (name) {
+        case "enhetsId" -> enhetsId = text(parser);
+        case "enhetsNamn" -> enhetsNamn = text(parser);
+        case "vardgivareId" -> vardgivareId = text(parser);
+        case "vardgivareNamn" -> vardgivareNamn = text(parser);
+        default -> parser.skipChildren();
+      }
+    }
+    return new Enhet(enhetsId, enhetsNamn, vardgivareId, vardgivareNamn);
+  }
+
+  private Patient readPatient(JsonParser parser) {
+    if (parser.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+
+    expect(parser.currentToken(), JsonToken.START_OBJECT);
+    String patientId = null;
+    String patientNamn = null;
+    while (parser.nextToken() != JsonToken.END_OBJECT) {
+      final var name = parser.currentName();
+      parser.nextToken();
+      switch (name) {
+        case "patientId" -> patientId = text(parser);
+        case "patientNamn" -> patientNamn = text(parser);
+        default -> parser.skipChildren();
+      }
+    }
+    return new Patient(patientId, patientNamn);
+  }
+
+  private static String text(JsonParser parser) {
+    final var token = parser.currentToken();
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    if (!token.isScalarValue()) {
+      throw new IllegalArgumentException(
+          "Could not parse PdlLogMessage from log message JSON: unexpected " + token);
+    }
+    return parser.getValueAsString();
+  }
+
+  private static int intValue(JsonParser parser) {
+    final var token = parser.currentToken();
+    if (token == JsonToken.VALUE_NULL) {
+      return 0;
+    }
+    if (token != JsonToken.VALUE_NUMBER_INT) {
+      throw new IllegalArgumentException(
+          "Could not parse PdlLogMessage from log message JSON: unexpected " + token);
+    }
+    return parser.getIntValue();
+  }
+
+  private static void expect(JsonToken actual, JsonToken expected) {
+    if (actual != expected) {
+      throw new IllegalArgumentException(
+          "Could not parse PdlLogMessage from log message JSON: expected "
+              + expected
+              + " but was "
+              + actual);
+    }
+  }
+
+  private static se.inera.intyg.logsender.model.ActivityType activityType(String value) {
+    return value != null ? se.inera.intyg.logsender.model.ActivityType.valueOf(value) : null;
+  }
+
+  private static ActivityPurpose purpose(String value) {
+    return value != null ? ActivityPurpose.valueOf(value) : null;
+  }
+
+  private record Enhet(
+      String enhetsId, String enhetsNamn, String vardgivareId, String vardgivareNamn) {
+
+    CareUnitType careUnit(EnhetTypeCache cache) {
+      return cache.careUnit(enhetsId, enhetsNamn);
+    }
+
+    CareProviderType careProvider(EnhetTypeCache cache) {
+      return cache.careProvider(vardgivareId, vardgivareNamn);
+    }
+  }
+
+  private record Patient(String patientId, String patientNamn) {}
+
+  private static final class Message {
+
+    private String logId;
+    private String parentLogId;
+    private int resourceOffset;
+    private String systemId;
+    private String systemName;
+    private String activityLevel;
+    private String activityArgs;
+    private se.inera.intyg.logsender.model.ActivityType activityType;
+    private ActivityPurpose purpose;
+    private LocalDateTime timestamp;
+    private String userId;
+    private String userName;
+    private String userTitle;
+    private String userAssignment;
+    private Enhet userCareUnit;
+    private List<ResourceType> resources = List.of();
+
+    private LogType toLogType(
+        String logTypeId, List<ResourceType> logTypeResources, EnhetTypeCache cache) {
+      final var logType = new LogType();
+      logType.setLogId(logTypeId);
+
+      final var system = new SystemType();
+      system.setSystemId(util.trim(systemId));
+      system.setSystemName(util.trimToNull(systemName));
+      logType.setSystem(system);
+
+      final var activity = new ActivityType();
+      activity.setActivityType(activityType.getType());
+      activity.setStartDate(timestamp);
+      activity.setPurpose(purpose.getType());
+
+      // optional according to XML schema
+      activity.setActivityLevel(util.trimToNull(activityLevel));
+      activity.setActivityArgs(util.trimToNull(activityArgs));
+      logType.setActivity(activity);
+
+      final var user = new UserType();
+      user.setUserId(util.trim(userId));
+      user.setCareProvider(userCareUnit.careProvider(cache));
+      user.setCareUnit(userCareUnit.careUnit(cache));
+
+      // optional according to XML schema
+      user.setName(util.trimToNull(userName));
+      user.setAssignment(util.trimToNull(userAssignment));
+      user.setTitle(util.trimToNull(userTitle));
+      logType.setUser(user);
+
+      logType.setResources(new ResourcesType());
+      logType.getResources().getResource().addAll(logTypeResources);
+
+      return logType;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Batch scoped interner for low-cardinality values, handed to Jackson as a reader attribute so
+// that values annotated with @Interned are shared by all messages deserialized for the batch.
+public final class BatchStringInterner {
+
+  private final Map<String, String> values = new ConcurrentHashMap<>();
+
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    final var existing = values.putIfAbsent(value, value);
+    return existing != null ? existing : value;
+  }
+
+  public int size() {
+    return values.size();
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// Immutable read-only counterpart of PdlLogMessage, deserialized from the same JSON. Identifiers
+// of systems, users and care units are interned within a batch, see BatchStringInterner.
+public record CompactPdlLogMessage(
+    String logId,
+    String parentLogId,
+    Integer resourceOffset,
+    @Interned String systemId,
+    @Interned String systemName,
+    @Interned String activityLevel,
+    String activityArgs,
+    ActivityType activityType,
+    ActivityPurpose purpose,
+    LocalDateTime timestamp,
+    @Interned String userId,
+    @Interned String userName,
+    @Interned String userTitle,
+    @Interned String userAssignment,
+    Unit userCareUnit,
+    List<Resource> pdlResourceList) {
+
+  public CompactPdlLogMessage {
+    if (logId == null) {
+      logId = UUID.randomUUID().toString();
+    }
+    if (resourceOffset == null) {
+      resourceOffset = 0;
+    }
+    pdlResourceList = pdlResourceList == null ? List.of() : List.copyOf(pdlResourceList);
+  }
+
+  public record Unit(
+      @Interned String enhetsId,
+      @Interned String enhetsNamn,
+      @Interned String vardgivareId,
+      @Interned String vardgivareNamn) {}
+
+  public record Patient(String patientId, String patientNamn) {}
+
+  public record Resource(Patient patient, @Interned String resourceType, Unit resourceOwner) {}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.model;
+
+import tools.jackson.core.JsonParser;
+import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.ValueDeserializer;
+
+// Interns string values through the BatchStringInterner set as reader attribute, if any
+public class InternedStringDeserializer extends ValueDeserializer<String> {
+
+  @Override
+  public String deserialize(JsonParser parser, DeserializationContext ctxt) {
+    if (!parser.currentToken().isScalarValue()) {
+      return (String) ctxt.handleUnexpectedToken(String.class, parser);
+    }
+    final var value = parser.getValueAsString();
+    return ctxt.getAttribute(BatchStringInterner.class) instanceof BatchStringInterner interner
+        ? interner.intern(value)
+        : value;
+  }
+}
@@ -20,6 +20,7 @@ package se.inera.intyg.logsender.model;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +35,11 @@ public class PdlLogMessage implements Serializable {
   @Serial private static final long serialVersionUID = 1L;
 
   private final String logId;
+
+  // Set on the messages a message is split into, the logId of the original message and the index
+  // in it of the first resource of this message
+  private String parentLogId;
+  private int resourceOffset;
   private String systemId;
   private String systemName;
 
@@ -85,7 +91,34 @@ public class PdlLogMessage implements Serializable {
   }
 
   public PdlLogMessage copy(boolean includeResourceList) {
-    PdlLogMessage msg = new PdlLogMessage(this.activityType, this.purpose);
+    return copy(UUID.randomUUID().toString(), includeResourceList);
+  }
+
+  // Copy without resources whose logId is derived from the logId of the original message and the
+  // index in it of the first resource the copy will hold, so that a redelivered message is split
+  // into the same logIds, and a resource gets the same logId whether its message was split before
+  // or not.
+  public PdlLogMessage derive(int resourceIndex) {
+    final var msg = copy(deriveLogId(logId, parentLogId, resourceOffset, resourceIndex), false);
+    msg.setParentLogId(parentLogId != null ? parentLogId : logId);
+    msg.setResourceOffset(resourceOffset + resourceIndex);
+    return msg;
+  }
+
+  public static String deriveLogId(
+      String logId, String parentLogId, int resourceOffset, int resourceIndex) {
+    return deriveLogId(parentLogId != null ? parentLogId : logId, resourceOffset + resourceIndex);
+  }
+
+  public static String deriveLogId(String logId, int resourceIndex) {
+    return UUID.nameUUIDFromBytes((logId + ":" + resourceIndex).getBytes(StandardCharsets.UTF_8))
+        .toString();
+  }
+
+  private PdlLogMessage copy(String copyLogId, boolean includeResourceList) {
+    PdlLogMessage msg = new PdlLogMessage(copyLogId);
+    msg.setActivityType(this.activityType);
+    msg.setPurpose(this.purpose);
     msg.setActivityArgs(this.activityArgs);
     msg.setActivityLevel(this.activityLevel);
     msg.setSystemId(this.systemId);
@@ -20,13 +20,19 @@ package se.inera.intyg.logsender.routes;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Endpoint;
 import org.apache.camel.LoggingLevel;
 import org.apache.camel.builder.RouteBuilder;
-import org.apache.camel.processor.aggregate.GroupedExchangeAggregationStrategy;
+import org.apache.camel.component.jms.JmsEndpoint;
+import org.apache.camel.support.builder.PredicateBuilder;
 import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.aggregation.AggregationMemoryBudget;
+import se.inera.intyg.logsender.aggregation.LogMessageBatchAggregationStrategy;
 import se.inera.intyg.logsender.config.LogsenderProperties;
 import se.inera.intyg.logsender.exception.BatchValidationException;
 import se.inera.intyg.logsender.exception.TemporaryException;
+import se.inera.intyg.logsender.service.BacklogDrainMode;
+import se.inera.intyg.logsender.service.BatchRetryPolicy;
 
 @Component
 @RequiredArgsConstructor
@@ -34,12 +40,16 @@ import se.inera.intyg.logsender.exception.TemporaryException;
 public class LogSenderRouteBuilder extends RouteBuilder {
 
   private final LogsenderProperties properties;
+  private final LogMessageBatchAggregationStrategy logMessageBatchAggregationStrategy;
+  private final AggregationMemoryBudget aggregationMemoryBudget;
+  private final BatchRetryPolicy batchRetryPolicy;
+  private final BacklogDrainMode backlogDrainMode;
 
   /*
-   * This route depends on the MQ provider (currently ActiveMQ) for redelivery. Any temporary exception thrown
-   * by any component in this route is NOT handled by the route, but triggers a transaction rollback in the
-   * MQ provider. The MQ provider will then, if properly configured, put the message back into the queue after
-   * the proper redelivery wait time has passed.
+   * A batch failing with a temporary exception is moved to a separate retry queue, in the same transaction,
+   * which is consumed by its own capped set of consumers. The backoff between attempts is a scheduled
+   * delivery delay held by the MQ provider, so no consumer is blocked while waiting. Once the retry
+   * attempts are used up the batch is moved to the DLQ of the aggregated queue.
    *
    * Any permanent exception is handled by the route, however, and will NOT trigger a redelivery.
    */
@@ -47,34 +57,49 @@ public class LogSenderRouteBuilder extends RouteBuilder {
   public void configure() {
     errorHandler(defaultErrorHandler().logExhausted(false));
 
-    // 1. Starts by splitting any inbound PdlLogMessage instances having more than one PdlResource
+    // 1. An inbound message holds one PdlLogMessage or, from producers batching on their side, a
+    // JSON array or NDJSON sequence of them, which are fanned out into separate messages first.
+    // Starts by splitting any inbound PdlLogMessage instances having more than one PdlResource
     // into separate
-    // PdlLogMessage instances, one per each PdlResource.
-    // Then the route Aggregates (n) messages together and passes them to a custom bean which will
-    // transform the
-    // content into a single list of PdlLogMessage.
-    // The bean:logMessageAggregationProcessor outputs a List of PdlLogMessage which is passed to a
-    // JMS queue.
+    // PdlLogMessage instances, one per each PdlResource. With split mode PER_MESSAGE messages are
+    // kept whole and only chunked when holding more than maxResourcesPerMessage resources, the
+    // split into one LogType per resource then happens when the batch is sent.
+    // Then the route Aggregates (n) messages together, appending each of them to a pooled buffer
+    // that already holds the batch in its final format, a JSON list of PdlLogMessage.
+    // The bean:logMessageAggregationProcessor closes the batch and outputs it as bytes which are
+    // passed to a JMS queue.
+    // A batch is completed when it holds bulkSize entries, when the accumulated UTF-8 size of its
+    // entries reaches maxBatchBytes, or when bulkTimeout has passed, whichever comes first.
+    // Consumption is paused while pending batches hold more than the configured memory budget.
     from(properties.queue().receiveLogMessageEndpoint())
         .routeId("aggregatorRoute")
+        .routePolicy(aggregationMemoryBudget)
         .split()
         .method("logMessageSplitProcessor")
-        .aggregate(new GroupedExchangeAggregationStrategy())
+        .aggregate(logMessageBatchAggregationStrategy)
         .constant(true)
         .completionInterval(properties.aggregation().bulkTimeout())
         .completionPredicate(
-            header("CamelAggregatedSize").isEqualTo(properties.aggregation().bulkSize()))
+            PredicateBuilder.or(
+                header("CamelAggregatedSize").isEqualTo(properties.aggregation().bulkSize()),
+                exchangeProperty(LogMessageBatchAggregationStrategy.AGGREGATED_BYTES)
+                    .isGreaterThanOrEqualTo(properties.aggregation().maxBatchBytes())))
         .to("bean:logMessageAggregationProcessor")
         .to(properties.queue().receiveAggregatedLogMessageEndpoint())
         .stop();
 
     // 2. In a transaction, reads from jms/AggregatedLogSenderQueue and uses custom
     // bean:logMessageProcessor
-    // to convert into ehr:logstore format and send. Exception handling delegates resends to AMQ.
+    // to convert into ehr:logstore format and send. Batches failing with a temporary exception are
+    // moved to the retry queue, so the consumers of this queue only handle first attempts.
+    // While a backlog is drained, BacklogDrainer consumes merged batches from the same queue. After
+    // a failed drain, a batch sent here or by the retry route lets drain mode switch on again.
     from(properties.queue().receiveAggregatedLogMessageEndpoint())
         .routeId("aggregatedJmsToSenderRoute")
         .onException(TemporaryException.class)
+        .handled(true)
         .to("direct:logMessageTemporaryErrorHandlerEndpoint")
+        .to("direct:logMessageRetryEndpoint")
         .end()
         .onException(BatchValidationException.class)
         .handled(true)
@@ -86,6 +111,48 @@ public class LogSenderRouteBuilder extends RouteBuilder {
         .end()
         .transacted()
         .to("bean:logMessageSendProcessor")
+        .bean(batchRetryPolicy, "recordFirstAttempt")
+        .bean(backlogDrainMode, "batchSent")
+        .stop();
+
+    // 3. In a transaction, reads from the retry queue with its own consumers and resends each batch
+    // as AMQ delivers it once its backoff delay has passed. Batches failing again are rescheduled
+    // until maxAttempts is reached, after which they are moved to the DLQ. JMSMessageID is set to
+    // the id of the original batch, which keys the StoreLogPayloadCache.
+    final var retry = properties.queue().retry();
+    from(retryEndpoint(retry.endpoint(), retry.concurrency()))
+        .routeId("retryJmsToSenderRoute")
+        .onException(TemporaryException.class)
+        .onWhen(method(batchRetryPolicy, "hasAttemptsLeft"))
+        .handled(true)
+        .to("direct:logMessageTemporaryErrorHandlerEndpoint")
+        .to("direct:logMessageRetryEndpoint")
+        .end()
+        .onException(TemporaryException.class)
+        .handled(true)
+        .to("direct:logMessageTemporaryErrorHandlerEndpoint")
+        .to("direct:logMessageRetriesExhaustedEndpoint")
+        .end()
+        .onException(BatchValidationException.class)
+        .handled(true)
+        .to("direct:logMessageBatchValidationErrorHandlerEndpoint")
+        .end()
+        .onException(Exception.class)
+        .handled(true)
+        .to("direct:logMessagePermanentErrorHandlerEndpoint")
+        .end()
+        .transacted()
+        .bean(batchRetryPolicy, "checkScheduled")
+        .setHeader("JMSMessageID", header(BatchRetryPolicy.BATCH_ID))
+        .to("bean:logMessageSendProcessor")
+        .bean(batchRetryPolicy, "recordRetry")
+        .bean(backlogDrainMode, "batchSent")
+        .stop();
+
+    from("direct:logMessageRetryEndpoint")
+        .routeId("retryScheduling")
+        .bean(batchRetryPolicy, "schedule")
+        .to(retry.endpoint())
         .stop();
 
     // Error handling
@@ -110,10 +177,27 @@ public class LogSenderRouteBuilder extends RouteBuilder {
         .to(properties.queue().receiveAggregatedLogMessageDlq())
         .stop();
 
+    // The scheduled delay of the last retry is removed, or the broker would delay the DLQ message
+    from("direct:logMessageRetriesExhaustedEndpoint")
+        .routeId("retriesExhaustedLogging")
+        .log(
+            LoggingLevel.ERROR,
+            log,
+            simple(
+                    "ENTER - Retries exhausted for LogMessage batch after ${header.%s} retries, moving it to DLQ"
+                        .formatted(BatchRetryPolicy.ATTEMPT))
+                .toString())
+        .removeHeader(BatchRetryPolicy.SCHEDULED_DELAY)
+        .to(properties.queue().receiveAggregatedLogMessageDlq())
+        .stop();
+
     from("direct:logMessageTemporaryErrorHandlerEndpoint")
         .routeId("temporaryErrorLogging")
         .choice()
-        .when(header("JMSRedelivered").isEqualTo("false"))
+        .when(
+            PredicateBuilder.and(
+                header("JMSRedelivered").isEqualTo("false"),
+                header(BatchRetryPolicy.ATTEMPT).isNull()))
         .log(
             LoggingLevel.ERROR,
             log,
@@ -129,4 +213,14 @@ public class LogSenderRouteBuilder extends RouteBuilder {
                 .toString())
         .stop();
   }
+
+  // The retry queue has its own consumers, capped separately from those of the aggregated queue
+  private Endpoint retryEndpoint(String uri, int concurrency) {
+    final var endpoint = endpoint(uri);
+    if (endpoint instanceof JmsEndpoint jmsEndpoint) {
+      jmsEndpoint.setConcurrentConsumers(concurrency);
+      jmsEndpoint.setMaxConcurrentConsumers(concurrency);
+    }
+    return endpoint;
+  }
 }
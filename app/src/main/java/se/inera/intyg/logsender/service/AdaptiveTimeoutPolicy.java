@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+
+// Derives the receive timeout of StoreLog calls from the latency of the last window calls: the
+// p99 latency times factor, scaled by how much larger the batch is than the median batch and
+// bounded by min- and maxReceiveTimeout. A timed out call is recorded with the timeout it was
+// given, so once more than 1% of the window has timed out the timeout grows by factor. Until
+// minSamples calls have been recorded, or when adaptive timeouts are disabled,
+// maxReceiveTimeout is used.
+@Component
+public class AdaptiveTimeoutPolicy {
+
+  private final boolean adaptive;
+  private final long minReceiveTimeout;
+  private final long maxReceiveTimeout;
+  private final double factor;
+  private final int minSamples;
+  private final long[] latencies;
+  private final int[] entries;
+
+  private int next;
+  private int samples;
+  private volatile long lastReceiveTimeout;
+
+  public AdaptiveTimeoutPolicy(LogsenderProperties properties, MeterRegistry meterRegistry) {
+    final var timeout = properties.storeLog().transport().timeout();
+    this.adaptive = timeout.adaptive();
+    this.minReceiveTimeout = timeout.minReceiveTimeout();
+    this.maxReceiveTimeout = timeout.maxReceiveTimeout();
+    this.factor = timeout.factor();
+    this.minSamples = timeout.minSamples();
+    this.latencies = new long[timeout.window()];
+    this.entries = new int[timeout.window()];
+    this.lastReceiveTimeout = maxReceiveTimeout;
+
+    Gauge.builder("logsender.storelog.receive.timeout", this, p -> p.lastReceiveTimeout)
+        .description("Receive timeout used for the latest StoreLog call")
+        .baseUnit("milliseconds")
+        .register(meterRegistry);
+  }
+
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  // Entries is the number of LogType entries in the request, or 0 when not known
+  public synchronized void record(long latencyMillis, int entryCount) {
+    if (!adaptive) {
+      return;
+    }
+    latencies[next] = latencyMillis;
+    entries[next] = entryCount;
+    next = (next + 1) % latencies.length;
+    samples = Math.min(samples + 1, latencies.length);
+  }
+
+  // A timed out call took at least the receive timeout it was given
+  public void recordTimeout(long receiveTimeoutMillis, int entryCount) {
+    record(receiveTimeoutMillis, entryCount);
+  }
+
+  public long receiveTimeout(int entryCount) {
+    final var receiveTimeout = adaptive ? computeReceiveTimeout(entryCount) : maxReceiveTimeout;
+    lastReceiveTimeout = receiveTimeout;
+    return receiveTimeout;
+  }
+
+  private synchronized long computeReceiveTimeout(int entryCount) {
+    if (samples < minSamples) {
+      return maxReceiveTimeout;
+    }
+
+    final var sortedLatencies = Arrays.copyOf(latencies, samples);
+    Arrays.sort(sortedLatencies);
+    final var p99 = sortedLatencies[(int) Math.ceil(samples * 0.99) - 1];
+
+    final var medianEntries = medianEntries();
+    final var scale =
+        entryCount > 0 && medianEntries > 0
+            ? Math.max(1.0, (double) entryCount / medianEntries)
+            : 1.0;
+
+    final var receiveTimeout = Math.round(p99 * factor * scale);
+    return Math.max(minReceiveTimeout, Math.min(receiveTimeout, maxReceiveTimeout));
+  }
+
+  private int medianEntries() {
+    final var known = Arrays.stream(entries, 0, samples).filter(e -> e > 0).sorted().toArray();
+    return known.length > 0 ? known[known.length / 2] : 0;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+
+// Decides when the aggregated queue is drained by BacklogDrainer. Drain mode is switched on when
+// the queue holds at least startDepth batches and off again once it holds at most stopDepth. After
+// a failed drain transaction it stays off for at least one check interval and until the regular
+// route, which handles errors per batch, has sent a batch again. This keeps a flapping outage from
+// rolling back the same merged batches until the broker moves them to its DLQ.
+@Component
+@Slf4j
+public class BacklogDrainMode {
+
+  private final long startDepth;
+  private final long stopDepth;
+  private final long cooldown;
+
+  private volatile boolean active;
+  private volatile long depth;
+  private long pausedUntil;
+  private volatile boolean awaitingSend;
+
+  public BacklogDrainMode(LogsenderProperties properties, MeterRegistry meterRegistry) {
+    final var drain = properties.queue().drain();
+    this.startDepth = drain.startDepth();
+    this.stopDepth = Math.min(drain.stopDepth(), drain.startDepth() - 1);
+    this.cooldown = drain.checkInterval();
+
+    Gauge.builder("logsender.drain.active", this, mode -> mode.active ? 1 : 0)
+        .description("1 when the aggregated queue is drained in merged batches")
+        .register(meterRegistry);
+    Gauge.builder("logsender.drain.queue.depth", this, mode -> mode.depth)
+        .description("Batches in the aggregated queue at the latest check, up to startDepth")
+        .register(meterRegistry);
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  // The depth only needs to be counted up to this limit to decide
+  long depthLimit() {
+    return startDepth;
+  }
+
+  // Returns true when drain mode was switched on
+  synchronized boolean update(long queueDepth, long now) {
+    depth = queueDepth;
+    if (!active && !awaitingSend && queueDepth >= startDepth && now >= pausedUntil) {
+      log.info("Aggregated queue holds at least {} batches, switching drain mode on", queueDepth);
+      active = true;
+      return true;
+    }
+    if (active && queueDepth <= stopDepth) {
+      log.info("Aggregated queue holds {} batches, switching drain mode off", queueDepth);
+      active = false;
+    }
+    return false;
+  }
+
+  synchronized void failed(long now) {
+    if (active) {
+      log.warn(
+          "Draining the aggregated queue failed, drain mode off until a batch has been sent by the"
+              + " regular route, at least {} ms",
+          cooldown);
+      active = false;
+    }
+    pausedUntil = now + cooldown;
+    awaitingSend = true;
+  }
+
+  // Called by the regular routes after a batch has been sent
+  public void batchSent() {
+    awaitingSend = false;
+  }
+
+  void switchOff() {
+    active = false;
+  }
+}
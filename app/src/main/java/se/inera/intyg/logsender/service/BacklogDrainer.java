@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.TextMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.inera.intyg.logsender.exception.BatchValidationException;
+import se.inera.intyg.logsender.exception.TemporaryException;
+
+// Drains a backlog in the aggregated queue, e.g. after an NTjP outage, while BacklogDrainMode is
+// active. Each of concurrency workers receives up to batchesPerTransaction batches in one JMS
+// transaction and sends them as one batch, which LogSenderClient splits into requests of the
+// oversized batch size. The transaction is only committed when all entries were stored. When the
+// merged batch is rejected, the batches are resent one by one in the same transaction and only
+// those rejected on their own are moved to the DLQ. The regular route keeps consuming alongside
+// the workers. Queue depth is counted by browsing the
+// queue, which ActiveMQ may limit to the messages it has paged in.
+@Component
+@Slf4j
+public class BacklogDrainer implements SmartLifecycle {
+
+  private static final long RECEIVE_TIMEOUT_MILLIS = 1000;
+
+  private final BacklogDrainMode backlogDrainMode;
+  private final LogMessageSendProcessor logMessageSendProcessor;
+  private final JmsTemplate jmsTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final String queueName;
+  private final String dlqName;
+  private final boolean enabled;
+  private final int batchesPerTransaction;
+  private final int concurrency;
+  private final long checkInterval;
+  private final Counter drainedBatches;
+
+  private ScheduledExecutorService monitor;
+  private ExecutorService workers;
+
+  public BacklogDrainer(
+      LogsenderProperties properties,
+      BacklogDrainMode backlogDrainMode,
+      LogMessageSendProcessor logMessageSendProcessor,
+      @Qualifier("jmsConnectionFactory") ConnectionFactory connectionFactory,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry) {
+    final var drain = properties.queue().drain();
+    this.backlogDrainMode = backlogDrainMode;
+    this.logMessageSendProcessor = logMessageSendProcessor;
+    this.queueName = queueName(properties.queue().receiveAggregatedLogMessageEndpoint());
+    this.dlqName = queueName(properties.queue().receiveAggregatedLogMessageDlq());
+    this.enabled = drain.enabled();
+    this.batchesPerTransaction = drain.batchesPerTransaction();
+    this.concurrency = drain.concurrency();
+    this.checkInterval = drain.checkInterval();
+
+    this.jmsTemplate = new JmsTemplate(connectionFactory);
+    jmsTemplate.setSessionTransacted(true);
+    jmsTemplate.setReceiveTimeout(RECEIVE_TIMEOUT_MILLIS);
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+    this.drainedBatches =
+        Counter.builder("logsender.drain.batches")
+            .description("Aggregated batches sent merged while draining the backlog")
+            .register(meterRegistry);
+  }
+
+  // The JMS queue name of a Camel endpoint uri such as activemq:queue:name?options
+  static String queueName(String endpointUri) {
+    final var options = endpointUri.indexOf('?');
+    final var path = options < 0 ? endpointUri : endpointUri.substring(0, options);
+    final var queue = path.lastIndexOf("queue:");
+    return queue < 0 ? path.substring(path.lastIndexOf(':') + 1) : path.substring(queue + 6);
+  }
+
+  @Override
+  public synchronized void start() {
+    if (!enabled || monitor != null) {
+      return;
+    }
+    monitor =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("drain-monitor").daemon().factory());
+    workers =
+        Executors.newFixedThreadPool(
+            concurrency, Thread.ofPlatform().name("drain-worker-", 0).daemon().factory());
+    monitor.scheduleWithFixedDelay(
+        this::check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (monitor != null) {
+      monitor.shutdownNow();
+      workers.shutdown();
+      backlogDrainMode.switchOff();
+      monitor = null;
+    }
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return monitor != null;
+  }
+
+  private void check() {
+    try {
+      if (backlogDrainMode.update(queueDepth(), System.currentTimeMillis())) {
+        for (int i = 0; i < concurrency; i++) {
+          workers.execute(this::drain);
+        }
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not check the depth of queue {}", queueName, e);
+    }
+  }
+
+  private long queueDepth() {
+    final var limit = backlogDrainMode.depthLimit();
+    final Long depth =
+        jmsTemplate.browse(
+            queueName,
+            (session, browser) -> {
+              long count = 0;
+              for (var messages = browser.getEnumeration();
+                  count < limit && messages.hasMoreElements();
+                  messages.nextElement()) {
+                count++;
+              }
+              return count;
+            });
+    return depth != null ? depth : 0;
+  }
+
+  private void drain() {
+    while (backlogDrainMode.isActive()) {
+      try {
+        if (drainOnce() == 0) {
+          return;
+        }
+      } catch (RuntimeException e) {
+        log.warn("Could not send merged batches from queue {}, rolled back", queueName, e);
+        backlogDrainMode.failed(System.currentTimeMillis());
+      }
+    }
+  }
+
+  private int drainOnce() {
+    final Integer drained =
+        transactionTemplate.execute(
+            status -> {
+              final var batches = new ArrayList<byte[]>();
+              Message message;
+              while (batches.size() < batchesPerTransaction
+                  && (message = jmsTemplate.receive(queueName)) != null) {
+                batches.add(body(message));
+              }
+              if (!batches.isEmpty()) {
+                send(batches);
+                drainedBatches.increment(batches.size());
+              }
+              return batches.size();
+            });
+    return drained != null ? drained : 0;
+  }
+
+  // A temporary exception rolls back the transaction, so the batches are redelivered to the
+  // regular route. Any other exception means that some batch was rejected or could not be read.
+  void send(List<byte[]> batches) {
+    try {
+      logMessageSendProcessor.processMerged(Collections.unmodifiableList(batches));
+    } catch (TemporaryException e) {
+      throw new IllegalStateException("Could not send " + batches.size() + " merged batches", e);
+    } catch (Exception e) {
+      log.warn("Merged batches were rejected, sending the {} batches one by one", batches.size());
+      sendOneByOne(batches);
+    }
+  }
+
+  // Handles each batch as the regular route does: rejected batches are moved to the DLQ, batches
+  // failing permanently otherwise are dropped. Batches sent before a temporary exception are
+  // stored again when the rolled back batches are redelivered.
+  private void sendOneByOne(List<byte[]> batches) {
+    for (var batch : batches) {
+      try {
+        logMessageSendProcessor.process(batch, null);
+      } catch (TemporaryException e) {
+        throw new IllegalStateException("Could not send batch while draining", e);
+      } catch (BatchValidationException e) {
+        log.error("Batch rejected while draining, moving it to DLQ {}", dlqName, e);
+        deadLetter(batch);
+      } catch (Exception e) {
+        log.error("Permanent exception for batch while draining, dropping it", e);
+      }
+    }
+  }
+
+  void deadLetter(byte[] batch) {
+    jmsTemplate.send(
+        dlqName,
+        session -> {
+          final var message = session.createBytesMessage();
+          message.writeBytes(batch);
+          return message;
+        });
+  }
+
+  private static byte[] body(Message message) {
+    try {
+      if (message instanceof BytesMessage bytesMessage) {
+        final var body = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(body);
+        return body;
+      }
+      if (message instanceof TextMessage textMessage) {
+        return textMessage.getText().getBytes(StandardCharsets.UTF_8);
+      }
+      throw new IllegalStateException("Unsupported message type " + message.getClass().getName());
+    } catch (JMSException e) {
+      throw JmsUtils.convertJmsAccessException(e);
+    }
+  }
+}
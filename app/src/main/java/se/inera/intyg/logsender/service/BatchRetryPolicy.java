@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+
+// Schedules batches that failed with a TemporaryException on the retry queue, which has its own
+// consumers, so retries never take capacity from batches on their first attempt. Retry n waits
+// initialDelay * multiplier^(n - 1) milliseconds, at most maxDelay, before the batch is sent again.
+// The delay is set as AMQ_SCHEDULED_DELAY and held by the broker, which requires schedulerSupport
+// to be enabled on it. Without it retries are delivered at once, which is logged once. Batches
+// still failing after maxAttempts retries are moved to the DLQ of the aggregated queue.
+@Component
+@Slf4j
+public class BatchRetryPolicy {
+
+  public static final String ATTEMPT = "LogsenderRetryAttempt";
+  public static final String NOT_BEFORE = "LogsenderRetryNotBefore";
+  public static final String FIRST_ENQUEUED = "LogsenderFirstEnqueued";
+  public static final String BATCH_ID = "LogsenderBatchId";
+  public static final String SCHEDULED_DELAY = "AMQ_SCHEDULED_DELAY";
+  private static final long EARLY_TOLERANCE = 100;
+
+  private final int maxAttempts;
+  private final long initialDelay;
+  private final double multiplier;
+  private final long maxDelay;
+  private final Counter scheduled;
+  private final Timer firstAttemptLatency;
+  private final Timer retryLatency;
+  private final AtomicBoolean unscheduledLogged = new AtomicBoolean();
+
+  public BatchRetryPolicy(LogsenderProperties properties, MeterRegistry meterRegistry) {
+    final var retry = properties.queue().retry();
+    this.maxAttempts = retry.maxAttempts();
+    this.initialDelay = retry.initialDelay();
+    this.multiplier = retry.multiplier();
+    this.maxDelay = retry.maxDelay();
+
+    this.scheduled =
+        Counter.builder("logsender.retry.scheduled")
+            .description("Batches put on the retry queue after a temporary error")
+            .register(meterRegistry);
+    this.firstAttemptLatency = latencyTimer("first", meterRegistry);
+    this.retryLatency = latencyTimer("retry", meterRegistry);
+  }
+
+  // Called with a failed batch before it is sent to the retry queue
+  public void schedule(Exchange exchange) {
+    final var message = exchange.getMessage();
+    final var attempt = attempt(exchange) + 1;
+    final var delay = delay(attempt);
+    message.setHeader(FIRST_ENQUEUED, firstEnqueued(exchange));
+    // The retry queue assigns a new JMSMessageID, the original one keys the StoreLogPayloadCache
+    if (message.getHeader(BATCH_ID) == null) {
+      message.setHeader(BATCH_ID, message.getHeader("JMSMessageID"));
+    }
+    message.setHeader(ATTEMPT, attempt);
+    message.setHeader(NOT_BEFORE, System.currentTimeMillis() + delay);
+    message.setHeader(SCHEDULED_DELAY, delay);
+    scheduled.increment();
+    log.info(
+        "Scheduling retry {} of {} for logMessage batch in {} ms", attempt, maxAttempts, delay);
+  }
+
+  // Once false, the batch is moved to the DLQ
+  public boolean hasAttemptsLeft(Exchange exchange) {
+    return attempt(exchange) < maxAttempts;
+  }
+
+  // Called by the retry consumer, which does not wait for the delay itself
+  public void checkScheduled(Exchange exchange) {
+    if (arrivedEarly(exchange) && unscheduledLogged.compareAndSet(false, true)) {
+      log.warn(
+          "Retry of logMessage batch was delivered before its backoff delay had passed, enable "
+              + "schedulerSupport on the broker for retries to be delayed");
+    }
+  }
+
+  boolean arrivedEarly(Exchange exchange) {
+    final var notBefore = exchange.getMessage().getHeader(NOT_BEFORE, Long.class);
+    return notBefore != null && notBefore - System.currentTimeMillis() > EARLY_TOLERANCE;
+  }
+
+  public void recordFirstAttempt(Exchange exchange) {
+    firstAttemptLatency.record(latency(exchange), TimeUnit.MILLISECONDS);
+  }
+
+  public void recordRetry(Exchange exchange) {
+    retryLatency.record(latency(exchange), TimeUnit.MILLISECONDS);
+  }
+
+  long delay(int attempt) {
+    return Math.min(maxDelay, (long) (initialDelay * Math.pow(multiplier, attempt - 1)));
+  }
+
+  private static int attempt(Exchange exchange) {
+    final var attempt = exchange.getMessage().getHeader(ATTEMPT, Integer.class);
+    return attempt != null ? attempt : 0;
+  }
+
+  // Latency is measured from when the batch was first put on the aggregated queue
+  private static long firstEnqueued(Exchange exchange) {
+    final var message = exchange.getMessage();
+    final var firstEnqueued = message.getHeader(FIRST_ENQUEUED, Long.class);
+    if (firstEnqueued != null) {
+      return firstEnqueued;
+    }
+    final var jmsTimestamp = message.getHeader("JMSTimestamp", Long.class);
+    return jmsTimestamp != null && jmsTimestamp > 0
+        ? jmsTimestamp
+        : exchange.getClock().getCreated();
+  }
+
+  private static long latency(Exchange exchange) {
+    return Math.max(0, System.currentTimeMillis() - firstEnqueued(exchange));
+  }
+
+  private static Timer latencyTimer(String pipeline, MeterRegistry meterRegistry) {
+    return Timer.builder("logsender.batch.latency")
+        .description("Time from when a batch was queued until it was stored")
+        .tag("pipeline", pipeline)
+        .register(meterRegistry);
+  }
+}
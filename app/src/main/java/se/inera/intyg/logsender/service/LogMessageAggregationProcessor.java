@@ -18,42 +18,73 @@
  */
 package se.inera.intyg.logsender.service;
 
-import java.util.List;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
+import org.apache.camel.support.SynchronizationAdapter;
 import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.aggregation.LogMessageBatchBuffer;
 import se.inera.intyg.logsender.exception.PermanentException;
 import se.inera.intyg.logsender.logging.MdcCloseableMap;
 import se.inera.intyg.logsender.logging.MdcHelper;
 import se.inera.intyg.logsender.logging.MdcLogConstants;
-import tools.jackson.databind.ObjectMapper;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class LogMessageAggregationProcessor {
 
-  private final ObjectMapper objectMapper;
+  private final DistributionSummary batchSize;
 
-  public String process(Exchange exchange) throws PermanentException {
+  public LogMessageAggregationProcessor(MeterRegistry meterRegistry) {
+    this.batchSize =
+        DistributionSummary.builder("logsender.aggregation.batch.size")
+            .description("Serialized size of aggregated log message batches")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+  }
+
+  public byte[] process(Exchange exchange) throws PermanentException {
     try (MdcCloseableMap ignored =
         MdcCloseableMap.builder()
             .put(MdcLogConstants.TRACE_ID_KEY, MdcHelper.traceId())
             .put(MdcLogConstants.SPAN_ID_KEY, MdcHelper.spanId())
             .build()) {
-      final List<Exchange> grouped = exchange.getIn().getBody(List.class);
+      final var batch = exchange.getIn().getBody(LogMessageBatchBuffer.class);
 
-      if (grouped == null || grouped.isEmpty()) {
-        log.info(
-            "No aggregated log messages, this is normal if camel aggregator has a batch timeout. Doing nothing.");
-        throw new PermanentException("No aggregated messages, no reason to retry");
+      if (batch == null) {
+        throw noAggregatedMessages();
       }
 
-      final var aggregatedList =
-          grouped.stream().map(oneExchange -> (String) oneExchange.getIn().getBody()).toList();
+      // The batch is held in the memory budget until it has been sent to the aggregated queue
+      exchange
+          .getExchangeExtension()
+          .addOnCompletion(
+              new SynchronizationAdapter() {
+                @Override
+                public void onDone(Exchange exchange) {
+                  batch.release();
+                }
+              });
+
+      try {
+        if (batch.isEmpty()) {
+          throw noAggregatedMessages();
+        }
 
-      return objectMapper.writeValueAsString(aggregatedList);
+        final var json = batch.toByteArray();
+        batchSize.record(json.length);
+        return json;
+      } finally {
+        batch.releaseBuffer();
+      }
     }
   }
+
+  private static PermanentException noAggregatedMessages() {
+    log.info(
+        "No aggregated log messages, this is normal if camel aggregator has a batch timeout. Doing nothing.");
+    return new PermanentException("No aggregated messages, no reason to retry");
+  }
 }
@@ -20,22 +20,38 @@ package se.inera.intyg.logsender.service;
 
 import jakarta.xml.ws.WebServiceException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Body;
+import org.apache.camel.Header;
 import org.springframework.stereotype.Component;
 import se.inera.intyg.logsender.client.LogSenderClient;
+import se.inera.intyg.logsender.client.StoreLogPayloadCache;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.inera.intyg.logsender.converter.EnhetTypeCache;
+import se.inera.intyg.logsender.converter.LogTypeCoalescer;
 import se.inera.intyg.logsender.converter.LogTypeFactory;
+import se.inera.intyg.logsender.converter.ParallelLogTypeConverter;
+import se.inera.intyg.logsender.converter.PipelineJsonCodec;
+import se.inera.intyg.logsender.converter.StreamingLogTypeReader;
 import se.inera.intyg.logsender.exception.BatchValidationException;
 import se.inera.intyg.logsender.exception.LoggtjanstExecutionException;
 import se.inera.intyg.logsender.exception.TemporaryException;
 import se.inera.intyg.logsender.logging.MdcCloseableMap;
 import se.inera.intyg.logsender.logging.MdcHelper;
 import se.inera.intyg.logsender.logging.MdcLogConstants;
+import se.inera.intyg.logsender.model.BatchStringInterner;
+import se.inera.intyg.logsender.model.CompactPdlLogMessage;
 import se.inera.intyg.logsender.model.PdlLogMessage;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import se.riv.informationsecurity.auditing.log.v2.ResultCodeType;
 import se.riv.informationsecurity.auditing.log.v2.ResultType;
 import tools.jackson.core.JacksonException;
-import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
 
 @Component
 @RequiredArgsConstructor
@@ -44,9 +60,33 @@ public class LogMessageSendProcessor {
 
   private final LogSenderClient logSenderClient;
   private final LogTypeFactory logTypeFactory;
-  private final ObjectMapper objectMapper;
+  private final LogTypeCoalescer logTypeCoalescer;
+  private final StreamingLogTypeReader streamingLogTypeReader;
+  private final ParallelLogTypeConverter parallelLogTypeConverter;
+  private final PipelineJsonCodec pipelineJsonCodec;
+  private final StoreLogPayloadCache storeLogPayloadCache;
+  private final LogsenderProperties properties;
 
-  public void process(String groupedLogEntries)
+  public void process(@Body byte[] groupedLogEntries, @Header("JMSMessageID") String batchId)
+      throws IOException, BatchValidationException, TemporaryException {
+    process(() -> send(groupedLogEntries, batchId), batchId);
+  }
+
+  // Sends several queued batches as one batch, see BacklogDrainer
+  void processMerged(List<byte[]> batches)
+      throws IOException, BatchValidationException, TemporaryException {
+    process(
+        () -> {
+          final var groupedList = new ArrayList<String>();
+          for (var batch : batches) {
+            groupedList.addAll(pipelineJsonCodec.readBatch(batch));
+          }
+          return logSenderClient.sendLogMessage(toLogTypes(groupedList));
+        },
+        null);
+  }
+
+  private void process(Sender sender, String batchId)
       throws IOException, BatchValidationException, TemporaryException {
 
     try (MdcCloseableMap ignored =
@@ -54,15 +94,19 @@ public class LogMessageSendProcessor {
             .put(MdcLogConstants.TRACE_ID_KEY, MdcHelper.traceId())
             .put(MdcLogConstants.SPAN_ID_KEY, MdcHelper.spanId())
             .build()) {
-      final List<String> groupedList = objectMapper.readValue(groupedLogEntries, List.class);
-
-      final var logMessages =
-          groupedList.stream().map(this::jsonToPdlLogMessage).map(logTypeFactory::convert).toList();
-
-      final var response = logSenderClient.sendLogMessage(logMessages);
+      final var response = sender.send();
 
       final ResultType result = response.getResult();
       final String resultText = result.getResultText();
+      if (result.getResultCode() == null) {
+        throw new TemporaryException("Loggtjänsten returned no result code: " + resultText);
+      }
+
+      // The cached payload is kept for the redelivery of a batch that will be retried
+      if (isFinal(result.getResultCode())) {
+        storeLogPayloadCache.remove(batchId);
+      }
+
       final var resultCodeValue = result.getResultCode().value();
 
       switch (result.getResultCode()) {
@@ -97,15 +141,91 @@ public class LogMessageSendProcessor {
     } catch (WebServiceException e) {
       log.warn("Call to send log message caused an error. Will retry.");
       throw new TemporaryException(e);
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while converting log message batch. Will retry.");
+      throw new TemporaryException(e);
+    }
+  }
+
+  private static boolean isFinal(ResultCodeType resultCode) {
+    return switch (resultCode) {
+      case OK, INFO, ERROR, VALIDATION_ERROR -> true;
+      default -> false;
+    };
+  }
+
+  private StoreLogResponseType send(byte[] groupedLogEntries, String batchId)
+      throws InterruptedException {
+    // A redelivered batch is resent as marshalled by the previous attempt
+    final var cachedPayload = storeLogPayloadCache.get(batchId);
+    if (cachedPayload != null) {
+      return logSenderClient.sendPayload(cachedPayload);
+    }
+
+    final var logTypes = toLogTypes(pipelineJsonCodec.readBatch(groupedLogEntries));
+
+    // Oversized batches are sent in chunks and are not cached as one payload
+    if (!storeLogPayloadCache.isEnabled()
+        || batchId == null
+        || logTypes.isEmpty()
+        || logSenderClient.isOversized(logTypes)) {
+      return logSenderClient.sendLogMessage(logTypes);
+    }
+
+    final var payload = logSenderClient.toPayload(logTypes);
+    storeLogPayloadCache.put(batchId, payload);
+    return logSenderClient.sendPayload(payload);
+  }
+
+  private List<LogType> toLogTypes(List<String> groupedList) throws InterruptedException {
+    // Messages kept whole by the split processor are split into one LogType per resource here
+    final var batchContext =
+        new BatchContext(
+            new EnhetTypeCache(),
+            pipelineJsonCodec.compactPdlLogMessageReader(new BatchStringInterner()));
+    return logTypeCoalescer.coalesce(
+        parallelLogTypeConverter.convert(
+            groupedList, entry -> jsonToLogTypes(entry, batchContext)));
+  }
+
+  private Stream<LogType> jsonToLogTypes(String body, BatchContext batchContext) {
+    final var enhetTypeCache = batchContext.enhetTypeCache();
+    return switch (properties.storeLog().conversion().mode()) {
+      case STREAMING -> streamingLogTypeReader.readPerResource(body, enhetTypeCache).stream();
+      case COMPACT ->
+          logTypeFactory
+              .convertPerResource(jsonToCompactPdlLogMessage(body, batchContext), enhetTypeCache)
+              .stream();
+      case MODEL ->
+          logTypeFactory.convertPerResource(jsonToPdlLogMessage(body), enhetTypeCache).stream();
+    };
+  }
+
+  private CompactPdlLogMessage jsonToCompactPdlLogMessage(String body, BatchContext batchContext) {
+    try {
+      return batchContext.compactReader().readValue(body);
+    } catch (JacksonException e) {
+      throw new IllegalArgumentException(
+          "Could not parse PdlLogMessage from log message JSON: " + e);
     }
   }
 
   private PdlLogMessage jsonToPdlLogMessage(String body) {
     try {
-      return objectMapper.readValue(body, PdlLogMessage.class);
+      return pipelineJsonCodec.readPdlLogMessage(body);
     } catch (JacksonException e) {
       throw new IllegalArgumentException(
           "Could not parse PdlLogMessage from log message JSON: " + e);
     }
   }
+
+  // State shared by the conversion of all entries in one batch
+  private record BatchContext(EnhetTypeCache enhetTypeCache, ObjectReader compactReader) {}
+
+  @FunctionalInterface
+  private interface Sender {
+    StoreLogResponseType send() throws InterruptedException;
+  }
 }
@@ -28,20 +28,23 @@ import org.apache.camel.Message;
 import org.apache.camel.impl.DefaultCamelContext;
 import org.apache.camel.support.DefaultMessage;
 import org.springframework.stereotype.Component;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.inera.intyg.logsender.config.LogsenderProperties.SplitMode;
+import se.inera.intyg.logsender.converter.PayloadFormat;
+import se.inera.intyg.logsender.converter.PipelineJsonCodec;
 import se.inera.intyg.logsender.exception.PermanentException;
 import se.inera.intyg.logsender.logging.MdcCloseableMap;
 import se.inera.intyg.logsender.logging.MdcHelper;
 import se.inera.intyg.logsender.logging.MdcLogConstants;
 import se.inera.intyg.logsender.model.PdlLogMessage;
-import se.inera.intyg.logsender.model.PdlResource;
-import tools.jackson.databind.ObjectMapper;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class LogMessageSplitProcessor {
 
-  private final ObjectMapper objectMapper;
+  private final PipelineJsonCodec pipelineJsonCodec;
+  private final LogsenderProperties properties;
 
   public List<Message> process(@Body Message body) throws IOException, PermanentException {
     try (MdcCloseableMap ignored =
@@ -52,31 +55,101 @@ public class LogMessageSplitProcessor {
       final var answer = new ArrayList<Message>();
 
       if (body != null) {
-        final var pdlLogMessage =
-            objectMapper.readValue((String) body.getBody(), PdlLogMessage.class);
-        if (pdlLogMessage.getPdlResourceList().isEmpty()) {
-          log.error(
-              "No resources in PDL log message {}, not proceeding.", pdlLogMessage.getLogId());
+        final var format = payloadFormat(body);
+        final var gzipped =
+            PayloadFormat.isGzip(
+                body.getHeader(PayloadFormat.CONTENT_ENCODING_HEADER, String.class));
+        final var pdlLogMessages = readPdlLogMessages(body, format, gzipped);
+
+        // The aggregation only handles single JSON messages, anything else is passed on re-encoded
+        final var passOnBody =
+            pdlLogMessages.size() == 1
+                && format == PayloadFormat.JSON
+                && !gzipped
+                && isJsonObject(body.getBody());
+        final var split = properties.aggregation().split();
+        final var maxResources =
+            split.mode() == SplitMode.PER_MESSAGE ? split.maxResourcesPerMessage() : 1;
+        for (PdlLogMessage pdlLogMessage : pdlLogMessages) {
+          if (pdlLogMessage.getPdlResourceList().isEmpty()) {
+            log.error(
+                "No resources in PDL log message {}, not proceeding.", pdlLogMessage.getLogId());
+          } else if (pdlLogMessage.getPdlResourceList().size() <= maxResources) {
+            answer.add(
+                passOnBody
+                    ? body
+                    : jsonMessage(pipelineJsonCodec.writePdlLogMessage(pdlLogMessage)));
+          } else {
+            splitIntoChunksOfResources(answer, pdlLogMessage, maxResources);
+          }
+        }
+
+        if (answer.isEmpty()) {
           throw new PermanentException("No resources in PDL log message, discarding message.");
-        } else if (pdlLogMessage.getPdlResourceList().size() == 1) {
-          answer.add(body);
-        } else {
-          splitIntoOnePdlLogMessagePerResource(answer, pdlLogMessage);
         }
       }
       return answer;
     }
   }
 
-  private void splitIntoOnePdlLogMessagePerResource(
-      List<Message> answer, PdlLogMessage pdlLogMessage) {
-    for (PdlResource resource : pdlLogMessage.getPdlResourceList()) {
-      final var copiedPdlLogMsg = pdlLogMessage.copy(false);
-      copiedPdlLogMsg.getPdlResourceList().add(resource);
+  // Chunks keep the order of the resources in the original message, so a message is always split
+  // the same way. In PER_RESOURCE mode each chunk holds a single resource.
+  private void splitIntoChunksOfResources(
+      List<Message> answer, PdlLogMessage pdlLogMessage, int maxResources) {
+    final var resources = pdlLogMessage.getPdlResourceList();
+    for (int from = 0; from < resources.size(); from += maxResources) {
+      final var copiedPdlLogMsg = pdlLogMessage.derive(from);
+      copiedPdlLogMsg
+          .getPdlResourceList()
+          .addAll(resources.subList(from, Math.min(from + maxResources, resources.size())));
+
+      answer.add(jsonMessage(pipelineJsonCodec.writePdlLogMessage(copiedPdlLogMsg)));
+    }
+  }
+
+  // An inbound message holds a single PdlLogMessage, a JSON array of them or a sequence of them
+  // such as NDJSON. JSON bodies are parsed as they arrive, a String from a TextMessage or the UTF-8
+  // bytes of a BytesMessage, other formats and gzipped payloads always arrive as bytes.
+  private List<PdlLogMessage> readPdlLogMessages(
+      Message body, PayloadFormat format, boolean gzipped) throws IOException {
+    if (format == PayloadFormat.JSON && !gzipped && body.getBody() instanceof String json) {
+      return pipelineJsonCodec.readPdlLogMessages(json);
+    }
+    return pipelineJsonCodec.readPdlLogMessages(body.getBody(byte[].class), format, gzipped);
+  }
+
+  // Whether the body is a single JSON object rather than an array, judged by its first character
+  private static boolean isJsonObject(Object body) {
+    if (body instanceof String json) {
+      for (int i = 0; i < json.length(); i++) {
+        if (!Character.isWhitespace(json.charAt(i))) {
+          return json.charAt(i) == '{';
+        }
+      }
+    } else if (body instanceof byte[] json) {
+      for (byte b : json) {
+        if (!Character.isWhitespace(b)) {
+          return b == '{';
+        }
+      }
+    }
+    return false;
+  }
 
-      final var message = new DefaultMessage(new DefaultCamelContext());
-      message.setBody(objectMapper.writeValueAsString(copiedPdlLogMsg));
-      answer.add(message);
+  private static PayloadFormat payloadFormat(Message body) throws PermanentException {
+    final var contentType = body.getHeader(PayloadFormat.CONTENT_TYPE_HEADER, String.class);
+    try {
+      return PayloadFormat.fromContentType(contentType);
+    } catch (IllegalArgumentException e) {
+      log.error("Unsupported content type '{}' of PDL log message, not proceeding.", contentType);
+      throw new PermanentException(
+          "Unsupported content type of PDL log message, discarding message.");
     }
   }
+
+  private static Message jsonMessage(String json) {
+    final var message = new DefaultMessage(new DefaultCamelContext());
+    message.setBody(json);
+    return message;
+  }
 }
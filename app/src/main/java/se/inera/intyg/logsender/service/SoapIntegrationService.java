@@ -24,4 +24,8 @@ import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogType
 public interface SoapIntegrationService {
 
   StoreLogResponseType storeLog(String logicalAddress, StoreLogType request);
+
+  StoreLogResponseType storeLog(String logicalAddress, byte[] payload, int entries);
+
+  byte[] marshal(StoreLogType request);
 }
@@ -18,8 +18,16 @@
  */
 package se.inera.intyg.logsender.service;
 
+import jakarta.xml.ws.BindingProvider;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
+import org.apache.cxf.message.Message;
 import org.springframework.stereotype.Service;
+import se.inera.intyg.logsender.client.StreamingStoreLogClient;
 import se.inera.intyg.logsender.logging.MdcLogConstants;
 import se.inera.intyg.logsender.logging.PerformanceLogging;
 import se.riv.informationsecurity.auditing.log.StoreLog.v2.rivtabp21.StoreLogResponderInterface;
@@ -31,12 +39,74 @@ import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogType
 public class SoapIntegrationServiceImpl implements SoapIntegrationService {
 
   private final StoreLogResponderInterface storeLogResponder;
+  private final AdaptiveTimeoutPolicy adaptiveTimeoutPolicy;
 
   @Override
   @PerformanceLogging(
       eventAction = "store-log-message",
       eventType = MdcLogConstants.EVENT_TYPE_CHANGE)
   public StoreLogResponseType storeLog(String logicalAddress, StoreLogType request) {
-    return storeLogResponder.storeLog(logicalAddress, request);
+    final var entries = request.getLog().size();
+    return timed(entries, () -> storeLogResponder.storeLog(logicalAddress, request));
+  }
+
+  @Override
+  @PerformanceLogging(
+      eventAction = "store-log-message",
+      eventType = MdcLogConstants.EVENT_TYPE_CHANGE)
+  public StoreLogResponseType storeLog(String logicalAddress, byte[] payload, int entries) {
+    final var client = streamingStoreLogClient();
+    return timed(entries, () -> client.storeLog(logicalAddress, payload));
+  }
+
+  @Override
+  public byte[] marshal(StoreLogType request) {
+    return streamingStoreLogClient().marshal(request);
+  }
+
+  // The request context is thread local, see LogSenderWsConfig, so the timeout only applies to
+  // this call. Timed out calls are recorded too, otherwise a rise in latency above the current
+  // timeout would never be sampled and every call would keep timing out.
+  private StoreLogResponseType timed(int entries, Supplier<StoreLogResponseType> call) {
+    if (!adaptiveTimeoutPolicy.isAdaptive()
+        || !(storeLogResponder instanceof BindingProvider bindingProvider)) {
+      return call.get();
+    }
+
+    final var receiveTimeout = adaptiveTimeoutPolicy.receiveTimeout(entries);
+    bindingProvider.getRequestContext().put(Message.RECEIVE_TIMEOUT, receiveTimeout);
+    final var start = System.nanoTime();
+    final StoreLogResponseType response;
+    try {
+      response = call.get();
+    } catch (RuntimeException e) {
+      if (isTimeout(e)) {
+        adaptiveTimeoutPolicy.recordTimeout(receiveTimeout, entries);
+      }
+      throw e;
+    }
+    adaptiveTimeoutPolicy.record(
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), entries);
+    return response;
+  }
+
+  private static boolean isTimeout(Throwable e) {
+    for (var cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SocketTimeoutException
+          || cause instanceof HttpTimeoutException
+          || cause instanceof TimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Pre-marshalled payloads can only be sent by the streaming client
+  private StreamingStoreLogClient streamingStoreLogClient() {
+    if (storeLogResponder instanceof StreamingStoreLogClient streamingStoreLogClient) {
+      return streamingStoreLogClient;
+    }
+    throw new IllegalStateException(
+        "Sending marshalled StoreLog payloads requires app.store-log.transport.streaming");
   }
 }
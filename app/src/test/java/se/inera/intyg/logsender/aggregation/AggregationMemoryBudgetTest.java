@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.aggregation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.Consumer;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Exchange;
+import org.apache.camel.Route;
+import org.apache.camel.Suspendable;
+import org.apache.camel.SuspendableService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.MemoryBudget;
+
+class AggregationMemoryBudgetTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private AggregationMemoryBudget memoryBudget;
+  private Route route;
+  private Consumer consumer;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    memoryBudget =
+        new AggregationMemoryBudget(
+            logsenderProperties().memoryBudget(new MemoryBudget(2048L, 1024L)).build(),
+            meterRegistry);
+
+    consumer =
+        mock(
+            Consumer.class,
+            withSettings().extraInterfaces(Suspendable.class, SuspendableService.class));
+    route = mock(Route.class);
+    final var endpoint = mock(Endpoint.class);
+    when(endpoint.getEndpointUri()).thenReturn("direct:receiveLogMessageEndpoint");
+    when(route.getEndpoint()).thenReturn(endpoint);
+    when(route.getConsumer()).thenReturn(consumer);
+    memoryBudget.onInit(route);
+  }
+
+  @Test
+  void shouldNotPauseWithinBudget() {
+    memoryBudget.reserve(2048L);
+
+    memoryBudget.onExchangeDone(route, mock(Exchange.class));
+
+    assertFalse(memoryBudget.isPaused());
+    verify((SuspendableService) consumer, never()).suspend();
+  }
+
+  @Test
+  void shouldPauseWhenBudgetIsExceeded() {
+    memoryBudget.reserve(4096L);
+
+    memoryBudget.onExchangeDone(route, mock(Exchange.class));
+
+    assertTrue(memoryBudget.isPaused());
+    assertEquals(1.0, meterRegistry.get("logsender.aggregation.memory.paused").gauge().value());
+    verify((SuspendableService) consumer).suspend();
+  }
+
+  @Test
+  void shouldResumeOnlyBelowResumeThreshold() {
+    memoryBudget.reserve(4096L);
+    memoryBudget.onExchangeDone(route, mock(Exchange.class));
+    when(((SuspendableService) consumer).isSuspended()).thenReturn(true);
+
+    memoryBudget.release(2048L);
+    assertTrue(memoryBudget.isPaused());
+
+    memoryBudget.release(1024L);
+    assertFalse(memoryBudget.isPaused());
+    assertEquals(1024L, memoryBudget.pendingBytes());
+    verify((SuspendableService) consumer).resume();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.aggregation;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.Buffer;
+import se.inera.intyg.logsender.config.LogsenderProperties.MemoryBudget;
+import tools.jackson.core.type.TypeReference;
+
+class LogMessageBatchAggregationStrategyTest {
+
+  private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+  private AggregationMemoryBudget memoryBudget;
+  private BatchBufferPool batchBufferPool;
+  private LogMessageBatchAggregationStrategy strategy;
+
+  @BeforeEach
+  void setUp() {
+    final var properties =
+        logsenderProperties()
+            .maxBatchBytes(4096L)
+            .buffer(new Buffer(1024, 2, false))
+            .memoryBudget(new MemoryBudget(65536L, 32768L))
+            .build();
+    memoryBudget = new AggregationMemoryBudget(properties, new SimpleMeterRegistry());
+    batchBufferPool = new BatchBufferPool(properties, memoryBudget);
+    strategy = new LogMessageBatchAggregationStrategy(batchBufferPool);
+  }
+
+  @Test
+  void shouldAppendBodiesInWireFormat() {
+    final var first = exchange("{\"logId\":\"1\",\"userName\":\"Vårdgivare\"}");
+    final var second = exchange("{\"logId\":\"2\"}");
+
+    final var aggregated = strategy.aggregate(strategy.aggregate(null, first), second);
+
+    final var batch = aggregated.getIn().getBody(LogMessageBatchBuffer.class);
+    final var output =
+        OBJECT_MAPPER.readValue(batch.toByteArray(), new TypeReference<List<String>>() {});
+
+    assertAll(
+        () -> assertNotSame(first, aggregated),
+        () -> assertEquals(2, batch.entries()),
+        () -> assertEquals(first.getIn().getBody(String.class), output.get(0)),
+        () -> assertEquals(second.getIn().getBody(String.class), output.get(1)));
+  }
+
+  @Test
+  void shouldAppendByteBodiesWithoutDecoding() {
+    final var json = "{\"logId\":\"1\",\"userName\":\"Vårdgivare \\\"1\\\"\\n\u0001\"}";
+    final var bytes = exchange(json);
+    bytes.getIn().setBody(json.getBytes(StandardCharsets.UTF_8));
+
+    final var fromBytes = strategy.aggregate(strategy.aggregate(null, bytes), exchange(json));
+
+    final var batch = fromBytes.getIn().getBody(LogMessageBatchBuffer.class);
+    final var output =
+        OBJECT_MAPPER.readValue(batch.toByteArray(), new TypeReference<List<String>>() {});
+    assertEquals(List.of(json, json), output);
+    assertEquals(batch.size() - 1L, memoryBudget.pendingBytes());
+  }
+
+  @Test
+  void shouldExposeAccumulatedBytes() {
+    final var aggregated = strategy.aggregate(null, exchange("{\"a\":\"b\"}"));
+
+    final var batch = aggregated.getIn().getBody(LogMessageBatchBuffer.class);
+    assertEquals(
+        (long) batch.size(),
+        aggregated.getProperty(LogMessageBatchAggregationStrategy.AGGREGATED_BYTES, Long.class));
+    assertEquals(batch.toByteArray().length - 1, batch.size());
+  }
+
+  @Test
+  void shouldGrowBeyondInitialCapacity() {
+    final var large = "{\"activityArgs\":\"" + "x".repeat(5000) + "\"}";
+
+    var aggregated = strategy.aggregate(null, exchange(large));
+    aggregated = strategy.aggregate(aggregated, exchange(large));
+
+    final var batch = aggregated.getIn().getBody(LogMessageBatchBuffer.class);
+    final var output =
+        OBJECT_MAPPER.readValue(batch.toByteArray(), new TypeReference<List<String>>() {});
+    assertEquals(List.of(large, large), output);
+  }
+
+  @Test
+  void shouldReturnBufferToPoolOnRelease() {
+    final var aggregated = strategy.aggregate(null, exchange("{}"));
+
+    aggregated.getIn().getBody(LogMessageBatchBuffer.class).release();
+
+    assertEquals(1, batchBufferPool.pooledCount());
+  }
+
+  @Test
+  void shouldKeepPooledBufferThatIsTooSmall() {
+    strategy.aggregate(null, exchange("{}")).getIn().getBody(LogMessageBatchBuffer.class).release();
+
+    final var large = batchBufferPool.acquire(8192);
+
+    assertEquals(8192, large.capacity());
+    assertEquals(1, batchBufferPool.pooledCount());
+  }
+
+  @Test
+  void shouldReserveAndReleaseMemoryBudget() {
+    final var aggregated =
+        strategy.aggregate(strategy.aggregate(null, exchange("{\"a\":\"b\"}")), exchange("{}"));
+    final var batch = aggregated.getIn().getBody(LogMessageBatchBuffer.class);
+
+    assertEquals(batch.size() - 1L, memoryBudget.pendingBytes());
+
+    batch.release();
+
+    assertEquals(0L, memoryBudget.pendingBytes());
+  }
+
+  @Test
+  void shouldGrowBufferWithoutOverflowPastOneGibibyte() {
+    final var maxCapacity = Integer.MAX_VALUE - 8;
+
+    assertEquals(2048, LogMessageBatchBuffer.newCapacity(1024, 1100));
+    assertEquals(5000, LogMessageBatchBuffer.newCapacity(1024, 5000));
+    assertEquals(maxCapacity, LogMessageBatchBuffer.newCapacity(1 << 30, (1L << 30) + 1));
+    assertEquals(maxCapacity, LogMessageBatchBuffer.newCapacity(maxCapacity - 1, maxCapacity));
+    assertThrows(
+        OutOfMemoryError.class,
+        () -> LogMessageBatchBuffer.newCapacity(maxCapacity, maxCapacity + 1L));
+  }
+
+  private Exchange exchange(String body) {
+    final var exchange = new DefaultExchange(camelContext);
+    exchange.getIn().setBody(body);
+    return exchange;
+  }
+}
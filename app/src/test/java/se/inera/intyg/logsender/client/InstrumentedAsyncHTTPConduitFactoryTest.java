@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChain;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class InstrumentedAsyncHTTPConduitFactoryTest {
+
+  @Mock private AsyncExecChain chain;
+
+  @Mock private AsyncExecCallback asyncExecCallback;
+
+  @Captor private ArgumentCaptor<AsyncExecCallback> callbackCaptor;
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  private AsyncExecChainHandler handler;
+
+  @BeforeEach
+  void setUp() {
+    handler =
+        InstrumentedAsyncHTTPConduitFactory.track(active::incrementAndGet, active::decrementAndGet);
+  }
+
+  @Test
+  void shouldTrackRequestUntilCompleted() throws Exception {
+    handler.execute(null, null, null, chain, asyncExecCallback);
+    verify(chain).proceed(any(), any(), any(), callbackCaptor.capture());
+    assertEquals(1, active.get());
+
+    callbackCaptor.getValue().completed();
+
+    assertEquals(0, active.get());
+    verify(asyncExecCallback).completed();
+  }
+
+  @Test
+  void shouldReleaseOnceWhenFailed() throws Exception {
+    handler.execute(null, null, null, chain, asyncExecCallback);
+    verify(chain).proceed(any(), any(), any(), callbackCaptor.capture());
+    final var cause = new IOException("reset");
+
+    callbackCaptor.getValue().failed(cause);
+    callbackCaptor.getValue().failed(cause);
+
+    assertEquals(0, active.get());
+  }
+
+  @Test
+  void shouldReleaseWhenChainThrows() throws Exception {
+    doThrow(new IOException("connect")).when(chain).proceed(any(), any(), any(), any());
+
+    assertThrows(
+        IOException.class, () -> handler.execute(null, null, null, chain, asyncExecCallback));
+    assertEquals(0, active.get());
+  }
+}
@@ -24,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -55,6 +56,8 @@ class LogSenderClientImplTest {
 
   @Mock private LogsenderProperties properties;
 
+  @Mock private StoreLogChunkSender storeLogChunkSender;
+
   @InjectMocks private LogSenderClientImpl logSenderClient;
 
   @Nested
@@ -64,7 +67,18 @@ class LogSenderClientImplTest {
     void setup() {
       when(properties.storeLog())
           .thenReturn(
-              new StoreLog("logicalAddress", "http://loggtjanst-endpoint", null, null, null));
+              new StoreLog(
+                  "logicalAddress",
+                  "http://loggtjanst-endpoint",
+                  null,
+                  null,
+                  null,
+                  null,
+                  null,
+                  null,
+                  null,
+                  null,
+                  null));
     }
 
     @Test
@@ -100,6 +114,18 @@ class LogSenderClientImplTest {
     }
   }
 
+  @Test
+  void testOversizedBatchIsSentInChunks() {
+    final var logEntries = buildLogEntries();
+    when(storeLogChunkSender.isOversized(logEntries)).thenReturn(true);
+    when(storeLogChunkSender.send(eq(logEntries), any())).thenReturn(buildOkResponse());
+
+    final var response = logSenderClient.sendLogMessage(logEntries);
+
+    assertEquals(ResultCodeType.OK, response.getResult().getResultCode());
+    verify(soapIntegrationService, never()).storeLog(anyString(), any(StoreLogType.class));
+  }
+
   @Test
   void testSendWithNullListCausesNoSend() {
     final var response = logSenderClient.sendLogMessage(null);
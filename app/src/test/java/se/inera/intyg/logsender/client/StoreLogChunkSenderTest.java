@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import jakarta.xml.ws.WebServiceException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.OversizedBatch;
+import se.inera.intyg.logsender.exception.LoggtjanstExecutionException;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import se.riv.informationsecurity.auditing.log.v2.ResourceType;
+import se.riv.informationsecurity.auditing.log.v2.ResourcesType;
+import se.riv.informationsecurity.auditing.log.v2.ResultCodeType;
+import se.riv.informationsecurity.auditing.log.v2.ResultType;
+
+class StoreLogChunkSenderTest {
+
+  private StoreLogChunkSender chunkSender;
+
+  @AfterEach
+  void tearDown() {
+    chunkSender.destroy();
+  }
+
+  @Test
+  void shouldDetectOversizedBatchByEntries() {
+    chunkSender = buildChunkSender(3, 1024L * 1024);
+
+    assertFalse(chunkSender.isOversized(buildLogEntries(3, 1)));
+    assertTrue(chunkSender.isOversized(buildLogEntries(4, 1)));
+  }
+
+  @Test
+  void shouldDetectOversizedBatchByEstimatedBytes() {
+    chunkSender = buildChunkSender(100, 16 * 1024L);
+
+    assertFalse(chunkSender.isOversized(buildLogEntries(2, 10)));
+    assertTrue(chunkSender.isOversized(buildLogEntries(2, 20)));
+  }
+
+  @Test
+  void shouldSplitIntoChunksKeepingOrder() {
+    chunkSender = buildChunkSender(2, 1024L * 1024);
+    final var logEntries = buildLogEntries(5, 1);
+
+    final var chunks = chunkSender.chunks(logEntries);
+
+    assertEquals(List.of(2, 2, 1), chunks.stream().map(List::size).toList());
+    assertEquals(logEntries, chunks.stream().flatMap(List::stream).toList());
+  }
+
+  @Test
+  void shouldKeepEntryLargerThanMaxBytesInChunkOfItsOwn() {
+    chunkSender = buildChunkSender(100, 8 * 1024L);
+
+    final var chunks = chunkSender.chunks(buildLogEntries(3, 20));
+
+    assertEquals(List.of(1, 1, 1), chunks.stream().map(List::size).toList());
+  }
+
+  @Test
+  void shouldSendChunksConcurrently() {
+    chunkSender = buildChunkSender(1, 1024L * 1024);
+    final var threads = ConcurrentHashMap.<String>newKeySet();
+    final var calls = new AtomicInteger();
+
+    final var response =
+        chunkSender.send(
+            buildLogEntries(4, 1),
+            chunk -> {
+              calls.incrementAndGet();
+              threads.add(Thread.currentThread().getName());
+              return buildResponse(ResultCodeType.OK, null);
+            });
+
+    assertEquals(ResultCodeType.OK, response.getResult().getResultCode());
+    assertNull(response.getResult().getResultText());
+    assertEquals(4, calls.get());
+    assertTrue(
+        threads.stream().allMatch(name -> name.startsWith("storelog-chunk-")), threads::toString);
+  }
+
+  @Test
+  void shouldRethrowFailureAfterAllChunksAreDone() {
+    chunkSender = buildChunkSender(1, 1024L * 1024);
+    final var failure = new LoggtjanstExecutionException(new RuntimeException("timeout"));
+    final var calls = new AtomicInteger();
+    final var logEntries = buildLogEntries(3, 1);
+
+    final var thrown =
+        assertThrows(
+            LoggtjanstExecutionException.class,
+            () ->
+                chunkSender.send(
+                    logEntries,
+                    chunk -> {
+                      calls.incrementAndGet();
+                      if (chunk.getFirst() == logEntries.get(1)) {
+                        throw failure;
+                      }
+                      return buildResponse(ResultCodeType.OK, null);
+                    }));
+
+    assertSame(failure, thrown);
+    assertEquals(3, calls.get());
+  }
+
+  @Test
+  void shouldCombineResponsesWithMostSevereResultCode() {
+    final var response =
+        StoreLogChunkSender.combine(
+            List.of(
+                buildResponse(ResultCodeType.OK, null),
+                buildResponse(ResultCodeType.VALIDATION_ERROR, "invalid"),
+                buildResponse(ResultCodeType.INFO, "info")));
+
+    assertEquals(ResultCodeType.VALIDATION_ERROR, response.getResult().getResultCode());
+    assertEquals("Chunk 2 of 3: invalid", response.getResult().getResultText());
+  }
+
+  @Test
+  void shouldCombineInfoResponses() {
+    final var response =
+        StoreLogChunkSender.combine(
+            List.of(
+                buildResponse(ResultCodeType.INFO, "first"),
+                buildResponse(ResultCodeType.OK, null),
+                buildResponse(ResultCodeType.INFO, "third")));
+
+    assertEquals(ResultCodeType.INFO, response.getResult().getResultCode());
+    assertEquals("Chunk 1 of 3: first; Chunk 3 of 3: third", response.getResult().getResultText());
+  }
+
+  @Test
+  void shouldCombineMissingResultCodeAsRetry() {
+    final var response =
+        StoreLogChunkSender.combine(
+            List.of(
+                buildResponse(ResultCodeType.OK, null),
+                buildResponse(null, "no code"),
+                new StoreLogResponseType()));
+
+    assertNull(response.getResult().getResultCode());
+    assertEquals("Chunk 2 of 3: no code", response.getResult().getResultText());
+  }
+
+  @Test
+  void shouldPreferRejectionOverMissingResultCode() {
+    final var response =
+        StoreLogChunkSender.combine(
+            List.of(new StoreLogResponseType(), buildResponse(ResultCodeType.ERROR, "rejected")));
+
+    assertEquals(ResultCodeType.ERROR, response.getResult().getResultCode());
+  }
+
+  @Test
+  void shouldStoreSucceededChunksAgainWhenFailedBatchIsResent() {
+    chunkSender = buildChunkSender(1, 1024L * 1024);
+    final var logEntries = buildLogEntries(3, 1);
+    final var stored = new ConcurrentLinkedQueue<String>();
+    final var failFirstAttempt = new AtomicBoolean(true);
+    final Function<List<LogType>, StoreLogResponseType> sender =
+        chunk -> {
+          if (chunk.getFirst() == logEntries.get(1) && failFirstAttempt.getAndSet(false)) {
+            throw new WebServiceException("connection reset");
+          }
+          stored.add(chunk.getFirst().getLogId());
+          return buildResponse(ResultCodeType.OK, null);
+        };
+
+    assertThrows(WebServiceException.class, () -> chunkSender.send(logEntries, sender));
+    chunkSender.send(logEntries, sender);
+
+    assertEquals(
+        List.of("log-0", "log-0", "log-1", "log-2", "log-2"), stored.stream().sorted().toList());
+  }
+
+  private static List<LogType> buildLogEntries(int entries, int resourcesPerEntry) {
+    return IntStream.range(0, entries)
+        .mapToObj(
+            i -> {
+              final var logType = new LogType();
+              logType.setLogId("log-" + i);
+              logType.setResources(new ResourcesType());
+              for (int j = 0; j < resourcesPerEntry; j++) {
+                logType.getResources().getResource().add(new ResourceType());
+              }
+              return logType;
+            })
+        .toList();
+  }
+
+  private static StoreLogResponseType buildResponse(ResultCodeType resultCode, String resultText) {
+    final var result = new ResultType();
+    result.setResultCode(resultCode);
+    result.setResultText(resultText);
+    final var response = new StoreLogResponseType();
+    response.setResult(result);
+    return response;
+  }
+
+  private static StoreLogChunkSender buildChunkSender(int maxEntries, long maxBytes) {
+    return new StoreLogChunkSender(
+        logsenderProperties().oversizedBatch(new OversizedBatch(maxEntries, maxBytes, 2)).build());
+  }
+}
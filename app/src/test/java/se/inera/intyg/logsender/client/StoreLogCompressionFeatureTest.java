@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.Marshaller;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import javax.xml.namespace.QName;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.riv.informationsecurity.auditing.log.StoreLog.v2.rivtabp21.StoreLogResponderInterface;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import se.riv.informationsecurity.auditing.log.v2.ResultCodeType;
+import se.riv.informationsecurity.auditing.log.v2.ResultType;
+import se.riv.informationsecurity.auditing.log.v2.SystemType;
+
+class StoreLogCompressionFeatureTest {
+
+  private static final String RESPONDER_NAMESPACE =
+      "urn:riv:informationsecurity:auditing:log:StoreLogResponder:2";
+
+  private final List<String> contentEncodings = new CopyOnWriteArrayList<>();
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+
+  private SimpleMeterRegistry meterRegistry;
+  private HttpServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    meterRegistry = new SimpleMeterRegistry();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/storelog", this::handle);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void shouldCompressRequestsAboveThreshold() {
+    final var response = buildClient(1024).storeLog("logicalAddress", buildRequest(100));
+
+    assertEquals(ResultCodeType.OK, response.getResult().getResultCode());
+    assertEquals(List.of("gzip"), contentEncodings);
+    assertTrue(requests.getFirst().contains("log-99"), requests.getFirst());
+
+    final var in = counter("logsender.compression.bytes.in");
+    final var out = counter("logsender.compression.bytes.out");
+    assertTrue(out > 0 && out < in / 2, "in " + in + ", out " + out);
+    assertEquals(in - out, counter("logsender.compression.bytes.saved"));
+  }
+
+  @Test
+  void shouldNotCompressRequestsBelowThreshold() {
+    final var response = buildClient(1024 * 1024).storeLog("logicalAddress", buildRequest(1));
+
+    assertEquals(ResultCodeType.OK, response.getResult().getResultCode());
+    assertEquals(List.of("identity"), contentEncodings);
+    assertTrue(counter("logsender.compression.bytes.in") > 0);
+    assertEquals(
+        counter("logsender.compression.bytes.in"), counter("logsender.compression.bytes.out"));
+    assertEquals(0.0, counter("logsender.compression.bytes.saved"));
+  }
+
+  private StoreLogResponderInterface buildClient(int threshold) {
+    final var factory = new JaxWsProxyFactoryBean();
+    factory.setServiceClass(StoreLogResponderInterface.class);
+    factory.setAddress("http://localhost:" + server.getAddress().getPort() + "/storelog");
+    factory.getFeatures().add(new StoreLogCompressionFeature(threshold, meterRegistry));
+    return (StoreLogResponderInterface) factory.create();
+  }
+
+  // Local stub of the StoreLog endpoint, answers every request with result code OK
+  private void handle(HttpExchange exchange) throws IOException {
+    final var contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+    contentEncodings.add(Objects.toString(contentEncoding, "identity"));
+    try (InputStream body =
+        "gzip".equals(contentEncoding)
+            ? new GZIPInputStream(exchange.getRequestBody())
+            : exchange.getRequestBody()) {
+      requests.add(new String(body.readAllBytes(), UTF_8));
+    }
+
+    final var response = buildResponse().getBytes(UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+    exchange.sendResponseHeaders(200, response.length);
+    try (var responseBody = exchange.getResponseBody()) {
+      responseBody.write(response);
+    }
+  }
+
+  private double counter(String name) {
+    return meterRegistry.get(name).counter().count();
+  }
+
+  private static StoreLogType buildRequest(int entries) {
+    final var request = new StoreLogType();
+    for (int i = 0; i < entries; i++) {
+      final var system = new SystemType();
+      system.setSystemId("SE5565594230-B8N");
+      system.setSystemName("Webcert");
+      final var logType = new LogType();
+      logType.setLogId("log-" + i);
+      logType.setSystem(system);
+      request.getLog().add(logType);
+    }
+    return request;
+  }
+
+  private static String buildResponse() {
+    try {
+      final var result = new ResultType();
+      result.setResultCode(ResultCodeType.OK);
+      final var response = new StoreLogResponseType();
+      response.setResult(result);
+      final var marshaller = JAXBContext.newInstance(StoreLogResponseType.class).createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+      final var writer = new StringWriter();
+      marshaller.marshal(
+          new JAXBElement<>(
+              new QName(RESPONDER_NAMESPACE, "StoreLogResponse"),
+              StoreLogResponseType.class,
+              response),
+          writer);
+      return "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+          + writer
+          + "</soap:Body></soap:Envelope>";
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
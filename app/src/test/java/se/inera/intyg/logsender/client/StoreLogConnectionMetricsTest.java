@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StoreLogConnectionMetricsTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private StoreLogConnectionMetrics metrics;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    metrics = new StoreLogConnectionMetrics(meterRegistry);
+  }
+
+  @Test
+  void shouldReportRequestsWaitingForConnectionAsPending() {
+    metrics.requestStarted();
+    metrics.requestStarted();
+    metrics.requestStarted();
+    metrics.connectionLeased();
+
+    assertEquals(1.0, meterRegistry.get("logsender.http.pool.leased").gauge().value());
+    assertEquals(2.0, meterRegistry.get("logsender.http.pool.pending").gauge().value());
+
+    metrics.connectionReleased();
+    metrics.requestDone();
+
+    assertEquals(0, metrics.leased());
+    assertEquals(2, metrics.pending());
+  }
+
+  @Test
+  void shouldCountNewAndReusedConnections() {
+    metrics.responseReceived(1);
+    metrics.responseReceived(2);
+    metrics.responseReceived(3);
+    metrics.responseReceived(1);
+
+    assertEquals(2.0, requests("new"));
+    assertEquals(2.0, requests("reused"));
+  }
+
+  private double requests(String connection) {
+    return meterRegistry
+        .get("logsender.http.pool.requests")
+        .tag("connection", connection)
+        .counter()
+        .count();
+  }
+}
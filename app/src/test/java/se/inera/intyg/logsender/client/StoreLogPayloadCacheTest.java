@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.FragmentCache;
+
+class StoreLogPayloadCacheTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void shouldReturnCachedPayload() {
+    final var cache = buildCache(true, true, 10, 1024L);
+    final var payload = new StoreLogPayload(new byte[] {1, 2, 3}, 2);
+
+    cache.put("batch-1", payload);
+
+    assertSame(payload, cache.get("batch-1"));
+    assertNull(cache.get("batch-2"));
+    assertEquals(1.0, hits());
+    assertEquals(1.0, misses());
+    assertEquals(3.0, meterRegistry.get("logsender.fragment.cache.bytes").gauge().value());
+  }
+
+  @Test
+  void shouldRemovePayload() {
+    final var cache = buildCache(true, true, 10, 1024L);
+    cache.put("batch-1", payload(10));
+
+    cache.remove("batch-1");
+
+    assertNull(cache.get("batch-1"));
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.bytes());
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedWhenMaxBatchesIsExceeded() {
+    final var cache = buildCache(true, true, 2, 1024L);
+    cache.put("batch-1", payload(1));
+    cache.put("batch-2", payload(1));
+    cache.get("batch-1");
+
+    cache.put("batch-3", payload(1));
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("batch-2"));
+    assertNotNull(cache.get("batch-1"));
+    assertNotNull(cache.get("batch-3"));
+  }
+
+  @Test
+  void shouldEvictWhenMaxBytesIsExceeded() {
+    final var cache = buildCache(true, true, 10, 1024L);
+    cache.put("batch-1", payload(600));
+
+    cache.put("batch-2", payload(600));
+
+    assertNull(cache.get("batch-1"));
+    assertEquals(600L, cache.bytes());
+  }
+
+  @Test
+  void shouldNotCachePayloadLargerThanMaxBytes() {
+    final var cache = buildCache(true, true, 10, 1024L);
+
+    cache.put("batch-1", payload(2048));
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void shouldBeDisabledWithoutStreamingTransport() {
+    final var cache = buildCache(true, false, 10, 1024L);
+
+    cache.put("batch-1", payload(1));
+
+    assertFalse(cache.isEnabled());
+    assertNull(cache.get("batch-1"));
+    assertEquals(0, cache.size());
+  }
+
+  private static StoreLogPayload payload(int bytes) {
+    return new StoreLogPayload(new byte[bytes], 1);
+  }
+
+  private double hits() {
+    return meterRegistry
+        .get("logsender.fragment.cache.gets")
+        .tag("result", "hit")
+        .counter()
+        .count();
+  }
+
+  private double misses() {
+    return meterRegistry
+        .get("logsender.fragment.cache.gets")
+        .tag("result", "miss")
+        .counter()
+        .count();
+  }
+
+  private StoreLogPayloadCache buildCache(
+      boolean enabled, boolean streaming, int maxBatches, long maxBytes) {
+    return new StoreLogPayloadCache(
+        logsenderProperties()
+            .streaming(streaming)
+            .fragmentCache(new FragmentCache(enabled, maxBatches, maxBytes))
+            .build(),
+        meterRegistry);
+  }
+}
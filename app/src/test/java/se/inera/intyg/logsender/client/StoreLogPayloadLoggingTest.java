@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import java.util.stream.IntStream;
+import org.apache.cxf.bus.extension.ExtensionManagerBus;
+import org.apache.cxf.ext.logging.LoggingInInterceptor;
+import org.apache.cxf.ext.logging.LoggingOutInterceptor;
+import org.apache.cxf.ext.logging.event.EventType;
+import org.apache.cxf.ext.logging.event.LogEvent;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.ExchangeImpl;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.PayloadLogging;
+import se.inera.intyg.logsender.config.LogsenderProperties.PayloadLoggingMode;
+
+class StoreLogPayloadLoggingTest {
+
+  @Test
+  void shouldNotCaptureWhenOff() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.OFF, 100, 10);
+    final var exchange = new ExchangeImpl();
+
+    assertFalse(payloadLogging.capture(exchange));
+    assertFalse(payloadLogging.isCaptured(exchange));
+  }
+
+  @Test
+  void shouldCaptureOneInSampleRateExchanges() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.SAMPLED, 3, 10);
+
+    final var captured =
+        IntStream.range(0, 6).filter(i -> payloadLogging.capture(new ExchangeImpl())).count();
+
+    assertEquals(2, captured);
+  }
+
+  @Test
+  void shouldBufferEventsUntilExchangeFails() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.ON_ERROR, 100, 10);
+    final var failed = exchange("exchange-1");
+
+    assertTrue(payloadLogging.capture(failed));
+    payloadLogging.send(event("exchange-1", EventType.REQ_OUT));
+    payloadLogging.send(event("exchange-2", EventType.REQ_OUT));
+    payloadLogging.send(event("exchange-1", EventType.RESP_IN));
+    assertEquals(3, payloadLogging.buffered());
+
+    payloadLogging.failed(failed);
+
+    assertEquals(1, payloadLogging.buffered());
+  }
+
+  @Test
+  void shouldDropEventsOfCompletedExchange() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.ON_ERROR, 100, 10);
+    final var completed = exchange("exchange-1");
+
+    assertTrue(payloadLogging.capture(completed));
+    payloadLogging.send(event("exchange-1", EventType.REQ_OUT));
+    payloadLogging.send(event("exchange-2", EventType.REQ_OUT));
+    payloadLogging.send(event("exchange-1", EventType.RESP_IN));
+
+    payloadLogging.completed(completed);
+
+    assertEquals(1, payloadLogging.buffered());
+  }
+
+  @Test
+  void shouldTreatErrorResultCodeAsFailure() {
+    final var error = event("exchange-1", EventType.RESP_IN);
+    error.setPayload("<ns2:result><ns2:resultCode>VALIDATION_ERROR</ns2:resultCode></ns2:result>");
+    final var ok = event("exchange-1", EventType.RESP_IN);
+    ok.setPayload("<ns2:result><ns2:resultCode>OK</ns2:resultCode></ns2:result>");
+
+    assertTrue(StoreLogPayloadLogging.isErrorResult(error));
+    assertFalse(StoreLogPayloadLogging.isErrorResult(ok));
+    assertFalse(StoreLogPayloadLogging.isErrorResult(event("exchange-1", EventType.REQ_OUT)));
+  }
+
+  @Test
+  void shouldKeepOnlyLatestEventsInBuffer() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.ON_ERROR, 100, 2);
+
+    payloadLogging.send(event("exchange-1", EventType.REQ_OUT));
+    payloadLogging.send(event("exchange-2", EventType.REQ_OUT));
+    payloadLogging.send(event("exchange-3", EventType.REQ_OUT));
+
+    assertEquals(2, payloadLogging.buffered());
+    payloadLogging.failed(exchange("exchange-1"));
+    assertEquals(2, payloadLogging.buffered());
+  }
+
+  @Test
+  void shouldSwitchModeAtRuntime() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.ON_ERROR, 100, 10);
+    payloadLogging.send(event("exchange-1", EventType.REQ_OUT));
+
+    final var settings = payloadLogging.configure(PayloadLoggingMode.SAMPLED, null);
+
+    assertEquals(PayloadLoggingMode.SAMPLED, settings.mode());
+    assertEquals(100, settings.sampleRate());
+    assertEquals(0, payloadLogging.buffered());
+  }
+
+  @Test
+  void shouldRejectInvalidSampleRate() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.OFF, 100, 10);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> payloadLogging.configure(PayloadLoggingMode.SAMPLED, 0));
+    assertEquals(PayloadLoggingMode.OFF, payloadLogging.settings().mode());
+  }
+
+  @Test
+  void shouldOnlyLogPayloadWhenNotLoggingHeaders() {
+    final var payloadLogging = buildPayloadLogging(PayloadLoggingMode.HEADERS, 100, 10);
+    assertFalse(payloadLogging.isPayloadLogged());
+
+    payloadLogging.configure(PayloadLoggingMode.SAMPLED, null);
+    assertTrue(payloadLogging.isPayloadLogged());
+  }
+
+  @Test
+  void shouldAddInterceptorsToFaultChains() {
+    final var bus = new ExtensionManagerBus();
+
+    new StoreLogPayloadLoggingFeature(buildPayloadLogging(PayloadLoggingMode.ON_ERROR, 100, 10))
+        .initialize(bus, bus);
+
+    assertTrue(
+        bus.getInFaultInterceptors().stream().anyMatch(LoggingInInterceptor.class::isInstance));
+    assertTrue(
+        bus.getOutFaultInterceptors().stream().anyMatch(LoggingOutInterceptor.class::isInstance));
+  }
+
+  private static Exchange exchange(String exchangeId) {
+    final var exchange = new ExchangeImpl();
+    exchange.put(LogEvent.KEY_EXCHANGE_ID, exchangeId);
+    return exchange;
+  }
+
+  private static LogEvent event(String exchangeId, EventType type) {
+    final var event = new LogEvent();
+    event.setExchangeId(exchangeId);
+    event.setType(type);
+    event.setPayload("<payload/>");
+    return event;
+  }
+
+  private static StoreLogPayloadLogging buildPayloadLogging(
+      PayloadLoggingMode mode, int sampleRate, int bufferSize) {
+    return new StoreLogPayloadLogging(
+        logsenderProperties()
+            .payloadLogging(new PayloadLogging(mode, sampleRate, bufferSize))
+            .build());
+  }
+}
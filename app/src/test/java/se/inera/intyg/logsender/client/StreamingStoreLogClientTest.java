@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.ws.BindingProvider;
+import jakarta.xml.ws.Dispatch;
+import jakarta.xml.ws.WebServiceException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.cxf.headers.Header;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
+import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import se.riv.informationsecurity.auditing.log.v2.ResultCodeType;
+import se.riv.informationsecurity.auditing.log.v2.ResultType;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingStoreLogClientTest {
+
+  private static final String RESPONDER_NAMESPACE =
+      "urn:riv:informationsecurity:auditing:log:StoreLogResponder:2";
+
+  @Mock private Dispatch<Source> dispatch;
+
+  @Captor private ArgumentCaptor<Source> requestCaptor;
+
+  private final Map<String, Object> requestContext = new HashMap<>();
+
+  private StreamingStoreLogClient streamingStoreLogClient;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    when(dispatch.getRequestContext()).thenReturn(requestContext);
+    streamingStoreLogClient = new StreamingStoreLogClient(dispatch);
+  }
+
+  @Test
+  void shouldSendRequestAndReadResponse() throws Exception {
+    when(dispatch.invoke(requestCaptor.capture())).thenReturn(buildResponse(ResultCodeType.OK));
+
+    final var response = streamingStoreLogClient.storeLog("logicalAddress", buildRequest());
+
+    assertEquals(ResultCodeType.OK, response.getResult().getResultCode());
+    final var request = toString(requestCaptor.getValue());
+    assertTrue(request.contains(RESPONDER_NAMESPACE), request);
+    assertTrue(request.contains("StoreLog"), request);
+    assertTrue(request.contains("log-1") && request.contains("log-2"), request);
+  }
+
+  @Test
+  void shouldSendMarshalledPayload() throws Exception {
+    when(dispatch.invoke(requestCaptor.capture())).thenReturn(buildResponse(ResultCodeType.OK));
+    final var payload = streamingStoreLogClient.marshal(buildRequest());
+
+    final var response = streamingStoreLogClient.storeLog("logicalAddress", payload);
+
+    assertEquals(ResultCodeType.OK, response.getResult().getResultCode());
+    final var request = toString(requestCaptor.getValue());
+    assertTrue(request.contains(RESPONDER_NAMESPACE), request);
+    assertTrue(request.contains("log-1") && request.contains("log-2"), request);
+  }
+
+  @Test
+  void shouldSetLogicalAddressHeaderAndSoapAction() {
+    when(dispatch.invoke(any())).thenReturn(buildResponse(ResultCodeType.OK));
+
+    streamingStoreLogClient.storeLog("logicalAddress", buildRequest());
+
+    final var headers = (List<?>) requestContext.get(Header.HEADER_LIST);
+    final var header = (Header) headers.getFirst();
+    assertEquals("LogicalAddress", header.getName().getLocalPart());
+    assertEquals("logicalAddress", header.getObject());
+    assertEquals(true, requestContext.get(BindingProvider.SOAPACTION_USE_PROPERTY));
+    assertTrue(
+        ((String) requestContext.get(BindingProvider.SOAPACTION_URI_PROPERTY))
+            .startsWith("urn:riv:informationsecurity:auditing:log"));
+  }
+
+  @Test
+  void shouldPropagateWebServiceException() {
+    when(dispatch.invoke(any())).thenThrow(new WebServiceException("error"));
+
+    final var request = buildRequest();
+    assertThrows(
+        WebServiceException.class, () -> streamingStoreLogClient.storeLog("address", request));
+    verify(dispatch).invoke(any());
+  }
+
+  private StoreLogType buildRequest() {
+    final var request = new StoreLogType();
+    for (String logId : List.of("log-1", "log-2")) {
+      final var logType = new LogType();
+      logType.setLogId(logId);
+      request.getLog().add(logType);
+    }
+    return request;
+  }
+
+  private Source buildResponse(ResultCodeType resultCode) {
+    try {
+      final var result = new ResultType();
+      result.setResultCode(resultCode);
+      final var response = new StoreLogResponseType();
+      response.setResult(result);
+      final var writer = new StringWriter();
+      JAXBContext.newInstance(StoreLogResponseType.class)
+          .createMarshaller()
+          .marshal(
+              new JAXBElement<>(
+                  new QName(RESPONDER_NAMESPACE, "StoreLogResponse"),
+                  StoreLogResponseType.class,
+                  response),
+              writer);
+      return new StreamSource(new StringReader(writer.toString()));
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private String toString(Source source) throws Exception {
+    final var writer = new StringWriter();
+    TransformerFactory.newInstance().newTransformer().transform(source, new StreamResult(writer));
+    return writer.toString();
+  }
+}
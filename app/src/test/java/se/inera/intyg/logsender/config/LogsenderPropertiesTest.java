@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.MemoryBudget;
+
+class LogsenderPropertiesTest {
+
+  @Test
+  void shouldAcceptMemoryBudgetOfOneBatchPerConsumerAndTheOpenBatch() {
+    final var properties =
+        logsenderProperties()
+            .maxBatchBytes(1024L)
+            .memoryBudget(new MemoryBudget(2048L, 0L))
+            .build();
+
+    assertTrue(properties.isMemoryBudgetSufficient());
+  }
+
+  @Test
+  void shouldRejectMemoryBudgetBelowOneBatchPerConsumerAndTheOpenBatch() {
+    final var properties =
+        logsenderProperties()
+            .maxBatchBytes(1024L)
+            .memoryBudget(new MemoryBudget(2047L, 0L))
+            .build();
+
+    assertFalse(properties.isMemoryBudgetSufficient());
+  }
+
+  @Test
+  void shouldReadConcurrentConsumersFromEndpoint() {
+    assertEquals(1, LogsenderProperties.concurrentConsumers("activemq:queue:log"));
+    assertEquals(
+        3, LogsenderProperties.concurrentConsumers("activemq:queue:log?concurrentConsumers=3"));
+    assertEquals(
+        5,
+        LogsenderProperties.concurrentConsumers(
+            "activemq:queue:log?concurrentConsumers=2&maxConcurrentConsumers=5"));
+    assertEquals(
+        1, LogsenderProperties.concurrentConsumers("activemq:queue:log?concurrentConsumers=#{n}"));
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.FileOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.spec.SecretKeySpec;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.inera.intyg.logsender.config.LogsenderProperties.Certificate;
+import se.inera.intyg.logsender.config.LogsenderProperties.Tls;
+import se.inera.intyg.logsender.config.LogsenderProperties.TrustStore;
+
+class StoreLogTlsSupportTest {
+
+  private static final String PASSWORD = "password";
+
+  @TempDir private Path tempDir;
+
+  @Test
+  void shouldOfferTls13AndAesGcmFirst() {
+    final var cipherSuites =
+        StoreLogTlsSupport.preferredCipherSuites(
+            new String[] {
+              "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256",
+              "TLS_RSA_WITH_AES_256_GCM_SHA384",
+              "TLS_EMPTY_RENEGOTIATION_INFO_SCSV",
+              "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+              "TLS_CHACHA20_POLY1305_SHA256",
+              "TLS_AES_256_GCM_SHA384"
+            });
+
+    assertEquals(
+        List.of(
+            "TLS_AES_256_GCM_SHA384",
+            "TLS_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+            "TLS_RSA_WITH_AES_256_GCM_SHA384",
+            "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256",
+            "TLS_EMPTY_RENEGOTIATION_INFO_SCSV"),
+        cipherSuites);
+  }
+
+  @Test
+  void shouldExcludeWeakCipherSuites() {
+    final var cipherSuites =
+        StoreLogTlsSupport.preferredCipherSuites(
+            new String[] {
+              "SSL_RSA_EXPORT_WITH_RC4_40_MD5",
+              "SSL_RSA_WITH_3DES_EDE_CBC_SHA",
+              "SSL_RSA_WITH_DES_CBC_SHA",
+              "TLS_RSA_WITH_NULL_SHA256",
+              "TLS_DH_anon_WITH_AES_128_GCM_SHA256",
+              "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256"
+            });
+
+    assertEquals(List.of("TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256"), cipherSuites);
+  }
+
+  @Test
+  void shouldApplyProtocolsAndCipherSuitesToEnginesAndSockets() throws Exception {
+    final var parameters =
+        new SSLParameters(
+            new String[] {"TLS_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"},
+            new String[] {"TLSv1.3", "TLSv1.2"});
+    final var meterRegistry = new SimpleMeterRegistry();
+    final var sslContext =
+        new HandshakeTimingSslContext(
+            SSLContext.getDefault(),
+            parameters,
+            new HandshakeTimingSslContext.Timers(
+                meterRegistry.timer("full"), meterRegistry.timer("resumed")));
+
+    final var engine = sslContext.createSSLEngine("localhost", 443);
+    assertArrayEquals(parameters.getProtocols(), engine.getEnabledProtocols());
+    assertArrayEquals(parameters.getCipherSuites(), engine.getEnabledCipherSuites());
+
+    try (var serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        SSLSocket socket =
+            (SSLSocket)
+                sslContext
+                    .getSocketFactory()
+                    .createSocket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+      assertArrayEquals(parameters.getCipherSuites(), socket.getEnabledCipherSuites());
+    }
+    assertArrayEquals(
+        parameters.getCipherSuites(), sslContext.getDefaultSSLParameters().getCipherSuites());
+  }
+
+  @Test
+  void shouldNotCreateUnconnectedSocketsSoConnectIsNotTimed() throws Exception {
+    final var meterRegistry = new SimpleMeterRegistry();
+    final var socketFactory =
+        new HandshakeTimingSslContext(
+                SSLContext.getDefault(),
+                SSLContext.getDefault().getDefaultSSLParameters(),
+                new HandshakeTimingSslContext.Timers(
+                    meterRegistry.timer("full"), meterRegistry.timer("resumed")))
+            .getSocketFactory();
+
+    assertThrows(SocketException.class, socketFactory::createSocket);
+  }
+
+  @Test
+  void shouldTagHandshakeByWhetherSessionWasResumed() {
+    final var meterRegistry = new SimpleMeterRegistry();
+    final var timers =
+        new HandshakeTimingSslContext.Timers(
+            meterRegistry.timer("full"), meterRegistry.timer("resumed"));
+    final var session = mock(SSLSession.class);
+    when(session.getCreationTime()).thenReturn(1000L);
+
+    timers.record(session, 1000L, 5_000_000L);
+    timers.record(session, 1001L, 1_000_000L);
+
+    assertEquals(1, meterRegistry.timer("full").count());
+    assertEquals(5.0, meterRegistry.timer("full").totalTime(TimeUnit.MILLISECONDS));
+    assertEquals(1, meterRegistry.timer("resumed").count());
+    assertEquals(1.0, meterRegistry.timer("resumed").totalTime(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void shouldTagHandshakeTimerOfStoreLogClient() {
+    final var meterRegistry = new SimpleMeterRegistry();
+    new StoreLogTlsSupport(logsenderProperties().build(), meterRegistry);
+
+    assertEquals(2, meterRegistry.get("logsender.tls.handshake").timers().size());
+    meterRegistry.get("logsender.tls.handshake").tag("resumed", "true").timer();
+    meterRegistry.get("logsender.tls.handshake").tag("resumed", "false").timer();
+  }
+
+  @Test
+  void shouldReloadChangedKeyStoreWithoutReplacingSslContext() throws Exception {
+    final var meterRegistry = new SimpleMeterRegistry();
+    final var keyStoreFile = writeKeyStore(tempDir.resolve("keystore.p12"), 0);
+    final var trustStoreFile = writeKeyStore(tempDir.resolve("truststore.p12"), 0);
+    final var tlsSupport = buildTlsSupport(keyStoreFile, trustStoreFile, meterRegistry);
+    final var sslContext = tlsSupport.sslContext();
+
+    tlsSupport.reloadIfChanged();
+    assertEquals(0.0, reloads(meterRegistry, "success"));
+
+    writeKeyStore(keyStoreFile, 2);
+    tlsSupport.reloadIfChanged();
+
+    assertEquals(1.0, reloads(meterRegistry, "success"));
+    assertSame(sslContext, tlsSupport.sslContext());
+  }
+
+  @Test
+  void shouldKeepCurrentMaterialWhenReloadFails() throws Exception {
+    final var meterRegistry = new SimpleMeterRegistry();
+    final var keyStoreFile = writeKeyStore(tempDir.resolve("keystore.p12"), 0);
+    final var trustStoreFile = writeKeyStore(tempDir.resolve("truststore.p12"), 0);
+    final var tlsSupport = buildTlsSupport(keyStoreFile, trustStoreFile, meterRegistry);
+    tlsSupport.sslContext();
+
+    Files.writeString(trustStoreFile, "not a key store");
+    tlsSupport.reloadIfChanged();
+
+    assertEquals(0.0, reloads(meterRegistry, "success"));
+    assertEquals(1.0, reloads(meterRegistry, "failure"));
+  }
+
+  private StoreLogTlsSupport buildTlsSupport(
+      Path keyStoreFile, Path trustStoreFile, SimpleMeterRegistry meterRegistry) {
+    return new StoreLogTlsSupport(
+        logsenderProperties()
+            .certificate(new Certificate(keyStoreFile.toString(), "PKCS12", PASSWORD, PASSWORD))
+            .trustStore(new TrustStore(trustStoreFile.toString(), "PKCS12", PASSWORD))
+            .tls(new Tls(List.of("TLSv1.3", "TLSv1.2"), 10, 60, 0, 0L))
+            .build(),
+        meterRegistry);
+  }
+
+  // Secret key entries change the file without needing a certificate
+  private Path writeKeyStore(Path file, int secretKeys) throws Exception {
+    final var keyStore = KeyStore.getInstance("PKCS12");
+    keyStore.load(null, PASSWORD.toCharArray());
+    for (int i = 0; i < secretKeys; i++) {
+      keyStore.setEntry(
+          "key-" + i,
+          new KeyStore.SecretKeyEntry(new SecretKeySpec(new byte[16], "AES")),
+          new KeyStore.PasswordProtection(PASSWORD.toCharArray()));
+    }
+    try (FileOutputStream outputStream = new FileOutputStream(file.toFile())) {
+      keyStore.store(outputStream, PASSWORD.toCharArray());
+    }
+    return file;
+  }
+
+  private double reloads(SimpleMeterRegistry meterRegistry, String result) {
+    return meterRegistry.get("logsender.tls.reloads").tag("result", result).counter().count();
+  }
+}
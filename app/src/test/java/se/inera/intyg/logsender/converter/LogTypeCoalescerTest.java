@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.Coalesce;
+import se.inera.intyg.logsender.config.LogsenderProperties.Conversion;
+import se.inera.intyg.logsender.config.LogsenderProperties.ConversionMode;
+import se.inera.intyg.logsender.helper.TestDataHelper;
+import se.inera.intyg.logsender.helper.ValueInclude;
+import se.inera.intyg.logsender.model.ActivityType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+
+class LogTypeCoalescerTest {
+
+  private final LogTypeFactoryImpl logTypeFactory = new LogTypeFactoryImpl();
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void shouldNotCoalesceWhenDisabled() {
+    final var logTypes = buildLogTypes(ActivityType.READ, 3);
+
+    assertSame(logTypes, buildCoalescer(false, 100).coalesce(logTypes));
+  }
+
+  @Test
+  void shouldMergeEntriesWithIdenticalUserSystemAndActivity() {
+    final var logTypes = buildLogTypes(ActivityType.READ, 3);
+    final var firstLogId = logTypes.getFirst().getLogId();
+
+    final var coalesced = buildCoalescer(true, 100).coalesce(logTypes);
+
+    assertEquals(1, coalesced.size());
+    assertEquals(firstLogId, coalesced.getFirst().getLogId());
+    assertEquals(3, coalesced.getFirst().getResources().getResource().size());
+    assertEquals(3.0, meterRegistry.get("logsender.coalesce.entries.in").counter().count());
+    assertEquals(1.0, meterRegistry.get("logsender.coalesce.entries.out").counter().count());
+  }
+
+  @Test
+  void shouldNotMergeEntriesWithDifferentActivity() {
+    final var logTypes = new ArrayList<>(buildLogTypes(ActivityType.READ, 2));
+    final var other =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, 1, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
+    other.setActivityArgs("other");
+    logTypes.add(logTypeFactory.convert(other));
+
+    final var coalesced = buildCoalescer(true, 100).coalesce(logTypes);
+
+    assertEquals(2, coalesced.size());
+  }
+
+  @Test
+  void shouldRespectMaxResourcesPerEntry() {
+    final var logTypes = buildLogTypes(ActivityType.READ, 5);
+
+    final var coalesced = buildCoalescer(true, 2).coalesce(logTypes);
+
+    assertEquals(
+        List.of(2, 2, 1),
+        coalesced.stream().map(logType -> logType.getResources().getResource().size()).toList());
+  }
+
+  @Test
+  void shouldNotChangeCoalescedEntries() {
+    final var logTypes = buildLogTypes(ActivityType.READ, 3);
+    final var first = logTypes.getFirst();
+
+    final var coalesced = buildCoalescer(true, 100).coalesce(logTypes);
+
+    assertNotSame(first, coalesced.getFirst());
+    assertEquals(1, first.getResources().getResource().size());
+    assertEquals(3, logTypes.size());
+  }
+
+  @Test
+  void shouldMeasureMarshalledSizeBeforeAndAfter() {
+    buildCoalescer(true, 100).coalesce(buildLogTypes(ActivityType.READ, 5));
+
+    final var bytesIn = meterRegistry.get("logsender.coalesce.bytes.in").counter().count();
+    final var bytesOut = meterRegistry.get("logsender.coalesce.bytes.out").counter().count();
+    assertTrue(bytesOut > 0);
+    assertTrue(bytesOut < bytesIn);
+  }
+
+  private List<LogType> buildLogTypes(ActivityType activityType, int numberOfResources) {
+    return logTypeFactory.convertPerResource(
+        TestDataHelper.buildBasePdlLogMessage(
+            activityType, numberOfResources, ValueInclude.INCLUDE, ValueInclude.INCLUDE));
+  }
+
+  private LogTypeCoalescer buildCoalescer(boolean enabled, int maxResourcesPerEntry) {
+    return new LogTypeCoalescer(
+        logsenderProperties()
+            .coalesce(new Coalesce(enabled, maxResourcesPerEntry))
+            .conversion(new Conversion(ConversionMode.MODEL, 500, 1))
+            .build(),
+        meterRegistry);
+  }
+}
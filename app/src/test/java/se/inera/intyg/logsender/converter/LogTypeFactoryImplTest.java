@@ -20,12 +20,16 @@ package se.inera.intyg.logsender.converter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
 
 import org.junit.jupiter.api.Test;
 import se.inera.intyg.logsender.helper.TestDataHelper;
 import se.inera.intyg.logsender.helper.ValueInclude;
 import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.CompactPdlLogMessage;
 import se.inera.intyg.logsender.model.Enhet;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
 
 class LogTypeFactoryImplTest {
 
@@ -179,4 +183,93 @@ class LogTypeFactoryImplTest {
     assertEquals(logType.getUser().getUserId(), pdlLogMessage.getUserId());
     assertNull(logType.getUser().getName());
   }
+
+  @Test
+  void testConvertPerResource() {
+    final var pdlLogMessage =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, 3, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
+
+    final var logTypes = logTypeFactory.convertPerResource(pdlLogMessage);
+
+    assertEquals(3, logTypes.size());
+    logTypes.forEach(
+        logType -> {
+          assertEquals(1, logType.getResources().getResource().size());
+          assertEquals(pdlLogMessage.getUserId(), logType.getUser().getUserId());
+        });
+    assertEquals(3, logTypes.stream().map(LogType::getLogId).distinct().count());
+  }
+
+  @Test
+  void testConvertPerResourceWithSingleResourceKeepsLogId() {
+    final var pdlLogMessage = TestDataHelper.buildBasePdlLogMessage(ActivityType.READ);
+
+    final var logTypes = logTypeFactory.convertPerResource(pdlLogMessage);
+
+    assertEquals(1, logTypes.size());
+    assertEquals(pdlLogMessage.getLogId(), logTypes.getFirst().getLogId());
+  }
+
+  @Test
+  void testConvertPerResourceDerivesSameLogIdsForSameMessage() {
+    final var pdlLogMessage =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, 3, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
+
+    final var first = logTypeFactory.convertPerResource(pdlLogMessage);
+    final var second = logTypeFactory.convertPerResource(pdlLogMessage);
+
+    assertEquals(
+        first.stream().map(LogType::getLogId).toList(),
+        second.stream().map(LogType::getLogId).toList());
+  }
+
+  @Test
+  void testConvertPerResourceSharesCareUnitsWithinBatch() {
+    final var cache = new EnhetTypeCache();
+    final var first =
+        logTypeFactory.convertPerResource(
+            TestDataHelper.buildBasePdlLogMessage(ActivityType.READ), cache);
+    final var second =
+        logTypeFactory.convertPerResource(
+            TestDataHelper.buildBasePdlLogMessage(ActivityType.PRINT), cache);
+
+    final var userCareUnit = first.getFirst().getUser().getCareUnit();
+    assertSame(userCareUnit, second.getFirst().getUser().getCareUnit());
+    assertSame(
+        userCareUnit, second.getFirst().getResources().getResource().getFirst().getCareUnit());
+    assertSame(
+        first.getFirst().getUser().getCareProvider(),
+        second.getFirst().getResources().getResource().getFirst().getCareProvider());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void testConvertPerResourceFromCompactMessageMatchesModel() {
+    final var pdlLogMessage =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, 3, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
+    final var compact = OBJECT_MAPPER.convertValue(pdlLogMessage, CompactPdlLogMessage.class);
+
+    final var expected = logTypeFactory.convertPerResource(pdlLogMessage);
+    final var actual = logTypeFactory.convertPerResource(compact, new EnhetTypeCache());
+
+    assertEquals(
+        expected.stream().map(LogType::getLogId).toList(),
+        actual.stream().map(LogType::getLogId).toList());
+    for (int i = 0; i < expected.size(); i++) {
+      final var expectedResource = expected.get(i).getResources().getResource().getFirst();
+      final var actualResource = actual.get(i).getResources().getResource().getFirst();
+      assertEquals(
+          expectedResource.getPatient().getPatientId(), actualResource.getPatient().getPatientId());
+      assertEquals(
+          expectedResource.getCareUnit().getCareUnitId(),
+          actualResource.getCareUnit().getCareUnitId());
+      assertEquals(expected.get(i).getUser().getName(), actual.get(i).getUser().getName());
+      assertEquals(
+          expected.get(i).getActivity().getStartDate(),
+          actual.get(i).getActivity().getStartDate());
+    }
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import se.inera.intyg.logsender.config.LogsenderProperties.Conversion;
+import se.inera.intyg.logsender.config.LogsenderProperties.ConversionMode;
+import se.inera.intyg.logsender.logging.MdcLogConstants;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+
+class ParallelLogTypeConverterTest {
+
+  private ParallelLogTypeConverter converter;
+
+  @BeforeEach
+  void setUp() {
+    converter =
+        new ParallelLogTypeConverter(
+            logsenderProperties().conversion(new Conversion(ConversionMode.MODEL, 10, 4)).build());
+  }
+
+  @AfterEach
+  void tearDown() {
+    converter.destroy();
+  }
+
+  @Test
+  void shouldKeepEntryOrderBelowThreshold() throws Exception {
+    final var entries = entries(5);
+
+    final var logTypes = converter.convert(entries, this::toLogTypes);
+
+    assertEquals(entries, logTypes.stream().map(LogType::getLogId).toList());
+  }
+
+  @Test
+  void shouldKeepEntryOrderAboveThreshold() throws Exception {
+    final var entries = entries(1000);
+
+    final var logTypes = converter.convert(entries, this::toLogTypes);
+
+    assertEquals(entries, logTypes.stream().map(LogType::getLogId).toList());
+  }
+
+  @Test
+  void shouldRethrowConversionExceptionAboveThreshold() {
+    final var entries = entries(1000);
+    final var failure = new IllegalArgumentException("invalid");
+
+    final var thrown =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                converter.convert(
+                    entries,
+                    entry -> {
+                      if (entry.equals("500")) {
+                        throw failure;
+                      }
+                      return toLogTypes(entry);
+                    }));
+
+    assertSame(failure, thrown);
+  }
+
+  @Test
+  void shouldRethrowConversionErrorAboveThreshold() {
+    final var entries = entries(1000);
+    final var failure = new StackOverflowError();
+
+    final var thrown =
+        assertThrows(
+            StackOverflowError.class,
+            () ->
+                converter.convert(
+                    entries,
+                    entry -> {
+                      if (entry.equals("500")) {
+                        throw failure;
+                      }
+                      return toLogTypes(entry);
+                    }));
+
+    assertSame(failure, thrown);
+  }
+
+  @Test
+  void shouldConvertWithMdcOfCallerAboveThreshold() throws Exception {
+    final var traceIds = ConcurrentHashMap.<String>newKeySet();
+    MDC.put(MdcLogConstants.TRACE_ID_KEY, "trace-1");
+    try {
+      converter.convert(
+          entries(1000),
+          entry -> {
+            traceIds.add(String.valueOf(MDC.get(MdcLogConstants.TRACE_ID_KEY)));
+            return toLogTypes(entry);
+          });
+    } finally {
+      MDC.clear();
+    }
+
+    assertEquals(Set.of("trace-1"), traceIds);
+  }
+
+  private Stream<LogType> toLogTypes(String entry) {
+    final var logType = new LogType();
+    logType.setLogId(entry);
+    return Stream.of(logType);
+  }
+
+  private List<String> entries(int count) {
+    return IntStream.range(0, count).mapToObj(String::valueOf).toList();
+  }
+}
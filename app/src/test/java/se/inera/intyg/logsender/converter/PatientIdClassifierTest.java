@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class PatientIdClassifierTest {
+
+  private static final String PERSONNUMMER_ROOT = "1.2.752.129.2.1.3.1";
+  private static final String SAMORDNINGSNUMMER_ROOT = "1.2.752.129.2.1.3.3";
+
+  private final LogTypeFactoryUtil util = LogTypeFactoryUtil.getInstance();
+  private final List<String> fallbackCalls = Collections.synchronizedList(new ArrayList<>());
+
+  private PatientIdClassifier classifier;
+
+  @BeforeEach
+  void setUp() {
+    classifier = buildClassifier(100);
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {"191212121212", "19121212-1212", "201212121212", "19121272-1219", "191212721219"})
+  void shouldClassifyTwelveDigitIdsWithoutFallback(String patientId) {
+    assertEquals(util.resolvePatientIdRoot(patientId), classifier.root(patientId));
+    assertEquals(List.of(), fallbackCalls);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"121212-1212", "1212121212", "19121212+1212", "191212121213"})
+  void shouldUseFallbackForOtherForms(String patientId) {
+    final var expected = resolveOrNull(patientId);
+
+    assertEquals(expected, resolveOrNull(classifier, patientId));
+    assertEquals(List.of(patientId), fallbackCalls);
+  }
+
+  @Test
+  void shouldClassifySamordningsnummer() {
+    assertEquals(SAMORDNINGSNUMMER_ROOT, classifier.root("19121272-1219"));
+    assertEquals(PERSONNUMMER_ROOT, classifier.root("19121212-1212"));
+  }
+
+  @Test
+  void shouldThrowForInvalidId() {
+    assertThrows(IllegalArgumentException.class, () -> classifier.root("invalid"));
+  }
+
+  @Test
+  void shouldCacheFallbackResult() {
+    classifier.root("121212-1212");
+    classifier.root("121212-1212");
+
+    assertEquals(List.of("121212-1212"), fallbackCalls);
+  }
+
+  @Test
+  void shouldEvictOldestWhenFull() {
+    final var bounded = buildClassifier(2, patientId -> PERSONNUMMER_ROOT);
+    bounded.root("a");
+    bounded.root("b");
+    bounded.root("a");
+    bounded.root("c");
+    bounded.root("b");
+    bounded.root("a");
+
+    assertEquals(2, bounded.cachedCount());
+    assertEquals(List.of("a", "b", "c", "a"), fallbackCalls);
+  }
+
+  @Test
+  void shouldStayBoundedWhenClassifyingConcurrently() {
+    final var bounded = buildClassifier(10, patientId -> PERSONNUMMER_ROOT);
+
+    IntStream.range(0, 1000).parallel().forEach(i -> bounded.root("patient-" + i));
+
+    assertEquals(10, bounded.cachedCount());
+  }
+
+  private PatientIdClassifier buildClassifier(int maxCachedIds) {
+    return buildClassifier(maxCachedIds, util::resolvePatientIdRoot);
+  }
+
+  private PatientIdClassifier buildClassifier(int maxCachedIds, Function<String, String> resolver) {
+    final Function<String, String> fallback =
+        patientId -> {
+          fallbackCalls.add(patientId);
+          return resolver.apply(patientId);
+        };
+    return new PatientIdClassifier(
+        maxCachedIds, PERSONNUMMER_ROOT, SAMORDNINGSNUMMER_ROOT, fallback);
+  }
+
+  private String resolveOrNull(String patientId) {
+    try {
+      return util.resolvePatientIdRoot(patientId);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private String resolveOrNull(PatientIdClassifier patientIdClassifier, String patientId) {
+    try {
+      return patientIdClassifier.root(patientId);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.helper.TestDataHelper;
+import se.inera.intyg.logsender.helper.ValueInclude;
+import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.BatchStringInterner;
+import se.inera.intyg.logsender.model.CompactPdlLogMessage;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.ValueDeserializer;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.module.SimpleModule;
+import tools.jackson.databind.node.ObjectNode;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+class PipelineJsonCodecTest {
+
+  private final PipelineJsonCodec pipelineJsonCodec = new PipelineJsonCodec(OBJECT_MAPPER);
+
+  @Test
+  void shouldWriteAndReadPdlLogMessage() {
+    final var pdlLogMessage =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, 2, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
+
+    final var json = pipelineJsonCodec.writePdlLogMessage(pdlLogMessage);
+
+    assertEquals(OBJECT_MAPPER.writeValueAsString(pdlLogMessage), json);
+    assertEquals(json, rewrite(pipelineJsonCodec.readPdlLogMessage(json)));
+    assertEquals(
+        json,
+        rewrite(pipelineJsonCodec.readPdlLogMessage(json.getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @Test
+  void shouldReadArraysAndSequencesOfPdlLogMessages() throws Exception {
+    final var first = TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ);
+    final var second = TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.PRINT);
+
+    assertEquals(1, pipelineJsonCodec.readPdlLogMessages(first).size());
+    assertEquals(2, pipelineJsonCodec.readPdlLogMessages("[" + first + "," + second + "]").size());
+    assertEquals(
+        2,
+        pipelineJsonCodec
+            .readPdlLogMessages(
+                (first + "\n" + second + "\n").getBytes(StandardCharsets.UTF_8),
+                PayloadFormat.JSON,
+                false)
+            .size());
+  }
+
+  @Test
+  void shouldReadBatch() {
+    final var entries =
+        List.of(
+            TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ),
+            TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.PRINT));
+
+    assertEquals(entries, pipelineJsonCodec.readBatch(OBJECT_MAPPER.writeValueAsBytes(entries)));
+  }
+
+  @Test
+  void shouldShareInternedStringsWithinReader() {
+    final var reader = pipelineJsonCodec.compactPdlLogMessageReader(new BatchStringInterner());
+
+    final CompactPdlLogMessage first =
+        reader.readValue(TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ));
+    final CompactPdlLogMessage second =
+        reader.readValue(TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.PRINT));
+
+    assertSame(first.userId(), second.userId());
+  }
+
+  @Test
+  void shouldReadTimestampWithSameFormatAsModel() {
+    final var pdlLogMessage = TestDataHelper.buildBasePdlLogMessage(ActivityType.READ);
+    final var json = OBJECT_MAPPER.writeValueAsString(pdlLogMessage.getTimestamp());
+
+    try (var parser = pipelineJsonCodec.createParser(json)) {
+      parser.nextToken();
+      assertEquals(pdlLogMessage.getTimestamp(), pipelineJsonCodec.readTimestamp(parser));
+    }
+  }
+
+  @Test
+  void shouldThrowForInvalidJson() {
+    assertThrows(
+        JacksonException.class, () -> pipelineJsonCodec.readPdlLogMessage("this-is-not-json"));
+    assertThrows(
+        JacksonException.class,
+        () -> pipelineJsonCodec.readBatch("[1,".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void shouldReadSameModelAsObjectMapper() {
+    final var json = TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.SIGN, 3);
+
+    assertEquals(
+        rewrite(OBJECT_MAPPER.readValue(json, PdlLogMessage.class)),
+        rewrite(pipelineJsonCodec.readPdlLogMessage(json)));
+  }
+
+  @Test
+  void shouldReadSmileAndCborWithSettingsOfObjectMapper() throws Exception {
+    final var module = new SimpleModule("lenient-activity-type");
+    module.addDeserializer(
+        ActivityType.class,
+        new ValueDeserializer<>() {
+          @Override
+          public ActivityType deserialize(JsonParser parser, DeserializationContext context) {
+            return ActivityType.valueOf(parser.getString().toUpperCase());
+          }
+        });
+    final var codec =
+        new PipelineJsonCodec(
+            JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .addModule(module)
+                .build());
+    final var pdlLogMessage = TestDataHelper.buildBasePdlLogMessage(ActivityType.READ);
+    final var tree = (ObjectNode) OBJECT_MAPPER.valueToTree(pdlLogMessage);
+    tree.put("activityType", "read");
+    tree.put("unknownProperty", "value");
+
+    for (var format : List.of(PayloadFormat.SMILE, PayloadFormat.CBOR)) {
+      final var mapper =
+          format == PayloadFormat.SMILE ? SmileMapper.builder().build() : new CBORMapper();
+      final var read = codec.readPdlLogMessages(mapper.writeValueAsBytes(tree), format, false);
+
+      assertEquals(rewrite(pdlLogMessage), rewrite(read.getFirst()));
+    }
+  }
+
+  @Test
+  void shouldRejectGzippedPayloadInflatingAboveLimit() throws Exception {
+    final var out = new ByteArrayOutputStream();
+    try (var gzip = new GZIPOutputStream(out)) {
+      gzip.write(new byte[PipelineJsonCodec.MAX_INFLATED_BYTES + 1]);
+    }
+
+    assertThrows(
+        IOException.class,
+        () -> pipelineJsonCodec.readPdlLogMessages(out.toByteArray(), PayloadFormat.JSON, true));
+  }
+
+  private static String rewrite(PdlLogMessage pdlLogMessage) {
+    return OBJECT_MAPPER.writeValueAsString(pdlLogMessage);
+  }
+}
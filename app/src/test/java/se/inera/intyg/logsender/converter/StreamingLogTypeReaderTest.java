@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
+import static se.inera.intyg.logsender.helper.TestDataHelper.PIPELINE_JSON_CODEC;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import java.io.StringWriter;
+import java.util.List;
+import javax.xml.namespace.QName;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.helper.TestDataHelper;
+import se.inera.intyg.logsender.helper.ValueInclude;
+import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.Enhet;
+import se.inera.intyg.logsender.model.Patient;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+
+class StreamingLogTypeReaderTest {
+
+  private static final QName LOG_QNAME =
+      new QName("urn:riv:informationsecurity:auditing:log:2", "Log");
+
+  private static JAXBContext jaxbContext;
+
+  private final LogTypeFactoryImpl logTypeFactory = new LogTypeFactoryImpl();
+  private final StreamingLogTypeReader streamingLogTypeReader =
+      new StreamingLogTypeReader(PIPELINE_JSON_CODEC);
+
+  @BeforeAll
+  static void initJaxb() throws JAXBException {
+    jaxbContext = JAXBContext.newInstance(LogType.class);
+  }
+
+  @Test
+  void shouldProduceSameOutputForSingleResource() throws Exception {
+    assertSameOutput(TestDataHelper.buildBasePdlLogMessage(ActivityType.READ));
+  }
+
+  @Test
+  void shouldProduceSameOutputForMultipleResources() throws Exception {
+    assertSameOutput(
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.PRINT, 4, ValueInclude.INCLUDE, ValueInclude.INCLUDE));
+  }
+
+  @Test
+  void shouldProduceSameOutputWhenTrimming() throws Exception {
+    final var pdlLogMessage =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, ValueInclude.BLANK_WITH_SPACE, ValueInclude.BLANK_WITH_SPACE);
+    pdlLogMessage.setUserCareUnit(
+        new Enhet(" enhet-1", " enhets namn ", "vardgivare-1 ", "Vardgivare namn "));
+    pdlLogMessage.setActivityArgs(" ");
+    pdlLogMessage.setActivityLevel(" level ");
+    pdlLogMessage.setUserTitle(" title");
+    assertSameOutput(pdlLogMessage);
+  }
+
+  @Test
+  void shouldProduceSameOutputForOptionalValuesMissing() throws Exception {
+    final var pdlLogMessage =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.SIGN, ValueInclude.NULL, ValueInclude.NULL);
+    pdlLogMessage.setSystemName(null);
+    pdlLogMessage.setActivityArgs(null);
+    assertSameOutput(pdlLogMessage);
+  }
+
+  @Test
+  void shouldProduceSameOutputForSamordningsnummer() throws Exception {
+    final var pdlLogMessage = TestDataHelper.buildBasePdlLogMessage(ActivityType.READ);
+    pdlLogMessage.getPdlResourceList().getFirst().setPatient(new Patient("19121272-1219", null));
+    assertSameOutput(pdlLogMessage);
+  }
+
+  @Test
+  void shouldIgnoreUnknownProperties() throws Exception {
+    final var pdlLogMessage = TestDataHelper.buildBasePdlLogMessage(ActivityType.READ);
+    final var json =
+        OBJECT_MAPPER
+            .writeValueAsString(pdlLogMessage)
+            .replaceFirst("\\{", "{\"unknown\":{\"nested\":[1,2]},");
+
+    assertEquals(
+        marshal(logTypeFactory.convertPerResource(pdlLogMessage)),
+        marshal(streamingLogTypeReader.readPerResource(json)));
+  }
+
+  @Test
+  void shouldThrowIllegalArgumentExceptionForInvalidPatientId() throws Exception {
+    final var pdlLogMessage = TestDataHelper.buildBasePdlLogMessage(ActivityType.READ);
+    pdlLogMessage.getPdlResourceList().getFirst().setPatient(new Patient("invalid", null));
+    final var json = OBJECT_MAPPER.writeValueAsString(pdlLogMessage);
+
+    assertThrows(
+        IllegalArgumentException.class, () -> streamingLogTypeReader.readPerResource(json));
+  }
+
+  @Test
+  void shouldThrowIllegalArgumentExceptionForInvalidJson() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> streamingLogTypeReader.readPerResource("this-is-not-json"));
+  }
+
+  private void assertSameOutput(PdlLogMessage pdlLogMessage) throws Exception {
+    final var json = OBJECT_MAPPER.writeValueAsString(pdlLogMessage);
+
+    final var expected =
+        logTypeFactory.convertPerResource(OBJECT_MAPPER.readValue(json, PdlLogMessage.class));
+    final var actual = streamingLogTypeReader.readPerResource(json);
+
+    assertEquals(marshal(expected), marshal(actual));
+  }
+
+  private String marshal(List<LogType> logTypes) throws JAXBException {
+    final var marshaller = jaxbContext.createMarshaller();
+    final var writer = new StringWriter();
+    for (LogType logType : logTypes) {
+      marshaller.marshal(new JAXBElement<>(LOG_QNAME, LogType.class, logType), writer);
+    }
+    return writer.toString();
+  }
+}
@@ -18,7 +18,33 @@
  */
 package se.inera.intyg.logsender.helper;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.ClassPathResource;
+import se.inera.intyg.logsender.config.LogsenderProperties;
+import se.inera.intyg.logsender.config.LogsenderProperties.Aggregation;
+import se.inera.intyg.logsender.config.LogsenderProperties.Buffer;
+import se.inera.intyg.logsender.config.LogsenderProperties.Certificate;
+import se.inera.intyg.logsender.config.LogsenderProperties.Coalesce;
+import se.inera.intyg.logsender.config.LogsenderProperties.Conversion;
+import se.inera.intyg.logsender.config.LogsenderProperties.Drain;
+import se.inera.intyg.logsender.config.LogsenderProperties.FragmentCache;
+import se.inera.intyg.logsender.config.LogsenderProperties.MemoryBudget;
+import se.inera.intyg.logsender.config.LogsenderProperties.OversizedBatch;
+import se.inera.intyg.logsender.config.LogsenderProperties.PayloadLogging;
+import se.inera.intyg.logsender.config.LogsenderProperties.Queue;
+import se.inera.intyg.logsender.config.LogsenderProperties.Retry;
+import se.inera.intyg.logsender.config.LogsenderProperties.Split;
+import se.inera.intyg.logsender.config.LogsenderProperties.StoreLog;
+import se.inera.intyg.logsender.config.LogsenderProperties.Timeout;
+import se.inera.intyg.logsender.config.LogsenderProperties.Tls;
+import se.inera.intyg.logsender.config.LogsenderProperties.Transport;
+import se.inera.intyg.logsender.config.LogsenderProperties.TrustStore;
+import se.inera.intyg.logsender.converter.PipelineJsonCodec;
 import se.inera.intyg.logsender.model.ActivityPurpose;
 import se.inera.intyg.logsender.model.ActivityType;
 import se.inera.intyg.logsender.model.Enhet;
@@ -35,6 +61,14 @@ public class TestDataHelper {
   // Jackson 3 has built-in java.time support, so no JavaTimeModule registration is needed.
   public static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder().build();
 
+  public static final PipelineJsonCodec PIPELINE_JSON_CODEC = new PipelineJsonCodec(OBJECT_MAPPER);
+
+  // Properties with the defaults bound from application.yml, for tests to override what they
+  // exercise
+  public static LogsenderPropertiesBuilder logsenderProperties() {
+    return new LogsenderPropertiesBuilder();
+  }
+
   public static PdlLogMessage buildBasePdlLogMessage(ActivityType activityType) {
     return buildBasePdlLogMessage(activityType, 1, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
   }
@@ -114,4 +148,159 @@ public class TestDataHelper {
       default -> null;
     };
   }
+
+  public static class LogsenderPropertiesBuilder {
+
+    private static final LogsenderProperties DEFAULTS = applicationDefaults();
+
+    private long maxBatchBytes = DEFAULTS.aggregation().maxBatchBytes();
+    private Buffer buffer = DEFAULTS.aggregation().buffer();
+    private MemoryBudget memoryBudget = DEFAULTS.aggregation().memoryBudget();
+    private Split split = DEFAULTS.aggregation().split();
+    private Drain drain = DEFAULTS.queue().drain();
+    private Retry retry = DEFAULTS.queue().retry();
+    private Certificate certificate = DEFAULTS.storeLog().certificate();
+    private TrustStore trustStore = DEFAULTS.storeLog().trustStore();
+    private Coalesce coalesce = DEFAULTS.storeLog().coalesce();
+    private Conversion conversion = DEFAULTS.storeLog().conversion();
+    private boolean streaming = DEFAULTS.storeLog().transport().streaming();
+    private Tls tls = DEFAULTS.storeLog().transport().tls();
+    private Timeout timeout = DEFAULTS.storeLog().transport().timeout();
+    private FragmentCache fragmentCache = DEFAULTS.storeLog().fragmentCache();
+    private PayloadLogging payloadLogging = DEFAULTS.storeLog().payloadLogging();
+    private OversizedBatch oversizedBatch = DEFAULTS.storeLog().oversizedBatch();
+
+    public LogsenderPropertiesBuilder maxBatchBytes(long maxBatchBytes) {
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder buffer(Buffer buffer) {
+      this.buffer = buffer;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder memoryBudget(MemoryBudget memoryBudget) {
+      this.memoryBudget = memoryBudget;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder split(Split split) {
+      this.split = split;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder drain(Drain drain) {
+      this.drain = drain;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder retry(Retry retry) {
+      this.retry = retry;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder certificate(Certificate certificate) {
+      this.certificate = certificate;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder trustStore(TrustStore trustStore) {
+      this.trustStore = trustStore;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder coalesce(Coalesce coalesce) {
+      this.coalesce = coalesce;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder conversion(Conversion conversion) {
+      this.conversion = conversion;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder streaming(boolean streaming) {
+      this.streaming = streaming;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder tls(Tls tls) {
+      this.tls = tls;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder timeout(Timeout timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder fragmentCache(FragmentCache fragmentCache) {
+      this.fragmentCache = fragmentCache;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder payloadLogging(PayloadLogging payloadLogging) {
+      this.payloadLogging = payloadLogging;
+      return this;
+    }
+
+    public LogsenderPropertiesBuilder oversizedBatch(OversizedBatch oversizedBatch) {
+      this.oversizedBatch = oversizedBatch;
+      return this;
+    }
+
+    public LogsenderProperties build() {
+      final var aggregation = DEFAULTS.aggregation();
+      final var queue = DEFAULTS.queue();
+      final var storeLog = DEFAULTS.storeLog();
+      final var transport = storeLog.transport();
+      return new LogsenderProperties(
+          new Aggregation(
+              aggregation.bulkSize(),
+              aggregation.bulkTimeout(),
+              maxBatchBytes,
+              buffer,
+              memoryBudget,
+              split),
+          new Queue(
+              queue.receiveLogMessageEndpoint(),
+              queue.receiveAggregatedLogMessageEndpoint(),
+              queue.receiveAggregatedLogMessageDlq(),
+              drain,
+              retry),
+          new StoreLog(
+              storeLog.logicalAddress(),
+              storeLog.endpointUrl(),
+              storeLog.ntjpBaseUrl(),
+              certificate,
+              trustStore,
+              coalesce,
+              conversion,
+              new Transport(
+                  streaming,
+                  transport.chunkingThreshold(),
+                  transport.httpClient(),
+                  tls,
+                  timeout,
+                  transport.compression()),
+              fragmentCache,
+              payloadLogging,
+              oversizedBatch));
+    }
+
+    // Bound from application.yml as the application binds it, placeholders are left unresolved
+    private static LogsenderProperties applicationDefaults() {
+      try {
+        final var propertySources =
+            new YamlPropertySourceLoader()
+                .load("application.yml", new ClassPathResource("application.yml"));
+        return new Binder(ConfigurationPropertySources.from(propertySources))
+            .bind("app", LogsenderProperties.class)
+            .get();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.helper.TestDataHelper;
+import se.inera.intyg.logsender.helper.ValueInclude;
+import tools.jackson.databind.ObjectReader;
+
+class CompactPdlLogMessageTest {
+
+  private static final int MESSAGES = 100;
+
+  @Test
+  void shouldReadSameValuesAsPdlLogMessage() {
+    final var json = TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ, 2);
+    final var expected = OBJECT_MAPPER.readValue(json, PdlLogMessage.class);
+
+    final CompactPdlLogMessage compact = compactReader(new BatchStringInterner()).readValue(json);
+
+    assertEquals(expected.getLogId(), compact.logId());
+    assertEquals(expected.getSystemId(), compact.systemId());
+    assertEquals(expected.getActivityType(), compact.activityType());
+    assertEquals(expected.getTimestamp(), compact.timestamp());
+    assertEquals(expected.getUserCareUnit().getEnhetsId(), compact.userCareUnit().enhetsId());
+    assertEquals(2, compact.pdlResourceList().size());
+    assertEquals(
+        expected.getPdlResourceList().getFirst().getPatient().getPatientId(),
+        compact.pdlResourceList().getFirst().patient().patientId());
+  }
+
+  @Test
+  void shouldShareIdentifiersWithinBatch() {
+    final var reader = compactReader(new BatchStringInterner());
+
+    final CompactPdlLogMessage first =
+        reader.readValue(TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ));
+    final CompactPdlLogMessage second =
+        reader.readValue(TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ));
+
+    assertSame(first.systemId(), second.systemId());
+    assertSame(first.userCareUnit().vardgivareId(), second.userCareUnit().vardgivareId());
+    assertSame(
+        first.userCareUnit().enhetsId(),
+        second.pdlResourceList().getFirst().resourceOwner().enhetsId());
+    assertNotSame(first.logId(), second.logId());
+  }
+
+  @Test
+  void shouldNotAllocateListWithoutResources() {
+    final var compact =
+        new CompactPdlLogMessage(
+            "id",
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null);
+
+    assertSame(List.of(), compact.pdlResourceList());
+  }
+
+  @Test
+  void shouldHoldFewerObjectsThanPdlLogMessage() throws Exception {
+    final var jsons = new ArrayList<String>(MESSAGES);
+    for (int i = 0; i < MESSAGES; i++) {
+      jsons.add(
+          OBJECT_MAPPER.writeValueAsString(
+              TestDataHelper.buildBasePdlLogMessage(
+                  ActivityType.READ, 3, ValueInclude.INCLUDE, ValueInclude.INCLUDE)));
+    }
+    final var reader = compactReader(new BatchStringInterner());
+
+    final var modelObjects =
+        reachableObjects(
+            jsons.stream()
+                .map(json -> OBJECT_MAPPER.readValue(json, PdlLogMessage.class))
+                .toList());
+    final var compactObjects =
+        reachableObjects(
+            jsons.stream().map(json -> reader.<CompactPdlLogMessage>readValue(json)).toList());
+
+    // Counted rather than measured on the heap, which depends on the GC and other tests
+    assertTrue(
+        compactObjects < modelObjects,
+        "Expected compact model ("
+            + compactObjects
+            + " objects) to hold fewer objects than PdlLogMessage ("
+            + modelObjects
+            + " objects)");
+  }
+
+  private static ObjectReader compactReader(BatchStringInterner interner) {
+    return OBJECT_MAPPER
+        .readerFor(CompactPdlLogMessage.class)
+        .withAttribute(BatchStringInterner.class, interner);
+  }
+
+  // Distinct objects reachable from the messages, counted by identity. Records are followed
+  // through their components and the mutable model through its fields, JDK values are leaves.
+  private static int reachableObjects(List<?> messages) throws Exception {
+    final var visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    final var pending = new ArrayDeque<Object>(messages);
+    while (!pending.isEmpty()) {
+      final var object = pending.pop();
+      if (!visited.add(object)) {
+        continue;
+      }
+      for (var child : children(object)) {
+        if (child != null) {
+          pending.push(child);
+        }
+      }
+    }
+    return visited.size();
+  }
+
+  private static List<Object> children(Object object) throws Exception {
+    final var children = new ArrayList<>();
+    if (object instanceof Collection<?> collection) {
+      children.addAll(collection);
+    } else if (object.getClass().isRecord()) {
+      for (var component : object.getClass().getRecordComponents()) {
+        children.add(component.getAccessor().invoke(object));
+      }
+    } else if (object.getClass().getPackageName().startsWith("se.inera")
+        && !object.getClass().isEnum()) {
+      for (var field : object.getClass().getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          field.setAccessible(true);
+          children.add(field.get(object));
+        }
+      }
+    }
+    return children;
+  }
+}
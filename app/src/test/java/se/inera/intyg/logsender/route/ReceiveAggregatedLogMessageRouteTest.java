@@ -19,13 +19,11 @@
 package se.inera.intyg.logsender.route;
 
 import static org.apache.camel.component.mock.MockEndpoint.assertIsSatisfied;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.google.common.collect.ImmutableMap;
 import jakarta.xml.ws.WebServiceException;
 import java.util.Collections;
 import org.apache.camel.CamelContext;
-import org.apache.camel.CamelExecutionException;
 import org.apache.camel.EndpointInject;
 import org.apache.camel.ProducerTemplate;
 import org.apache.camel.builder.AdviceWith;
@@ -61,6 +59,9 @@ class ReceiveAggregatedLogMessageRouteTest {
   @EndpointInject("mock:direct:logMessageTemporaryErrorHandlerEndpoint")
   MockEndpoint logMessageTemporaryErrorHandlerEndpoint;
 
+  @EndpointInject("mock:direct:logMessageRetryEndpoint")
+  MockEndpoint logMessageRetryEndpoint;
+
   @BeforeEach
   void setup() throws Exception {
     MockEndpoint.resetMocks(camelContext);
@@ -71,7 +72,8 @@ class ReceiveAggregatedLogMessageRouteTest {
             in.mockEndpointsAndSkip(
                 "direct:logMessageTemporaryErrorHandlerEndpoint",
                 "bean:logMessageSendProcessor",
-                "direct:logMessagePermanentErrorHandlerEndpoint"));
+                "direct:logMessagePermanentErrorHandlerEndpoint",
+                "direct:logMessageRetryEndpoint"));
     camelContext.start();
   }
 
@@ -80,6 +82,7 @@ class ReceiveAggregatedLogMessageRouteTest {
     logMessageSendProcessor.expectedMessageCount(1);
     logMessagePermanentErrorHandlerEndpoint.expectedMessageCount(0);
     logMessageTemporaryErrorHandlerEndpoint.expectedMessageCount(0);
+    logMessageRetryEndpoint.expectedMessageCount(0);
 
     producerTemplate.sendBodyAndHeaders(
         "direct:receiveAggregatedLogMessageEndpoint",
@@ -89,6 +92,7 @@ class ReceiveAggregatedLogMessageRouteTest {
     assertIsSatisfied(logMessageSendProcessor);
     assertIsSatisfied(logMessagePermanentErrorHandlerEndpoint);
     assertIsSatisfied(logMessageTemporaryErrorHandlerEndpoint);
+    assertIsSatisfied(logMessageRetryEndpoint);
   }
 
   @Test
@@ -122,20 +126,17 @@ class ReceiveAggregatedLogMessageRouteTest {
     logMessageSendProcessor.expectedMessageCount(1);
     logMessagePermanentErrorHandlerEndpoint.expectedMessageCount(0);
     logMessageTemporaryErrorHandlerEndpoint.expectedMessageCount(1);
+    logMessageRetryEndpoint.expectedMessageCount(1);
 
-    final var pdlLogMessage = TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ);
-
-    assertThrows(
-        CamelExecutionException.class,
-        () ->
-            producerTemplate.sendBodyAndHeaders(
-                "direct:receiveAggregatedLogMessageEndpoint",
-                Collections.singletonList(pdlLogMessage),
-                ImmutableMap.of()));
+    producerTemplate.sendBodyAndHeaders(
+        "direct:receiveAggregatedLogMessageEndpoint",
+        Collections.singletonList(TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ)),
+        ImmutableMap.of());
 
     assertIsSatisfied(logMessageSendProcessor);
     assertIsSatisfied(logMessagePermanentErrorHandlerEndpoint);
     assertIsSatisfied(logMessageTemporaryErrorHandlerEndpoint);
+    assertIsSatisfied(logMessageRetryEndpoint);
   }
 
   @Test
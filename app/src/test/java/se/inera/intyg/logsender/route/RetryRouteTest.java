@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.route;
+
+import static org.apache.camel.component.mock.MockEndpoint.assertIsSatisfied;
+
+import java.util.Map;
+import org.apache.camel.CamelContext;
+import org.apache.camel.EndpointInject;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.AdviceWith;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import se.inera.intyg.logsender.exception.TemporaryException;
+import se.inera.intyg.logsender.helper.TestDataHelper;
+import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.service.BatchRetryPolicy;
+import se.inera.intyg.logsender.testconfig.UnitTestConfig;
+
+// The retry queue is a queue on the embedded broker, which assigns each retry a new JMSMessageID.
+// The broker has no schedulerSupport, so retries are delivered without the backoff delay.
+@SpringBootTest(classes = UnitTestConfig.class)
+@ActiveProfiles({"test", "testability"})
+@TestPropertySource(properties = "app.queue.retry.endpoint=" + RetryRouteTest.RETRY_ENDPOINT)
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+class RetryRouteTest {
+
+  static final String RETRY_ENDPOINT = "activemq:queue:test.aggregated.log.retry.queue";
+  private static final String BATCH_ID = "ID:aggregated-queue-1:1:1:1:1";
+  private static final int MAX_ATTEMPTS = 5;
+
+  @Autowired private CamelContext camelContext;
+
+  @Autowired private ProducerTemplate producerTemplate;
+
+  @EndpointInject("mock:bean:logMessageSendProcessor")
+  MockEndpoint logMessageSendProcessor;
+
+  @EndpointInject("mock:direct:newAggregatedLogMessageDLQ")
+  MockEndpoint aggregatedLogMessageDlq;
+
+  @BeforeEach
+  void setup() throws Exception {
+    MockEndpoint.resetMocks(camelContext);
+    AdviceWith.adviceWith(
+        camelContext,
+        "aggregatedJmsToSenderRoute",
+        in -> in.mockEndpointsAndSkip("bean:logMessageSendProcessor"));
+    AdviceWith.adviceWith(
+        camelContext,
+        "retryJmsToSenderRoute",
+        in -> in.mockEndpointsAndSkip("bean:logMessageSendProcessor"));
+    AdviceWith.adviceWith(
+        camelContext,
+        "retriesExhaustedLogging",
+        in -> in.mockEndpointsAndSkip("direct:newAggregatedLogMessageDLQ"));
+    camelContext.start();
+  }
+
+  @Test
+  void testRetryIsSentWithIdOfOriginalBatch() throws InterruptedException {
+    logMessageSendProcessor.expectedMessageCount(1);
+    logMessageSendProcessor.expectedHeaderReceived("JMSMessageID", BATCH_ID);
+    aggregatedLogMessageDlq.expectedMessageCount(0);
+
+    producerTemplate.sendBodyAndHeaders(
+        RETRY_ENDPOINT,
+        batch(),
+        Map.of(BatchRetryPolicy.ATTEMPT, 1, BatchRetryPolicy.BATCH_ID, BATCH_ID));
+
+    assertIsSatisfied(logMessageSendProcessor);
+    assertIsSatisfied(aggregatedLogMessageDlq);
+  }
+
+  @Test
+  void testFailedRetryIsRescheduled() throws InterruptedException {
+    logMessageSendProcessor.whenExchangeReceived(
+        1,
+        exchange -> {
+          throw new TemporaryException("");
+        });
+    logMessageSendProcessor.expectedMessageCount(2);
+    logMessageSendProcessor.message(1).header(BatchRetryPolicy.ATTEMPT).isEqualTo(2);
+    logMessageSendProcessor.allMessages().header("JMSMessageID").isEqualTo(BATCH_ID);
+    aggregatedLogMessageDlq.expectedMessageCount(0);
+
+    producerTemplate.sendBodyAndHeaders(
+        RETRY_ENDPOINT,
+        batch(),
+        Map.of(BatchRetryPolicy.ATTEMPT, 1, BatchRetryPolicy.BATCH_ID, BATCH_ID));
+
+    assertIsSatisfied(logMessageSendProcessor);
+    assertIsSatisfied(aggregatedLogMessageDlq);
+  }
+
+  @Test
+  void testBatchIsMovedToDlqWhenRetriesAreExhausted() throws InterruptedException {
+    logMessageSendProcessor.whenAnyExchangeReceived(
+        exchange -> {
+          throw new TemporaryException("");
+        });
+    // The first attempt on the aggregated queue and then every retry
+    logMessageSendProcessor.expectedMessageCount(1 + MAX_ATTEMPTS);
+    logMessageSendProcessor.allMessages().header("JMSMessageID").isEqualTo(BATCH_ID);
+    aggregatedLogMessageDlq.expectedMessageCount(1);
+    aggregatedLogMessageDlq.expectedHeaderReceived(BatchRetryPolicy.ATTEMPT, MAX_ATTEMPTS);
+    aggregatedLogMessageDlq.expectedHeaderReceived("JMSMessageID", BATCH_ID);
+    aggregatedLogMessageDlq.message(0).header(BatchRetryPolicy.SCHEDULED_DELAY).isNull();
+
+    producerTemplate.sendBodyAndHeader(
+        "direct:receiveAggregatedLogMessageEndpoint", batch(), "JMSMessageID", BATCH_ID);
+
+    assertIsSatisfied(logMessageSendProcessor);
+    assertIsSatisfied(aggregatedLogMessageDlq);
+  }
+
+  private static String batch() {
+    return "[" + TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ) + "]";
+  }
+}
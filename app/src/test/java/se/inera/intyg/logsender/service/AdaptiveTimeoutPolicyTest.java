@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.Timeout;
+
+class AdaptiveTimeoutPolicyTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void shouldUseMaxReceiveTimeoutWhenDisabled() {
+    final var policy = buildPolicy(false, 1);
+
+    policy.record(100, 10);
+
+    assertEquals(60000, policy.receiveTimeout(10));
+  }
+
+  @Test
+  void shouldUseMaxReceiveTimeoutUntilMinSamples() {
+    final var policy = buildPolicy(true, 3);
+
+    policy.record(1000, 10);
+    policy.record(1000, 10);
+
+    assertEquals(60000, policy.receiveTimeout(10));
+  }
+
+  @Test
+  void shouldDeriveReceiveTimeoutFromP99Latency() {
+    final var policy = buildPolicy(true, 3);
+
+    for (int i = 1; i <= 100; i++) {
+      policy.record(i * 10L, 10);
+    }
+
+    assertEquals(2970, policy.receiveTimeout(10));
+    assertEquals(2970.0, meterRegistry.get("logsender.storelog.receive.timeout").gauge().value());
+  }
+
+  @Test
+  void shouldScaleReceiveTimeoutByBatchSize() {
+    final var policy = buildPolicy(true, 3);
+
+    for (int i = 0; i < 5; i++) {
+      policy.record(1000, 10);
+    }
+
+    assertEquals(3000, policy.receiveTimeout(5));
+    assertEquals(6000, policy.receiveTimeout(20));
+    assertEquals(3000, policy.receiveTimeout(0));
+  }
+
+  @Test
+  void shouldKeepReceiveTimeoutWithinBounds() {
+    final var policy = buildPolicy(true, 1);
+
+    policy.record(10, 10);
+    assertEquals(2000, policy.receiveTimeout(10));
+
+    policy.record(50000, 10);
+    assertEquals(60000, policy.receiveTimeout(10));
+  }
+
+  @Test
+  void shouldOnlyKeepLatestWindow() {
+    final var policy = buildPolicy(true, 1);
+
+    for (int i = 0; i < 100; i++) {
+      policy.record(10000, 10);
+    }
+    for (int i = 0; i < 100; i++) {
+      policy.record(1000, 10);
+    }
+
+    assertEquals(3000, policy.receiveTimeout(10));
+  }
+
+  @Test
+  void shouldGrowReceiveTimeoutWhenLatencyRisesAboveIt() {
+    final var policy = buildPolicy(true, 1);
+    for (int i = 0; i < 100; i++) {
+      policy.record(1000, 10);
+    }
+    assertEquals(3000, policy.receiveTimeout(10));
+
+    // Latency rises to 5000 ms, so calls time out at the current receive timeout
+    policy.recordTimeout(policy.receiveTimeout(10), 10);
+    assertEquals(3000, policy.receiveTimeout(10));
+    policy.recordTimeout(policy.receiveTimeout(10), 10);
+    assertEquals(9000, policy.receiveTimeout(10));
+
+    for (int i = 0; i < 100; i++) {
+      policy.record(5000, 10);
+    }
+    assertEquals(15000, policy.receiveTimeout(10));
+  }
+
+  private AdaptiveTimeoutPolicy buildPolicy(boolean adaptive, int minSamples) {
+    return new AdaptiveTimeoutPolicy(
+        logsenderProperties()
+            .timeout(new Timeout(adaptive, 5000L, 2000L, 60000L, 3.0, 100, minSamples))
+            .build(),
+        meterRegistry);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.Drain;
+
+class BacklogDrainModeTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private BacklogDrainMode backlogDrainMode;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    backlogDrainMode =
+        new BacklogDrainMode(logsenderProperties().drain(drain()).build(), meterRegistry);
+  }
+
+  @Test
+  void shouldSwitchOnAtStartDepth() {
+    assertFalse(backlogDrainMode.update(99, 0));
+    assertFalse(backlogDrainMode.isActive());
+
+    assertTrue(backlogDrainMode.update(100, 0));
+    assertTrue(backlogDrainMode.isActive());
+    assertEquals(1.0, meterRegistry.get("logsender.drain.active").gauge().value());
+    assertEquals(100.0, meterRegistry.get("logsender.drain.queue.depth").gauge().value());
+  }
+
+  @Test
+  void shouldStayOnUntilStopDepth() {
+    backlogDrainMode.update(100, 0);
+
+    assertFalse(backlogDrainMode.update(50, 0));
+    assertTrue(backlogDrainMode.isActive());
+
+    assertFalse(backlogDrainMode.update(10, 0));
+    assertFalse(backlogDrainMode.isActive());
+  }
+
+  @Test
+  void shouldStayOffForCheckIntervalAfterFailure() {
+    backlogDrainMode.update(100, 0);
+
+    backlogDrainMode.failed(1000);
+
+    assertFalse(backlogDrainMode.isActive());
+    assertFalse(backlogDrainMode.update(100, 10999));
+    backlogDrainMode.batchSent();
+    assertFalse(backlogDrainMode.update(100, 10999));
+    assertTrue(backlogDrainMode.update(100, 11000));
+  }
+
+  @Test
+  void shouldStayOffAfterFailureUntilRegularRouteSendsBatch() {
+    backlogDrainMode.update(100, 0);
+
+    backlogDrainMode.failed(1000);
+
+    assertFalse(backlogDrainMode.update(100, 11000));
+    assertFalse(backlogDrainMode.update(100, 60000));
+    assertFalse(backlogDrainMode.isActive());
+
+    backlogDrainMode.batchSent();
+
+    assertTrue(backlogDrainMode.update(100, 60000));
+    assertTrue(backlogDrainMode.isActive());
+  }
+
+  @Test
+  void shouldResolveQueueNameOfEndpoint() {
+    assertEquals("aggregated", BacklogDrainer.queueName("activemq:queue:aggregated"));
+    assertEquals(
+        "aggregated", BacklogDrainer.queueName("activemq:queue:aggregated?concurrentConsumers=2"));
+    assertEquals("aggregated", BacklogDrainer.queueName("jms:aggregated"));
+  }
+
+  private static Drain drain() {
+    return new Drain(true, 100L, 10L, 50, 4, 10000L);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.ConnectionFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import se.inera.intyg.logsender.exception.BatchValidationException;
+import se.inera.intyg.logsender.exception.TemporaryException;
+
+@ExtendWith(MockitoExtension.class)
+class BacklogDrainerTest {
+
+  private static final byte[] FIRST = "[\"first\"]".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] REJECTED = "[\"rejected\"]".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] THIRD = "[\"third\"]".getBytes(StandardCharsets.UTF_8);
+
+  @Mock private LogMessageSendProcessor logMessageSendProcessor;
+  @Mock private BacklogDrainMode backlogDrainMode;
+  @Mock private ConnectionFactory connectionFactory;
+  @Mock private PlatformTransactionManager transactionManager;
+
+  private BacklogDrainer backlogDrainer;
+
+  @BeforeEach
+  void setUp() {
+    backlogDrainer =
+        spy(
+            new BacklogDrainer(
+                logsenderProperties().build(),
+                backlogDrainMode,
+                logMessageSendProcessor,
+                connectionFactory,
+                transactionManager,
+                new SimpleMeterRegistry()));
+  }
+
+  @Test
+  void shouldSendMergedBatchesOnce() throws Exception {
+    backlogDrainer.send(List.of(FIRST, THIRD));
+
+    verify(logMessageSendProcessor).processMerged(List.of(FIRST, THIRD));
+    verify(logMessageSendProcessor, never()).process(any(), any());
+  }
+
+  @Test
+  void shouldMoveOnlyRejectedBatchToDlqWhenMergedBatchesAreRejected() throws Exception {
+    doThrow(new BatchValidationException("rejected"))
+        .when(logMessageSendProcessor)
+        .processMerged(anyList());
+    doThrow(new BatchValidationException("rejected"))
+        .when(logMessageSendProcessor)
+        .process(REJECTED, null);
+    doNothing().when(backlogDrainer).deadLetter(any());
+
+    backlogDrainer.send(List.of(FIRST, REJECTED, THIRD));
+
+    verify(logMessageSendProcessor).process(FIRST, null);
+    verify(logMessageSendProcessor).process(THIRD, null);
+    verify(backlogDrainer).deadLetter(REJECTED);
+    verify(backlogDrainer, never()).deadLetter(FIRST);
+    verify(backlogDrainer, never()).deadLetter(THIRD);
+  }
+
+  @Test
+  void shouldRollBackWhenMergedBatchesFailTemporarily() throws Exception {
+    doThrow(new TemporaryException("unavailable"))
+        .when(logMessageSendProcessor)
+        .processMerged(anyList());
+
+    assertThrows(IllegalStateException.class, () -> backlogDrainer.send(List.of(FIRST, THIRD)));
+
+    verify(logMessageSendProcessor, never()).process(any(), any());
+  }
+
+  @Test
+  void shouldRollBackWhenBatchFailsTemporarilyOneByOne() throws Exception {
+    doThrow(new BatchValidationException("rejected"))
+        .when(logMessageSendProcessor)
+        .processMerged(anyList());
+    doThrow(new TemporaryException("unavailable"))
+        .when(logMessageSendProcessor)
+        .process(THIRD, null);
+
+    assertThrows(IllegalStateException.class, () -> backlogDrainer.send(List.of(FIRST, THIRD)));
+
+    verify(backlogDrainer, never()).deadLetter(any());
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2026 Inera AB (http://www.inera.se)
+ *
+ * This file is part of sklintyg (https://github.com/sklintyg).
+ *
+ * sklintyg is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * sklintyg is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.inera.intyg.logsender.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.inera.intyg.logsender.config.LogsenderProperties.Retry;
+
+class BatchRetryPolicyTest {
+
+  private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+  private SimpleMeterRegistry meterRegistry;
+  private BatchRetryPolicy batchRetryPolicy;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    batchRetryPolicy =
+        new BatchRetryPolicy(
+            logsenderProperties().retry(new Retry("direct:retry", 2, 3, 1000L, 2.0, 3000L)).build(),
+            meterRegistry);
+  }
+
+  @Test
+  void shouldBackOffExponentiallyUpToMaxDelay() {
+    assertEquals(1000, batchRetryPolicy.delay(1));
+    assertEquals(2000, batchRetryPolicy.delay(2));
+    assertEquals(3000, batchRetryPolicy.delay(3));
+    assertEquals(3000, batchRetryPolicy.delay(10));
+  }
+
+  @Test
+  void shouldCountAttemptsWhenScheduling() {
+    final var exchange = exchange();
+
+    batchRetryPolicy.schedule(exchange);
+    assertEquals(1, exchange.getMessage().getHeader(BatchRetryPolicy.ATTEMPT));
+    assertEquals(1000L, exchange.getMessage().getHeader(BatchRetryPolicy.SCHEDULED_DELAY));
+
+    batchRetryPolicy.schedule(exchange);
+    assertEquals(2, exchange.getMessage().getHeader(BatchRetryPolicy.ATTEMPT));
+    assertEquals(2000L, exchange.getMessage().getHeader(BatchRetryPolicy.SCHEDULED_DELAY));
+    assertEquals(2.0, meterRegistry.get("logsender.retry.scheduled").counter().count());
+  }
+
+  @Test
+  void shouldKeepOriginalBatchIdAndEnqueueTime() {
+    final var exchange = exchange();
+    exchange.getMessage().setHeader("JMSMessageID", "ID:first");
+    exchange.getMessage().setHeader("JMSTimestamp", 1000L);
+
+    batchRetryPolicy.schedule(exchange);
+    exchange.getMessage().setHeader("JMSMessageID", "ID:retry");
+    exchange.getMessage().setHeader("JMSTimestamp", 5000L);
+    batchRetryPolicy.schedule(exchange);
+
+    assertEquals("ID:first", exchange.getMessage().getHeader(BatchRetryPolicy.BATCH_ID));
+    assertEquals(1000L, exchange.getMessage().getHeader(BatchRetryPolicy.FIRST_ENQUEUED));
+  }
+
+  @Test
+  void shouldRunOutOfAttemptsAtMaxAttempts() {
+    final var exchange = exchange();
+
+    assertTrue(batchRetryPolicy.hasAttemptsLeft(exchange));
+    exchange.getMessage().setHeader(BatchRetryPolicy.ATTEMPT, 2);
+    assertTrue(batchRetryPolicy.hasAttemptsLeft(exchange));
+    exchange.getMessage().setHeader(BatchRetryPolicy.ATTEMPT, 3);
+    assertFalse(batchRetryPolicy.hasAttemptsLeft(exchange));
+  }
+
+  @Test
+  void shouldDetectRetryDeliveredBeforeItsDelay() {
+    final var exchange = exchange();
+    assertFalse(batchRetryPolicy.arrivedEarly(exchange));
+
+    exchange.getMessage().setHeader(BatchRetryPolicy.NOT_BEFORE, 0L);
+    assertFalse(batchRetryPolicy.arrivedEarly(exchange));
+
+    batchRetryPolicy.schedule(exchange);
+    assertTrue(batchRetryPolicy.arrivedEarly(exchange));
+  }
+
+  @Test
+  void shouldRecordFirstAttemptAndRetryLatencySeparately() {
+    batchRetryPolicy.recordFirstAttempt(exchange());
+    batchRetryPolicy.recordFirstAttempt(exchange());
+    batchRetryPolicy.recordRetry(exchange());
+
+    assertEquals(
+        2, meterRegistry.get("logsender.batch.latency").tag("pipeline", "first").timer().count());
+    assertEquals(
+        1, meterRegistry.get("logsender.batch.latency").tag("pipeline", "retry").timer().count());
+  }
+
+  private Exchange exchange() {
+    return new DefaultExchange(camelContext);
+  }
+}
@@ -20,82 +20,133 @@ package se.inera.intyg.logsender.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
 
-import java.util.ArrayList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
 import org.apache.camel.Exchange;
-import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import se.inera.intyg.logsender.aggregation.AggregationMemoryBudget;
+import se.inera.intyg.logsender.aggregation.BatchBufferPool;
+import se.inera.intyg.logsender.aggregation.LogMessageBatchBuffer;
+import se.inera.intyg.logsender.config.LogsenderProperties.Buffer;
+import se.inera.intyg.logsender.config.LogsenderProperties.MemoryBudget;
 import se.inera.intyg.logsender.exception.PermanentException;
 import se.inera.intyg.logsender.helper.TestDataHelper;
 import se.inera.intyg.logsender.model.ActivityType;
+import tools.jackson.core.type.TypeReference;
 
 @ExtendWith(MockitoExtension.class)
 class LogMessageAggregationProcessorTest {
 
   private LogMessageAggregationProcessor logMessageAggregationProcessor;
+  private SimpleMeterRegistry meterRegistry;
+  private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+  private BatchBufferPool batchBufferPool;
+  private AggregationMemoryBudget memoryBudget;
 
   @BeforeEach
   void setUp() {
-    logMessageAggregationProcessor = new LogMessageAggregationProcessor(OBJECT_MAPPER);
+    meterRegistry = new SimpleMeterRegistry();
+    logMessageAggregationProcessor = new LogMessageAggregationProcessor(meterRegistry);
+    final var properties =
+        logsenderProperties()
+            .maxBatchBytes(1048576L)
+            .buffer(new Buffer(1024, 2, false))
+            .memoryBudget(new MemoryBudget(67108864L, 33554432L))
+            .build();
+    memoryBudget = new AggregationMemoryBudget(properties, meterRegistry);
+    batchBufferPool = new BatchBufferPool(properties, memoryBudget);
   }
 
   @Test
   void testOkGroupedExchange() throws Exception {
-    final var body = logMessageAggregationProcessor.process(buildGroupedExchange(1, 1));
-    final var output = OBJECT_MAPPER.readValue(body, ArrayList.class);
+    final var body = logMessageAggregationProcessor.process(buildAggregatedExchange(1, 1));
+    final var output = OBJECT_MAPPER.readValue(body, new TypeReference<List<String>>() {});
     assertEquals(1, output.size());
   }
 
   @Test
   void testGroupedExchangeWithMultipleResources() throws Exception {
-    final var body = logMessageAggregationProcessor.process(buildGroupedExchange(3, 5));
-    final var output = OBJECT_MAPPER.readValue(body, ArrayList.class);
+    final var body = logMessageAggregationProcessor.process(buildAggregatedExchange(3, 5));
+    final var output = OBJECT_MAPPER.readValue(body, new TypeReference<List<String>>() {});
     assertEquals(3, output.size());
   }
 
+  @Test
+  void testBatchSizeIsRecorded() throws Exception {
+    final var body = logMessageAggregationProcessor.process(buildAggregatedExchange(3, 1));
+    final var summary = meterRegistry.get("logsender.aggregation.batch.size").summary();
+    assertEquals(1, summary.count());
+    assertEquals(body.length, summary.totalAmount());
+  }
+
   @Test
   void testEmptyGroupedExchange() {
     assertThrows(
         PermanentException.class,
-        () -> logMessageAggregationProcessor.process(buildGroupedExchange(0, 1)));
+        () -> logMessageAggregationProcessor.process(buildAggregatedExchange(0, 1)));
+  }
+
+  @Test
+  void testEmptyGroupedExchangeReleasesBatch() {
+    final var batch = mock(LogMessageBatchBuffer.class);
+    when(batch.isEmpty()).thenReturn(true);
+    final var exchange = buildAggregatedExchange(batch);
+
+    assertThrows(PermanentException.class, () -> logMessageAggregationProcessor.process(exchange));
+    verify(batch).releaseBuffer();
+
+    complete(exchange);
+    verify(batch).release();
   }
 
-  private Exchange buildGroupedExchange(int exchangeSize, int resourcesPerMessageSize) {
-    final var exchange = mock(Exchange.class);
-    final var outerMessage = buildOuterMsg(exchangeSize, resourcesPerMessageSize);
-    when(exchange.getIn()).thenReturn(outerMessage);
+  @Test
+  void testMemoryBudgetIsHeldUntilExchangeIsDone() throws Exception {
+    final var exchange = buildAggregatedExchange(3, 1);
+
+    logMessageAggregationProcessor.process(exchange);
+    assertTrue(memoryBudget.pendingBytes() > 0);
+
+    complete(exchange);
+    assertEquals(0L, memoryBudget.pendingBytes());
+  }
+
+  private Exchange buildAggregatedExchange(int exchangeSize, int resourcesPerMessageSize) {
+    return buildAggregatedExchange(buildBatch(exchangeSize, resourcesPerMessageSize));
+  }
+
+  private Exchange buildAggregatedExchange(LogMessageBatchBuffer batch) {
+    final var exchange = new DefaultExchange(camelContext);
+    exchange.getIn().setBody(batch);
     return exchange;
   }
 
-  private Message buildOuterMsg(int exchangeSize, int resourcesPerMessageSize) {
-    final var outerMsg = mock(Message.class);
-    final var outerBody = buildOuterBody(exchangeSize, resourcesPerMessageSize);
-    when(outerMsg.getBody(List.class)).thenReturn(outerBody);
-    return outerMsg;
+  // Runs the completions a unit of work would run once the batch has been sent
+  private static void complete(Exchange exchange) {
+    exchange
+        .getExchangeExtension()
+        .handoverCompletions()
+        .forEach(synchronization -> synchronization.onComplete(exchange));
   }
 
-  private List<Exchange> buildOuterBody(int exchangeSize, int resourcesPerMessageSize) {
-    List<Exchange> groupedMessages = new ArrayList<>();
+  private LogMessageBatchBuffer buildBatch(int exchangeSize, int resourcesPerMessageSize) {
+    final var batch = batchBufferPool.newBatch();
     for (int i = 0; i < exchangeSize; i++) {
-      final var innerExchange = mock(Exchange.class);
-      final var innerMessage = buildInnerMessage(resourcesPerMessageSize);
-      when(innerExchange.getIn()).thenReturn(innerMessage);
-      groupedMessages.add(innerExchange);
+      batch.append(pdlLogMessageJson(resourcesPerMessageSize));
     }
-    return groupedMessages;
-  }
-
-  private Message buildInnerMessage(int resourcesPerMessageSize) {
-    final var innerMessage = mock(Message.class);
-    when(innerMessage.getBody()).thenReturn(pdlLogMessageJson(resourcesPerMessageSize));
-    return innerMessage;
+    return batch;
   }
 
   private String pdlLogMessageJson(int resourcesPerMessageSize) {
@@ -18,30 +18,50 @@
  */
 package se.inera.intyg.logsender.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
+import static se.inera.intyg.logsender.helper.TestDataHelper.PIPELINE_JSON_CODEC;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.xml.ws.WebServiceException;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import se.inera.intyg.logsender.client.LogSenderClient;
+import se.inera.intyg.logsender.client.StoreLogPayload;
+import se.inera.intyg.logsender.client.StoreLogPayloadCache;
+import se.inera.intyg.logsender.config.LogsenderProperties.Coalesce;
+import se.inera.intyg.logsender.config.LogsenderProperties.Conversion;
+import se.inera.intyg.logsender.config.LogsenderProperties.ConversionMode;
+import se.inera.intyg.logsender.config.LogsenderProperties.FragmentCache;
+import se.inera.intyg.logsender.converter.EnhetTypeCache;
+import se.inera.intyg.logsender.converter.LogTypeCoalescer;
 import se.inera.intyg.logsender.converter.LogTypeFactoryImpl;
+import se.inera.intyg.logsender.converter.ParallelLogTypeConverter;
+import se.inera.intyg.logsender.converter.StreamingLogTypeReader;
 import se.inera.intyg.logsender.exception.BatchValidationException;
 import se.inera.intyg.logsender.exception.LoggtjanstExecutionException;
 import se.inera.intyg.logsender.exception.TemporaryException;
 import se.inera.intyg.logsender.helper.TestDataHelper;
 import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.PdlLogMessage;
 import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
 import se.riv.informationsecurity.auditing.log.v2.ResultCodeType;
 import se.riv.informationsecurity.auditing.log.v2.ResultType;
 
@@ -52,18 +72,19 @@ class LogMessageSendProcessorTest {
 
   @Spy private LogTypeFactoryImpl logTypeFactory;
 
+  @Captor private ArgumentCaptor<List<LogType>> logTypesCaptor;
+
   private LogMessageSendProcessor logMessageSendProcessor;
 
   @BeforeEach
   void setUp() {
-    logMessageSendProcessor =
-        new LogMessageSendProcessor(logSenderClient, logTypeFactory, OBJECT_MAPPER);
+    logMessageSendProcessor = buildSendProcessor(false, ConversionMode.MODEL);
   }
 
   @Test
   void testSendLogMessagesWhenAllOk() throws Exception {
     when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.OK));
-    logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsString(buildGroupedMessages()));
+    logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
     verify(logSenderClient, times(1)).sendLogMessage(anyList());
   }
 
@@ -73,7 +94,7 @@ class LogMessageSendProcessorTest {
         BatchValidationException.class,
         () -> {
           logMessageSendProcessor.process(
-              OBJECT_MAPPER.writeValueAsString(buildInvalidGroupedMessages()));
+              OBJECT_MAPPER.writeValueAsBytes(buildInvalidGroupedMessages()), null);
         });
   }
 
@@ -84,7 +105,8 @@ class LogMessageSendProcessorTest {
     assertThrows(
         BatchValidationException.class,
         () -> {
-          logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsString(buildGroupedMessages()));
+          logMessageSendProcessor.process(
+              OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
         });
   }
 
@@ -96,14 +118,15 @@ class LogMessageSendProcessorTest {
     assertThrows(
         BatchValidationException.class,
         () -> {
-          logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsString(buildGroupedMessages()));
+          logMessageSendProcessor.process(
+              OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
         });
   }
 
   @Test
   void testSendLogMessagesDoesNothingWhenInfoIsReturned() throws Exception {
     when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.INFO));
-    logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsString(buildGroupedMessages()));
+    logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
     verify(logSenderClient, times(1)).sendLogMessage(anyList());
   }
 
@@ -115,7 +138,8 @@ class LogMessageSendProcessorTest {
     assertThrows(
         BatchValidationException.class,
         () -> {
-          logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsString(buildGroupedMessages()));
+          logMessageSendProcessor.process(
+              OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
         });
 
     verify(logSenderClient, times(1)).sendLogMessage(anyList());
@@ -129,7 +153,8 @@ class LogMessageSendProcessorTest {
     assertThrows(
         TemporaryException.class,
         () -> {
-          logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsString(buildGroupedMessages()));
+          logMessageSendProcessor.process(
+              OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
         });
 
     verify(logSenderClient, times(1)).sendLogMessage(anyList());
@@ -142,12 +167,211 @@ class LogMessageSendProcessorTest {
     assertThrows(
         TemporaryException.class,
         () -> {
-          logMessageSendProcessor.process(OBJECT_MAPPER.writeValueAsString(buildGroupedMessages()));
+          logMessageSendProcessor.process(
+              OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
         });
 
     verify(logSenderClient, times(1)).sendLogMessage(anyList());
   }
 
+  @Test
+  void testSendLogMessagesSendsOneLogTypePerResource() throws Exception {
+    when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.OK));
+
+    logMessageSendProcessor.process(
+        OBJECT_MAPPER.writeValueAsBytes(
+            List.of(
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ, 3),
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.PRINT))), null);
+
+    verify(logSenderClient).sendLogMessage(logTypesCaptor.capture());
+    assertEquals(4, logTypesCaptor.getValue().size());
+  }
+
+  @Test
+  void testSendMergedBatchesAsOneBatch() throws Exception {
+    when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.OK));
+
+    logMessageSendProcessor.processMerged(
+        List.of(
+            OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()),
+            OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages())));
+
+    verify(logSenderClient).sendLogMessage(logTypesCaptor.capture());
+    assertEquals(4, logTypesCaptor.getValue().size());
+  }
+
+  @Test
+  void testSendMergedBatchesThrowsBatchValidationExceptionWhenOneBatchIsInvalid() {
+    assertThrows(
+        BatchValidationException.class,
+        () ->
+            logMessageSendProcessor.processMerged(
+                List.of(
+                    OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()),
+                    OBJECT_MAPPER.writeValueAsBytes(buildInvalidGroupedMessages()))));
+    verify(logSenderClient, never()).sendLogMessage(anyList());
+  }
+
+  @Test
+  void testSendLogMessagesCoalescesCompatibleEntries() throws Exception {
+    when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.OK));
+    final var processor = buildSendProcessor(true, ConversionMode.MODEL);
+
+    processor.process(
+        OBJECT_MAPPER.writeValueAsBytes(
+            List.of(
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ, 3),
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.PRINT))), null);
+
+    verify(logSenderClient).sendLogMessage(logTypesCaptor.capture());
+    assertEquals(2, logTypesCaptor.getValue().size());
+    assertEquals(3, logTypesCaptor.getValue().getFirst().getResources().getResource().size());
+  }
+
+  @Test
+  void testSendLogMessagesWithStreamingConversion() throws Exception {
+    when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.OK));
+    final var processor = buildSendProcessor(false, ConversionMode.STREAMING);
+
+    processor.process(
+        OBJECT_MAPPER.writeValueAsBytes(
+            List.of(
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ, 3),
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.PRINT))), null);
+
+    verify(logSenderClient).sendLogMessage(logTypesCaptor.capture());
+    assertEquals(4, logTypesCaptor.getValue().size());
+  }
+
+  @Test
+  void testSendLogMessagesWithStreamingConversionThrowsBatchValidationExceptionForInvalidJson() {
+    final var processor = buildSendProcessor(false, ConversionMode.STREAMING);
+
+    assertThrows(
+        BatchValidationException.class,
+        () ->
+            processor.process(
+                OBJECT_MAPPER.writeValueAsBytes(buildInvalidGroupedMessages()), null));
+  }
+
+  @Test
+  void testSendLogMessagesWithCompactConversion() throws Exception {
+    when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.OK));
+    final var processor = buildSendProcessor(false, ConversionMode.COMPACT);
+
+    processor.process(
+        OBJECT_MAPPER.writeValueAsBytes(
+            List.of(
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ, 3),
+                TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.PRINT))), null);
+
+    verify(logSenderClient).sendLogMessage(logTypesCaptor.capture());
+    assertEquals(4, logTypesCaptor.getValue().size());
+  }
+
+  @Test
+  void testSendLogMessagesWithCompactConversionThrowsBatchValidationExceptionForInvalidJson() {
+    final var processor = buildSendProcessor(false, ConversionMode.COMPACT);
+
+    assertThrows(
+        BatchValidationException.class,
+        () ->
+            processor.process(
+                OBJECT_MAPPER.writeValueAsBytes(buildInvalidGroupedMessages()), null));
+  }
+
+  @Test
+  void testSendLogMessagesResendsCachedPayloadOnRedelivery() throws Exception {
+    final var payload = new StoreLogPayload("<payload/>".getBytes(), 1);
+    final var processor = buildSendProcessor(false, ConversionMode.MODEL, true);
+    when(logSenderClient.toPayload(anyList())).thenReturn(payload);
+    when(logSenderClient.sendPayload(payload))
+        .thenThrow(new LoggtjanstExecutionException(null))
+        .thenReturn(buildResponse(ResultCodeType.OK));
+    final var batch = OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages());
+
+    assertThrows(TemporaryException.class, () -> processor.process(batch, "batch-1"));
+    processor.process(batch, "batch-1");
+
+    verify(logSenderClient, times(1)).toPayload(anyList());
+    verify(logSenderClient, times(2)).sendPayload(payload);
+    verify(logSenderClient, never()).sendLogMessage(anyList());
+    verify(logTypeFactory, times(2))
+        .convertPerResource(any(PdlLogMessage.class), any(EnhetTypeCache.class));
+  }
+
+  @Test
+  void testSendLogMessagesKeepsCachedPayloadWhenResultIsRetryable() throws Exception {
+    final var payload = new StoreLogPayload("<payload/>".getBytes(), 1);
+    final var processor = buildSendProcessor(false, ConversionMode.MODEL, true);
+    when(logSenderClient.toPayload(anyList())).thenReturn(payload);
+    when(logSenderClient.sendPayload(payload))
+        .thenReturn(buildResponse(null))
+        .thenReturn(buildResponse(ResultCodeType.OK));
+    final var batch = OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages());
+
+    assertThrows(TemporaryException.class, () -> processor.process(batch, "batch-1"));
+    processor.process(batch, "batch-1");
+
+    verify(logSenderClient, times(1)).toPayload(anyList());
+    verify(logSenderClient, times(2)).sendPayload(payload);
+    verify(logTypeFactory, times(2))
+        .convertPerResource(any(PdlLogMessage.class), any(EnhetTypeCache.class));
+  }
+
+  @Test
+  void testSendLogMessagesRemovesCachedPayloadWhenBatchIsRejected() throws Exception {
+    final var payload = new StoreLogPayload("<payload/>".getBytes(), 1);
+    final var processor = buildSendProcessor(false, ConversionMode.MODEL, true);
+    when(logSenderClient.toPayload(anyList())).thenReturn(payload);
+    when(logSenderClient.sendPayload(payload))
+        .thenReturn(buildResponse(ResultCodeType.VALIDATION_ERROR))
+        .thenReturn(buildResponse(ResultCodeType.OK));
+    final var batch = OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages());
+
+    assertThrows(BatchValidationException.class, () -> processor.process(batch, "batch-1"));
+    processor.process(batch, "batch-1");
+
+    verify(logSenderClient, times(2)).toPayload(anyList());
+  }
+
+  @Test
+  void testSendLogMessagesWithoutBatchIdDoesNotUseFragmentCache() throws Exception {
+    final var processor = buildSendProcessor(false, ConversionMode.MODEL, true);
+    when(logSenderClient.sendLogMessage(anyList())).thenReturn(buildResponse(ResultCodeType.OK));
+
+    processor.process(OBJECT_MAPPER.writeValueAsBytes(buildGroupedMessages()), null);
+
+    verify(logSenderClient, never()).toPayload(anyList());
+    verify(logSenderClient, times(1)).sendLogMessage(anyList());
+  }
+
+  private LogMessageSendProcessor buildSendProcessor(
+      boolean coalesce, ConversionMode conversionMode) {
+    return buildSendProcessor(coalesce, conversionMode, false);
+  }
+
+  private LogMessageSendProcessor buildSendProcessor(
+      boolean coalesce, ConversionMode conversionMode, boolean fragmentCache) {
+    final var properties =
+        logsenderProperties()
+            .coalesce(new Coalesce(coalesce, 100))
+            .conversion(new Conversion(conversionMode, 2, 2))
+            .streaming(fragmentCache)
+            .fragmentCache(new FragmentCache(fragmentCache, 10, 1024L * 1024))
+            .build();
+    return new LogMessageSendProcessor(
+        logSenderClient,
+        logTypeFactory,
+        new LogTypeCoalescer(properties, new SimpleMeterRegistry()),
+        new StreamingLogTypeReader(PIPELINE_JSON_CODEC),
+        new ParallelLogTypeConverter(properties),
+        PIPELINE_JSON_CODEC,
+        new StoreLogPayloadCache(properties, new SimpleMeterRegistry()),
+        properties);
+  }
+
   private StoreLogResponseType buildResponse(ResultCodeType resultCodeType) {
     final var responseType = new StoreLogResponseType();
     final var resultType = new ResultType();
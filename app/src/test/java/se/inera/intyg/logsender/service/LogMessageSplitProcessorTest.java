@@ -21,7 +21,14 @@ package se.inera.intyg.logsender.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static se.inera.intyg.logsender.helper.TestDataHelper.OBJECT_MAPPER;
+import static se.inera.intyg.logsender.helper.TestDataHelper.PIPELINE_JSON_CODEC;
+import static se.inera.intyg.logsender.helper.TestDataHelper.logsenderProperties;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 import org.apache.camel.Message;
 import org.apache.camel.impl.DefaultCamelContext;
 import org.apache.camel.support.DefaultMessage;
@@ -29,9 +36,23 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import se.inera.intyg.logsender.config.LogsenderProperties.Split;
+import se.inera.intyg.logsender.config.LogsenderProperties.SplitMode;
+import se.inera.intyg.logsender.converter.EnhetTypeCache;
+import se.inera.intyg.logsender.converter.LogTypeFactoryImpl;
+import se.inera.intyg.logsender.converter.PayloadFormat;
+import se.inera.intyg.logsender.converter.StreamingLogTypeReader;
 import se.inera.intyg.logsender.exception.PermanentException;
 import se.inera.intyg.logsender.helper.TestDataHelper;
+import se.inera.intyg.logsender.helper.ValueInclude;
 import se.inera.intyg.logsender.model.ActivityType;
+import se.inera.intyg.logsender.model.BatchStringInterner;
+import se.inera.intyg.logsender.model.CompactPdlLogMessage;
+import se.inera.intyg.logsender.model.PdlLogMessage;
+import se.inera.intyg.logsender.model.PdlResource;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
 
 @ExtendWith(MockitoExtension.class)
 class LogMessageSplitProcessorTest {
@@ -40,7 +61,7 @@ class LogMessageSplitProcessorTest {
 
   @BeforeEach
   void setUp() {
-    logMessageSplitProcessor = new LogMessageSplitProcessor(OBJECT_MAPPER);
+    logMessageSplitProcessor = buildSplitProcessor(SplitMode.PER_RESOURCE);
   }
 
   @Test
@@ -55,17 +76,258 @@ class LogMessageSplitProcessorTest {
     assertEquals(3, messages.size());
   }
 
+  @Test
+  void testRedeliveredMessageIsSplitIntoSameLogIds() throws Exception {
+    final var body = buildBody(3);
+
+    final var first = logIds(logMessageSplitProcessor.process(buildMessage(body)));
+    final var second = logIds(logMessageSplitProcessor.process(buildMessage(body)));
+
+    assertEquals(3, first.stream().distinct().count());
+    assertEquals(first, second);
+  }
+
+  @Test
+  void testResourcesGetSameLogIdsWhetherSplitOrNot() throws Exception {
+    final var body = buildBody(5);
+
+    final var unsplit = entryLogIds(List.of(buildMessage(body)));
+    final var perResource =
+        entryLogIds(buildSplitProcessor(SplitMode.PER_RESOURCE).process(buildMessage(body)));
+    final var perMessage =
+        entryLogIds(buildSplitProcessor(SplitMode.PER_MESSAGE).process(buildMessage(body)));
+
+    assertEquals(5, unsplit.stream().distinct().count());
+    assertEquals(unsplit, perResource);
+    assertEquals(unsplit, perMessage);
+  }
+
   @Test
   void testNoResource() {
     assertThrows(PermanentException.class, () -> logMessageSplitProcessor.process(buildMessage(0)));
   }
 
+  @Test
+  void testMultipleResourcesAreKeptWholeInPerMessageMode() throws Exception {
+    final var message = buildMessage(3);
+
+    final var messages = buildSplitProcessor(SplitMode.PER_MESSAGE).process(message);
+
+    assertEquals(List.of(message), messages);
+  }
+
+  @Test
+  void testResourcesAreChunkedInOrderInPerMessageMode() throws Exception {
+    final var original =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, 5, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
+    for (int i = 0; i < original.getPdlResourceList().size(); i++) {
+      original.getPdlResourceList().get(i).getPatient().setPatientNamn("Patient " + i);
+    }
+
+    final var messages =
+        buildSplitProcessor(SplitMode.PER_MESSAGE)
+            .process(buildMessage(OBJECT_MAPPER.writeValueAsString(original)));
+
+    final var chunks =
+        messages.stream()
+            .map(m -> OBJECT_MAPPER.readValue((String) m.getBody(), PdlLogMessage.class))
+            .toList();
+    assertEquals(List.of(2, 2, 1), chunks.stream().map(c -> c.getPdlResourceList().size()).toList());
+    assertEquals(
+        original.getPdlResourceList().stream().map(this::patientName).toList(),
+        chunks.stream()
+            .flatMap(c -> c.getPdlResourceList().stream())
+            .map(this::patientName)
+            .toList());
+  }
+
+  @Test
+  void testNoResourceInPerMessageMode() {
+    final var processor = buildSplitProcessor(SplitMode.PER_MESSAGE);
+    assertThrows(PermanentException.class, () -> processor.process(buildMessage(0)));
+  }
+
+  @Test
+  void testUtf8BytesArePassedOnAsIs() throws Exception {
+    final var message = buildMessage(buildBody(1).getBytes(StandardCharsets.UTF_8));
+
+    final var messages = logMessageSplitProcessor.process(message);
+
+    assertEquals(List.of(message), messages);
+  }
+
+  @Test
+  void testUtf8BytesAreSplit() throws Exception {
+    final var message = buildMessage(buildBody(3).getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(3, logIds(logMessageSplitProcessor.process(message)).size());
+  }
+
+  @Test
+  void testSmileIsPassedOnAsJson() throws Exception {
+    final var original = TestDataHelper.buildBasePdlLogMessage(ActivityType.READ);
+    final var message = buildMessage(SmileMapper.builder().build().writeValueAsBytes(original));
+    message.setHeader(PayloadFormat.CONTENT_TYPE_HEADER, PayloadFormat.SMILE.getContentType());
+
+    final var messages = logMessageSplitProcessor.process(message);
+
+    assertEquals(List.of(original.getLogId()), logIds(messages));
+  }
+
+  @Test
+  void testCborIsSplit() throws Exception {
+    final var original =
+        TestDataHelper.buildBasePdlLogMessage(
+            ActivityType.READ, 3, ValueInclude.INCLUDE, ValueInclude.INCLUDE);
+    final var message = buildMessage(CBORMapper.builder().build().writeValueAsBytes(original));
+    message.setHeader(PayloadFormat.CONTENT_TYPE_HEADER, "application/cbor; charset=binary");
+
+    final var messages = logMessageSplitProcessor.process(message);
+
+    assertEquals(3, logIds(messages).size());
+  }
+
+  @Test
+  void testGzippedJsonIsPassedOnAsJson() throws Exception {
+    final var body = buildBody(1);
+    final var message = buildMessage(gzip(body.getBytes(StandardCharsets.UTF_8)));
+    message.setHeader(PayloadFormat.CONTENT_ENCODING_HEADER, PayloadFormat.GZIP);
+
+    final var messages = logMessageSplitProcessor.process(message);
+
+    assertEquals(logIds(List.of(buildMessage(body))), logIds(messages));
+  }
+
+  @Test
+  void testUnsupportedContentType() {
+    final var message = buildMessage(1);
+    message.setHeader(PayloadFormat.CONTENT_TYPE_HEADER, "application/xml");
+
+    assertThrows(PermanentException.class, () -> logMessageSplitProcessor.process(message));
+  }
+
+  @Test
+  void testJsonArrayIsFannedOut() throws Exception {
+    final var messages =
+        logMessageSplitProcessor.process(
+            buildMessage("[" + buildBody(1) + ", " + buildBody(2) + "]"));
+
+    assertEquals(3, logIds(messages).stream().distinct().count());
+  }
+
+  @Test
+  void testSingleEntryJsonArrayIsPassedOnAsJsonObject() throws Exception {
+    final var body = buildBody(1);
+
+    final var messages = logMessageSplitProcessor.process(buildMessage("[" + body + "]"));
+
+    assertEquals(logIds(List.of(buildMessage(body))), logIds(messages));
+  }
+
+  @Test
+  void testNdjsonIsFannedOut() throws Exception {
+    final var ndjson = buildBody(1) + "\n" + buildBody(1) + "\n" + buildBody(1) + "\n";
+
+    final var messages =
+        buildSplitProcessor(SplitMode.PER_MESSAGE)
+            .process(buildMessage(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(3, logIds(messages).stream().distinct().count());
+  }
+
+  @Test
+  void testEntriesWithoutResourcesAreSkipped() throws Exception {
+    final var messages =
+        logMessageSplitProcessor.process(
+            buildMessage("[" + buildBody(0) + "," + buildBody(1) + "]"));
+
+    assertEquals(1, messages.size());
+  }
+
+  @Test
+  void testEmptyJsonArray() {
+    assertThrows(
+        PermanentException.class, () -> logMessageSplitProcessor.process(buildMessage("[]")));
+  }
+
+  private LogMessageSplitProcessor buildSplitProcessor(SplitMode splitMode) {
+    return new LogMessageSplitProcessor(
+        PIPELINE_JSON_CODEC, logsenderProperties().split(new Split(splitMode, 2)).build());
+  }
+
+  private String patientName(PdlResource resource) {
+    return resource.getPatient().getPatientNamn();
+  }
+
   private Message buildMessage(int numberOfResources) {
+    return buildMessage(buildBody(numberOfResources));
+  }
+
+  private Message buildMessage(String body) {
     final var msg = new DefaultMessage(new DefaultCamelContext());
-    msg.setBody(buildBody(numberOfResources));
+    msg.setBody(body);
     return msg;
   }
 
+  private Message buildMessage(byte[] body) {
+    final var msg = new DefaultMessage(new DefaultCamelContext());
+    msg.setBody(body);
+    return msg;
+  }
+
+  private byte[] gzip(byte[] bytes) throws IOException {
+    final var out = new ByteArrayOutputStream();
+    try (var gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    }
+    return out.toByteArray();
+  }
+
+  private List<String> logIds(List<Message> messages) {
+    return messages.stream()
+        .map(m -> OBJECT_MAPPER.readValue((String) m.getBody(), PdlLogMessage.class).getLogId())
+        .toList();
+  }
+
+  // The logIds of the entries the messages are converted into, by each of the conversion paths
+  private List<String> entryLogIds(List<Message> messages) {
+    final var logTypeFactory = new LogTypeFactoryImpl();
+    final var streamingLogTypeReader = new StreamingLogTypeReader(PIPELINE_JSON_CODEC);
+    final var compactReader =
+        PIPELINE_JSON_CODEC.compactPdlLogMessageReader(new BatchStringInterner());
+    final var jsons = messages.stream().map(m -> (String) m.getBody()).toList();
+
+    final var logIds =
+        jsons.stream()
+            .flatMap(
+                json ->
+                    logTypeFactory
+                        .convertPerResource(PIPELINE_JSON_CODEC.readPdlLogMessage(json))
+                        .stream())
+            .map(LogType::getLogId)
+            .toList();
+    assertEquals(
+        logIds,
+        jsons.stream()
+            .flatMap(json -> streamingLogTypeReader.readPerResource(json).stream())
+            .map(LogType::getLogId)
+            .toList());
+    assertEquals(
+        logIds,
+        jsons.stream()
+            .flatMap(
+                json ->
+                    logTypeFactory
+                        .convertPerResource(
+                            compactReader.<CompactPdlLogMessage>readValue(json),
+                            new EnhetTypeCache())
+                        .stream())
+            .map(LogType::getLogId)
+            .toList());
+    return logIds;
+  }
+
   private String buildBody(int numberOfResources) {
     return TestDataHelper.buildBasePdlLogMessageAsJson(ActivityType.READ, numberOfResources);
   }
@@ -19,22 +19,38 @@
 package se.inera.intyg.logsender.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
+import jakarta.xml.ws.BindingProvider;
+import jakarta.xml.ws.WebServiceException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import se.inera.intyg.logsender.client.StreamingStoreLogClient;
 import se.riv.informationsecurity.auditing.log.StoreLog.v2.rivtabp21.StoreLogResponderInterface;
 import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogResponseType;
 import se.riv.informationsecurity.auditing.log.StoreLogResponder.v2.StoreLogType;
+import se.riv.informationsecurity.auditing.log.v2.LogType;
 
 @ExtendWith(MockitoExtension.class)
 class SoapIntegrationServiceImplTest {
 
   @Mock StoreLogResponderInterface storeLogResponderInterface;
 
+  @Mock AdaptiveTimeoutPolicy adaptiveTimeoutPolicy;
+
   @InjectMocks SoapIntegrationServiceImpl soapIntegrationServiceImpl;
 
   @Test
@@ -46,4 +62,43 @@ class SoapIntegrationServiceImplTest {
 
     assertEquals(expected, soapIntegrationServiceImpl.storeLog("logicalAddress", request));
   }
+
+  @Test
+  void shouldRecordTimedOutCallWithItsReceiveTimeout() {
+    final var responder =
+        mock(
+            StoreLogResponderInterface.class,
+            withSettings().extraInterfaces(BindingProvider.class));
+    final var request = new StoreLogType();
+    request.getLog().add(new LogType());
+
+    when(((BindingProvider) responder).getRequestContext()).thenReturn(new HashMap<>());
+    when(adaptiveTimeoutPolicy.isAdaptive()).thenReturn(true);
+    when(adaptiveTimeoutPolicy.receiveTimeout(1)).thenReturn(3000L);
+    when(responder.storeLog("logicalAddress", request))
+        .thenThrow(new WebServiceException(new SocketTimeoutException("Read timed out")));
+
+    final var service = new SoapIntegrationServiceImpl(responder, adaptiveTimeoutPolicy);
+
+    assertThrows(WebServiceException.class, () -> service.storeLog("logicalAddress", request));
+    verify(adaptiveTimeoutPolicy).recordTimeout(3000L, 1);
+    verify(adaptiveTimeoutPolicy, never()).record(anyLong(), anyInt());
+  }
+
+  @Test
+  void shouldRecordMarshalledPayloadWithItsEntryCount() {
+    final var client = mock(StreamingStoreLogClient.class);
+    final var payload = "<payload/>".getBytes();
+    final var expected = new StoreLogResponseType();
+
+    when(client.getRequestContext()).thenReturn(new HashMap<>());
+    when(adaptiveTimeoutPolicy.isAdaptive()).thenReturn(true);
+    when(adaptiveTimeoutPolicy.receiveTimeout(3)).thenReturn(3000L);
+    when(client.storeLog("logicalAddress", payload)).thenReturn(expected);
+
+    final var service = new SoapIntegrationServiceImpl(client, adaptiveTimeoutPolicy);
+
+    assertEquals(expected, service.storeLog("logicalAddress", payload, 3));
+    verify(adaptiveTimeoutPolicy).record(anyLong(), eq(3));
+  }
 }